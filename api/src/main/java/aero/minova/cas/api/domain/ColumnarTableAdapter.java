@@ -0,0 +1,290 @@
+package aero.minova.cas.api.domain;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Schreibt und liest eine {@link Table} spaltenweise. Name und Typ jeder Spalte werden nur einmal geschickt, danach folgen alle Werte der Spalte als
+ * JSON-Zahlen, -Booleans bzw. -Strings ohne Typ-Präfix. Fehlende Werte sind null. Instant und ZonedDateTime werden als ISO-String geschickt.
+ *
+ * <pre>
+ * {
+ * 	"name": "xvcasUser",
+ * 	"metaData": { ... },
+ * 	"rowCount": 2,
+ * 	"columns": [
+ * 		{ "name": "KeyLong", "type": "INTEGER", "values": [ 1, 2 ] },
+ * 		{ "name": "LastDate", "type": "INSTANT", "values": [ "2024-01-01T12:00:00Z", null ] },
+ * 		{ "name": "Filter", "type": "STRING", "prefixed": true, "values": [ "f-~-s-A%", null ] }
+ * 	]
+ * }
+ * </pre>
+ *
+ * Passt ein Wert nicht zum Typ der Spalte, hat er eine Regel oder ist er als Double nicht endlich, wird die ganze Spalte mit "prefixed" markiert und wie
+ * gewohnt mit Typ-Präfix geschickt. So gehen keine Informationen verloren. Die Werte einer Spalte müssen nach Name und Typ kommen.
+ */
+public class ColumnarTableAdapter extends TypeAdapter<Table> {
+
+	private static final Gson GSON = new Gson();
+
+	@Override
+	public void write(JsonWriter out, Table table) throws IOException {
+		if (table == null) {
+			out.nullValue();
+			return;
+		}
+		final List<Row> rows = table.getRows() == null ? List.of() : table.getRows();
+		final List<Column> columns = table.getColumns() == null ? List.of() : table.getColumns();
+
+		out.beginObject();
+		if (table.getName() != null) {
+			out.name("name").value(table.getName());
+		}
+		if (table.getMetaData() != null) {
+			out.name("metaData");
+			GSON.toJson(table.getMetaData(), TableMetaData.class, out);
+		}
+		out.name("rowCount").value(rows.size());
+		out.name("columns").beginArray();
+		for (int i = 0; i < columns.size(); i++) {
+			writeColumn(out, columns.get(i), i, rows);
+		}
+		out.endArray();
+		if (table.getReturnErrorMessage() != null) {
+			out.name("returnErrorMessage");
+			GSON.toJson(table.getReturnErrorMessage(), ErrorMessage.class, out);
+		}
+		out.endObject();
+	}
+
+	private void writeColumn(JsonWriter out, Column column, int columnIndex, List<Row> rows) throws IOException {
+		final DataType type = column == null ? null : column.getType();
+		final boolean prefixed = !isNative(type, columnIndex, rows);
+
+		out.beginObject();
+		if (column != null && column.getName() != null) {
+			out.name("name").value(column.getName());
+		}
+		if (type != null) {
+			out.name("type").value(type.name());
+		}
+		if (column != null && column.getOutputType() != null) {
+			out.name("outputType").value(column.getOutputType().name());
+		}
+		if (prefixed) {
+			out.name("prefixed").value(true);
+		}
+		out.name("values").beginArray();
+		for (Row row : rows) {
+			final Value value = getValue(row, columnIndex);
+			if (value == null || value.getValue() == null) {
+				out.nullValue();
+			} else if (prefixed) {
+				out.value(ValueSerializer.toJsonString(value));
+			} else {
+				writeNative(out, value);
+			}
+		}
+		out.endArray();
+		out.endObject();
+	}
+
+	/**
+	 * @return true, wenn alle Werte der Spalte ohne Typ-Präfix geschickt werden können.
+	 */
+	private boolean isNative(DataType type, int columnIndex, List<Row> rows) {
+		if (type == null) {
+			return false;
+		}
+		for (Row row : rows) {
+			final Value value = getValue(row, columnIndex);
+			if (value == null || value.getValue() == null) {
+				continue;
+			}
+			if (value.getType() != type || value.getRule() != null || (type == DataType.DOUBLE && !Double.isFinite(value.getDoubleValue()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void writeNative(JsonWriter out, Value value) throws IOException {
+		switch (value.getType()) {
+		case INTEGER:
+			out.value(value.getIntegerValue());
+			break;
+		case LONG:
+			out.value(value.getLongValue());
+			break;
+		case DOUBLE:
+			out.value(value.getDoubleValue());
+			break;
+		case BIGDECIMAL:
+			out.value(value.getBigDecimalValue());
+			break;
+		case BOOLEAN:
+			out.value(value.getBooleanValue());
+			break;
+		case STRING:
+			out.value(value.getStringValue());
+			break;
+		case INSTANT:
+			out.value(value.getInstantValue().toString());
+			break;
+		case ZONED:
+			out.value(value.getZonedDateTimeValue().toString());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown data type " + value.getType());
+		}
+	}
+
+	private Value getValue(Row row, int columnIndex) {
+		if (row == null || row.getValues() == null || row.getValues().size() <= columnIndex) {
+			return null;
+		}
+		return row.getValues().get(columnIndex);
+	}
+
+	@Override
+	public Table read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		final Table table = new Table();
+		final List<List<Value>> columnValues = new ArrayList<>();
+		int rowCount = 0;
+
+		in.beginObject();
+		while (in.hasNext()) {
+			switch (in.nextName()) {
+			case "name":
+				table.setName(nextStringOrNull(in));
+				break;
+			case "metaData":
+				table.setMetaData(GSON.fromJson(in, TableMetaData.class));
+				break;
+			case "rowCount":
+				rowCount = in.nextInt();
+				break;
+			case "columns":
+				readColumns(in, table, columnValues);
+				break;
+			case "returnErrorMessage":
+				table.setReturnErrorMessage(GSON.fromJson(in, ErrorMessage.class));
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+
+		for (int i = 0; i < rowCount; i++) {
+			final Row row = new Row();
+			for (List<Value> values : columnValues) {
+				row.addValue(i < values.size() ? values.get(i) : null);
+			}
+			table.getRows().add(row);
+		}
+		return table;
+	}
+
+	private void readColumns(JsonReader in, Table table, List<List<Value>> columnValues) throws IOException {
+		in.beginArray();
+		while (in.hasNext()) {
+			final Column column = new Column();
+			final List<Value> values = new ArrayList<>();
+			boolean prefixed = false;
+
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+				case "name":
+					column.setName(nextStringOrNull(in));
+					break;
+				case "type":
+					final String type = nextStringOrNull(in);
+					column.setType(type == null ? null : DataType.valueOf(type));
+					break;
+				case "outputType":
+					final String outputType = nextStringOrNull(in);
+					column.setOutputType(outputType == null ? null : OutputType.valueOf(outputType));
+					break;
+				case "prefixed":
+					prefixed = in.nextBoolean();
+					break;
+				case "values":
+					readValues(in, prefixed ? null : column.getType(), values);
+					break;
+				default:
+					in.skipValue();
+				}
+			}
+			in.endObject();
+
+			table.getColumns().add(column);
+			columnValues.add(values);
+		}
+		in.endArray();
+	}
+
+	/**
+	 * Liest die Werte einer Spalte. Ist kein Typ bekannt, haben die Werte einen Typ-Präfix.
+	 */
+	private void readValues(JsonReader in, DataType type, List<Value> values) throws IOException {
+		in.beginArray();
+		while (in.hasNext()) {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				values.add(null);
+			} else if (type == null) {
+				values.add(ValueDeserializer.parse(in.nextString()));
+			} else {
+				values.add(readNative(in, type));
+			}
+		}
+		in.endArray();
+	}
+
+	private Value readNative(JsonReader in, DataType type) throws IOException {
+		switch (type) {
+		case INTEGER:
+			return new Value(in.nextInt());
+		case LONG:
+			return new Value(in.nextLong());
+		case DOUBLE:
+			return new Value(in.nextDouble());
+		case BIGDECIMAL:
+			return new Value(new BigDecimal(in.nextString()));
+		case BOOLEAN:
+			return new Value(in.nextBoolean());
+		case STRING:
+			return new Value(in.nextString());
+		case INSTANT:
+			return new Value(Instant.parse(in.nextString()));
+		case ZONED:
+			return new Value(ZonedDateTime.parse(in.nextString()));
+		default:
+			throw new IllegalArgumentException("Unknown data type " + type);
+		}
+	}
+
+	private String nextStringOrNull(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+}
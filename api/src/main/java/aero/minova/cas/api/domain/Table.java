@@ -4,6 +4,11 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+@JsonDeserialize(using = TableDeserializer.class)
+@JsonSerialize(using = TableSerializer.class)
 public class Table implements Serializable {
 	private static final long serialVersionUID = 202106161633L;
 	private String name;
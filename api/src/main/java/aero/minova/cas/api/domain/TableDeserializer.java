@@ -0,0 +1,113 @@
+package aero.minova.cas.api.domain;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+/**
+ * Liest eine {@link Table} mit Jackson direkt aus dem {@link JsonParser}. Die Values werden mit {@link ValueDeserializer#parse(String)} erzeugt, ohne für
+ * jede Zeile und jeden Value einen Deserializer nachzuschlagen.
+ */
+public class TableDeserializer extends JsonDeserializer<Table> {
+
+	@Override
+	public Table deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+		if (jsonParser.currentToken() == JsonToken.START_OBJECT) {
+			jsonParser.nextToken();
+		} else if (jsonParser.currentToken() != JsonToken.FIELD_NAME && jsonParser.currentToken() != JsonToken.END_OBJECT) {
+			return (Table) deserializationContext.handleUnexpectedToken(Table.class, jsonParser);
+		}
+
+		Table table = new Table();
+		for (; jsonParser.currentToken() == JsonToken.FIELD_NAME; jsonParser.nextToken()) {
+			String fieldName = jsonParser.currentName();
+			JsonToken token = jsonParser.nextToken();
+			if (token == JsonToken.VALUE_NULL) {
+				continue;
+			}
+			switch (fieldName) {
+			case "name":
+				table.setName(jsonParser.getValueAsString());
+				break;
+			case "metaData":
+				table.setMetaData(deserializationContext.readValue(jsonParser, TableMetaData.class));
+				break;
+			case "columns":
+				table.setColumns(readColumns(jsonParser, deserializationContext));
+				break;
+			case "rows":
+				table.setRows(readRows(jsonParser, deserializationContext));
+				break;
+			case "returnErrorMessage":
+				table.setReturnErrorMessage(deserializationContext.readValue(jsonParser, ErrorMessage.class));
+				break;
+			default:
+				deserializationContext.handleUnknownProperty(jsonParser, this, Table.class, fieldName);
+			}
+		}
+		return table;
+	}
+
+	private List<Column> readColumns(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+		expect(jsonParser, deserializationContext, JsonToken.START_ARRAY);
+		List<Column> columns = new ArrayList<>();
+		while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+			columns.add(jsonParser.currentToken() == JsonToken.VALUE_NULL ? null : deserializationContext.readValue(jsonParser, Column.class));
+		}
+		return columns;
+	}
+
+	private List<Row> readRows(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+		expect(jsonParser, deserializationContext, JsonToken.START_ARRAY);
+		List<Row> rows = new ArrayList<>();
+		while (jsonParser.nextToken() != JsonToken.END_ARRAY) {
+			if (jsonParser.currentToken() == JsonToken.VALUE_NULL) {
+				rows.add(null);
+				continue;
+			}
+			expect(jsonParser, deserializationContext, JsonToken.START_OBJECT);
+			Row row = new Row();
+			while (jsonParser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = jsonParser.currentName();
+				jsonParser.nextToken();
+				if ("values".equals(fieldName)) {
+					row.setValues(readValues(jsonParser, deserializationContext));
+				} else {
+					deserializationContext.handleUnknownProperty(jsonParser, this, Row.class, fieldName);
+				}
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private List<Value> readValues(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+		if (jsonParser.currentToken() == JsonToken.VALUE_NULL) {
+			return null;
+		}
+		expect(jsonParser, deserializationContext, JsonToken.START_ARRAY);
+		List<Value> values = new ArrayList<>();
+		JsonToken token;
+		while ((token = jsonParser.nextToken()) != JsonToken.END_ARRAY) {
+			if (token == JsonToken.VALUE_NULL) {
+				values.add(null);
+			} else if (token == JsonToken.VALUE_STRING) {
+				values.add(ValueDeserializer.parse(jsonParser.getText()));
+			} else {
+				values.add(deserializationContext.readValue(jsonParser, Value.class));
+			}
+		}
+		return values;
+	}
+
+	private void expect(JsonParser jsonParser, DeserializationContext deserializationContext, JsonToken expected) throws IOException {
+		if (jsonParser.currentToken() != expected) {
+			deserializationContext.reportWrongTokenException(this, expected, "Expected " + expected + " while reading a table.");
+		}
+	}
+}
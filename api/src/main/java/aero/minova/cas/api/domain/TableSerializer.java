@@ -0,0 +1,82 @@
+package aero.minova.cas.api.domain;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Schreibt eine {@link Table} mit Jackson im selben Format wie Gson. Die Zeilen werden direkt in den {@link JsonGenerator} geschrieben, ohne für jede Zeile
+ * und jeden Value einen Serializer nachzuschlagen. Felder, die null sind, werden wie bei Gson weggelassen.
+ */
+public class TableSerializer extends JsonSerializer<Table> {
+
+	@Override
+	public void serialize(Table table, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
+		jsonGenerator.writeStartObject(table);
+		if (table.getName() != null) {
+			jsonGenerator.writeStringField("name", table.getName());
+		}
+		if (table.getMetaData() != null) {
+			serializerProvider.defaultSerializeField("metaData", table.getMetaData(), jsonGenerator);
+		}
+		if (table.getColumns() != null) {
+			jsonGenerator.writeArrayFieldStart("columns");
+			for (Column column : table.getColumns()) {
+				writeColumn(column, jsonGenerator);
+			}
+			jsonGenerator.writeEndArray();
+		}
+		if (table.getRows() != null) {
+			jsonGenerator.writeArrayFieldStart("rows");
+			for (Row row : table.getRows()) {
+				writeRow(row, jsonGenerator);
+			}
+			jsonGenerator.writeEndArray();
+		}
+		if (table.getReturnErrorMessage() != null) {
+			serializerProvider.defaultSerializeField("returnErrorMessage", table.getReturnErrorMessage(), jsonGenerator);
+		}
+		jsonGenerator.writeEndObject();
+	}
+
+	private void writeColumn(Column column, JsonGenerator jsonGenerator) throws IOException {
+		if (column == null) {
+			jsonGenerator.writeNull();
+			return;
+		}
+		jsonGenerator.writeStartObject();
+		if (column.getName() != null) {
+			jsonGenerator.writeStringField("name", column.getName());
+		}
+		if (column.getType() != null) {
+			jsonGenerator.writeStringField("type", column.getType().name());
+		}
+		if (column.getOutputType() != null) {
+			jsonGenerator.writeStringField("outputType", column.getOutputType().name());
+		}
+		jsonGenerator.writeEndObject();
+	}
+
+	private void writeRow(Row row, JsonGenerator jsonGenerator) throws IOException {
+		if (row == null) {
+			jsonGenerator.writeNull();
+			return;
+		}
+		jsonGenerator.writeStartObject();
+		if (row.getValues() != null) {
+			jsonGenerator.writeArrayFieldStart("values");
+			for (Value value : row.getValues()) {
+				String json = ValueSerializer.toJsonString(value);
+				if (json == null) {
+					jsonGenerator.writeNull();
+				} else {
+					jsonGenerator.writeString(json);
+				}
+			}
+			jsonGenerator.writeEndArray();
+		}
+		jsonGenerator.writeEndObject();
+	}
+}
@@ -7,24 +7,18 @@ import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.Locale;
 
-import org.springframework.beans.factory.annotation.Autowired;
-
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.ObjectCodec;
 import com.fasterxml.jackson.databind.DeserializationContext;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.Gson;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
 
+/**
+ * Liest einen {@link Value} aus einem String mit Typ-Präfix, wie ihn der {@link ValueSerializer} schreibt. Jackson liest den String direkt aus dem
+ * {@link JsonParser}, ohne einen Baum aufzubauen. Der Gson-Deserializer bleibt für bestehende Gson-Instanzen erhalten.
+ */
 public class ValueDeserializer extends com.fasterxml.jackson.databind.JsonDeserializer<Value> implements JsonDeserializer<Value> {
-	@Autowired
-	private Gson gson;
-
-	private ObjectMapper jacksonMapper = new ObjectMapper();
 
 	public static final String SQL_IS_NULL = "null";
 	public static final String SQL_IS_NOT_NULL = "!null";
@@ -32,10 +26,10 @@ public class ValueDeserializer extends com.fasterxml.jackson.databind.JsonDeseri
 
 	@Override
 	public Value deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
-		ObjectCodec codec = jsonParser.getCodec();
-		JsonNode node = codec.readTree(jsonParser);
-
-		return gson.fromJson(jacksonMapper.writeValueAsString(node), Value.class);
+		if (jsonParser.currentToken() == null || !jsonParser.currentToken().isScalarValue()) {
+			return (Value) deserializationContext.handleUnexpectedToken(Value.class, jsonParser);
+		}
+		return parse(jsonParser.getText());
 	}
 
 	@Override
@@ -43,8 +37,19 @@ public class ValueDeserializer extends com.fasterxml.jackson.databind.JsonDeseri
 		if (json == null || type == null) {
 			return null;
 		}
-		String typeString = json.getAsString().substring(0, 1);
-		String value = json.getAsString().substring(2);
+		return parse(json.getAsString());
+	}
+
+	/**
+	 * Liest einen Value aus seiner Darstellung mit Typ-Präfix und gegebenenfalls Regel, z.B. "n-42", "f-&lt;=-i-2024-01-01T00:00:00Z" oder "r-Regel-Wert".
+	 *
+	 * @param json
+	 *            Der String aus dem JSON.
+	 * @return Der Value oder null, wenn der Typ unbekannt ist.
+	 */
+	public static Value parse(String json) {
+		String typeString = json.substring(0, 1);
+		String value = json.substring(2);
 		String rule;
 
 		if (value == null) {
@@ -3,28 +3,47 @@ package aero.minova.cas.api.domain;
 import java.io.IOException;
 import java.lang.reflect.Type;
 
-import org.springframework.beans.factory.annotation.Autowired;
-
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
-import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
+/**
+ * Schreibt einen {@link Value} als String mit Typ-Präfix, z.B. "n-42" oder "f-~-s-Test%". Jackson schreibt den String direkt in den
+ * {@link JsonGenerator}. Der Gson-Serializer bleibt für bestehende Gson-Instanzen erhalten und liefert dasselbe Format.
+ */
 public class ValueSerializer extends com.fasterxml.jackson.databind.JsonSerializer<Value> implements JsonSerializer<Value> {
-	@Autowired
-	private Gson gson;
 
 	@Override
 	public void serialize(Value value, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
-		jsonGenerator.writeRawValue(gson.toJson(value));
+		String json = toJsonString(value);
+		if (json == null) {
+			jsonGenerator.writeNull();
+		} else {
+			jsonGenerator.writeString(json);
+		}
 	}
 
 	@Override
 	public JsonElement serialize(Value value, Type type, JsonSerializationContext context) {
-		if (value == null || type == null || value.getValue() == null || value.getType() == null) {
+		if (type == null) {
+			return null;
+		}
+		String json = toJsonString(value);
+		return json == null ? null : new JsonPrimitive(json);
+	}
+
+	/**
+	 * Liefert die Darstellung eines Values mit Typ-Präfix und gegebenenfalls Regel.
+	 *
+	 * @param value
+	 *            Der Value.
+	 * @return null, wenn der Value oder sein Wert null ist.
+	 */
+	public static String toJsonString(Value value) {
+		if (value == null || value.getValue() == null || value.getType() == null) {
 			return null;
 		}
 
@@ -41,23 +60,23 @@ public class ValueSerializer extends com.fasterxml.jackson.databind.JsonSerializ
 
 		switch (value.getType()) {
 		case INTEGER:
-			return new JsonPrimitive(ruleString + "n-" + value.getIntegerValue());
+			return ruleString + "n-" + value.getIntegerValue();
 		case DOUBLE:
-			return new JsonPrimitive(ruleString + "d-" + value.getDoubleValue());
+			return ruleString + "d-" + value.getDoubleValue();
 		case STRING:
-			return new JsonPrimitive(ruleString + "s-" + value.getStringValue());
+			return ruleString + "s-" + value.getStringValue();
 		case INSTANT:
-			return new JsonPrimitive(ruleString + "i-" + value.getInstantValue().toString());
+			return ruleString + "i-" + value.getInstantValue().toString();
 		case ZONED:
-			return new JsonPrimitive(ruleString + "z-" + value.getZonedDateTimeValue().toString());
+			return ruleString + "z-" + value.getZonedDateTimeValue().toString();
 		case BOOLEAN:
-			return new JsonPrimitive(ruleString + "b-" + value.getBooleanValue().toString());
+			return ruleString + "b-" + value.getBooleanValue().toString();
 		case BIGDECIMAL:
-			return new JsonPrimitive(ruleString + "m-" + value.getBigDecimalValue().toString());
+			return ruleString + "m-" + value.getBigDecimalValue().toString();
 		case LONG:
-			return new JsonPrimitive(ruleString + "l-" + value.getLongValue().toString());
+			return ruleString + "l-" + value.getLongValue().toString();
 		default:
 			return null;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -69,10 +69,7 @@ public class ClientRestAPI {
 
 		this.gson = gson;
 		restTemplate = new RestTemplate();
-		ArrayList<HttpMessageConverter<?>> converters = new ArrayList<>();
-		converters.add(new GsonHttpMessageConverter(gson));
-		restTemplate.setMessageConverters(converters);
-
+		restTemplate.setMessageConverters(createMessageConverters(gson));
 	}
 
 	public ClientRestAPI(String username, String password, String url) {
@@ -80,9 +77,17 @@ public class ClientRestAPI {
 		this.password = password;
 		this.url = url;
 		restTemplate = new RestTemplate();
+		restTemplate.setMessageConverters(createMessageConverters(gson));
+	}
+
+	/**
+	 * Tables aus Views werden spaltenweise gelesen, falls der Server das unterstützt. Alles andere wird mit Gson gelesen und geschrieben.
+	 */
+	private List<HttpMessageConverter<?>> createMessageConverters(Gson gson) {
 		ArrayList<HttpMessageConverter<?>> converters = new ArrayList<>();
+		converters.add(new ColumnarTableHttpMessageConverter());
 		converters.add(new GsonHttpMessageConverter(gson));
-		restTemplate.setMessageConverters(converters);
+		return converters;
 	}
 
 	private HttpHeaders createHeaders(String username, String password) {
@@ -118,7 +123,10 @@ public class ClientRestAPI {
 	 * @return Eine Table mit dem gesamten Inhalt der View.
 	 */
 	public ResponseEntity<Table> sendViewRequest(Table inputTable) {
-		HttpEntity<Table> request = new HttpEntity<>(inputTable, createHeaders(username, password));
+		HttpHeaders headers = createHeaders(username, password);
+		// Ältere Server kennen das spaltenweise Format nicht und schicken dann wie gewohnt JSON.
+		headers.setAccept(Arrays.asList(ColumnarTableHttpMessageConverter.MEDIA_TYPE, MediaType.valueOf("application/json;q=0.9")));
+		HttpEntity<Table> request = new HttpEntity<>(inputTable, headers);
 		return restTemplate.exchange(url + "/data/index", HttpMethod.POST, request, Table.class);
 	}
 
@@ -190,6 +198,28 @@ public class ClientRestAPI {
 		return restTemplate.exchange(url + "/files/hash", HttpMethod.POST, request, byte[].class);
 	}
 
+	/**
+	 * Fragt das Manifest aller Dateien an, die der User lesen darf. Jede Zeile enthält Pfad, Größe und MD5-Wert einer Datei, getrennt durch Tabs.
+	 *
+	 * @return Das Manifest als String.
+	 */
+	public ResponseEntity<String> sendGetManifestRequest() {
+		HttpEntity<?> request = new HttpEntity<>(createHeaders(username, password));
+		return restTemplate.exchange(url + "/files/manifest", HttpMethod.GET, request, String.class);
+	}
+
+	/**
+	 * Fragt mehrere Dateien auf einmal an. Der Server schickt sie als ein Zip zurück.
+	 *
+	 * @param paths
+	 *            Die Pfade der Dateien relativ zum System-Ordner.
+	 * @return Das Zip der Dateien als byte[].
+	 */
+	public ResponseEntity<byte[]> sendGetFilesRequest(List<String> paths) {
+		HttpEntity<List<String>> request = new HttpEntity<>(paths, createHeaders(username, password));
+		return restTemplate.exchange(url + "/files/bulk", HttpMethod.POST, request, byte[].class);
+	}
+
 	/**
 	 * Sendet einen Ordner-Namen oder Pfad zum Ordner an den Server. Gibt den Ordner als Zip zurück.
 	 *
@@ -217,8 +247,6 @@ public class ClientRestAPI {
 
 	public void setGson(Gson gson) {
 		this.gson = gson;
-		ArrayList<HttpMessageConverter<?>> converters = new ArrayList<>();
-		converters.add(new GsonHttpMessageConverter(gson));
-		restTemplate.setMessageConverters(converters);
+		restTemplate.setMessageConverters(createMessageConverters(gson));
 	}
 }
@@ -26,4 +26,12 @@ public class ClientRestAPIConfiguration {
 				.registerTypeAdapter(Value.class, new ValueDeserializer()) //
 				.create();
 	}
+
+	/**
+	 * Schickt Tables spaltenweise, wenn der Client sie mit dem Accept-Header {@value ColumnarTableHttpMessageConverter#MEDIA_TYPE_VALUE} anfragt.
+	 */
+	@Bean
+	public ColumnarTableHttpMessageConverter columnarTableHttpMessageConverter() {
+		return new ColumnarTableHttpMessageConverter();
+	}
 }
\ No newline at end of file
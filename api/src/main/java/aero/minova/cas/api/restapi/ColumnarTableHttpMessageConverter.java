@@ -0,0 +1,74 @@
+package aero.minova.cas.api.restapi;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import aero.minova.cas.api.domain.ColumnarTableAdapter;
+import aero.minova.cas.api.domain.Table;
+
+/**
+ * Liest und schreibt eine {@link Table} spaltenweise mit dem {@link ColumnarTableAdapter}. Das Format wird nur verwendet, wenn der Client es mit dem
+ * Accept-Header {@value #MEDIA_TYPE_VALUE} anfragt. Sonst wird die Table wie gewohnt mit Gson zeilenweise geschickt.
+ */
+public class ColumnarTableHttpMessageConverter extends AbstractHttpMessageConverter<Table> {
+
+	public static final String MEDIA_TYPE_VALUE = "application/vnd.minova.table.columns+json";
+
+	public static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA_TYPE_VALUE);
+
+	private final ColumnarTableAdapter adapter = new ColumnarTableAdapter();
+
+	public ColumnarTableHttpMessageConverter() {
+		super(StandardCharsets.UTF_8, MEDIA_TYPE);
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return Table.class.isAssignableFrom(clazz);
+	}
+
+	/**
+	 * Das Format wird nur geschrieben, wenn es ausdrücklich angefragt wurde. Sonst würde es auch bei Accept *&#47;* oder für Fehlermeldungen gewählt werden.
+	 */
+	@Override
+	public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+		return mediaType != null && MEDIA_TYPE.includes(mediaType) && supports(clazz);
+	}
+
+	@Override
+	protected Table readInternal(Class<? extends Table> clazz, HttpInputMessage inputMessage) throws IOException {
+		try {
+			return adapter.read(new JsonReader(new InputStreamReader(inputMessage.getBody(), getCharset(inputMessage.getHeaders().getContentType()))));
+		} catch (JsonParseException | IllegalStateException | IllegalArgumentException | DateTimeException e) {
+			throw new HttpMessageNotReadableException("Could not read columnar table: " + e.getMessage(), e, inputMessage);
+		}
+	}
+
+	@Override
+	protected void writeInternal(Table table, HttpOutputMessage outputMessage) throws IOException {
+		final JsonWriter writer = new JsonWriter(new OutputStreamWriter(outputMessage.getBody(), getCharset(outputMessage.getHeaders().getContentType())));
+		adapter.write(writer, table);
+		writer.flush();
+	}
+
+	private Charset getCharset(MediaType contentType) {
+		if (contentType != null && contentType.getCharset() != null) {
+			return contentType.getCharset();
+		}
+		return StandardCharsets.UTF_8;
+	}
+}
@@ -22,6 +22,7 @@ import org.w3c.dom.Node;
 
 import aero.minova.cas.CustomLogger;
 import aero.minova.cas.api.domain.SqlProcedureResult;
+import aero.minova.cas.controller.ExtensionConcurrency;
 import aero.minova.cas.controller.SqlProcedureController;
 import aero.minova.cas.controller.SqlViewController;
 import aero.minova.cas.service.FilesService;
@@ -82,7 +83,7 @@ public class SetupService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, ExtensionConcurrency.SERIALIZED);
 		spc.registerExtensionBootstrapCheck(PROCEDURE_NAME, inputTable -> true);
 	}
 
@@ -425,17 +425,10 @@ public class BaseSetup {
         } else {
             try {
                 if (true) {
-                    final Optional<Path> tableXml = FILE_SYSTEM_PROVIDER.walk(tableLibrary.get()).stream()
-                            .map(path -> {
-                                // TODO Einheitliche XML-Namen verwenden.
-                                if (Files.isRegularFile(path) && path.getFileName().toString().equals(tableName + ".table.xml") || path.getFileName().toString()
-                                        .equals(tableName + ".xml")) {
-                                    return Optional.of(path);
-                                }
-                                return Optional.<Path>empty();
-                            })//
-                            .filter(path -> !path.isEmpty())
-                            .map(path -> path.get())
+                    // Über den Index der Dateinamen, damit nicht für jede Tabelle alle Resourcen durchsucht werden.
+                    // TODO Einheitliche XML-Namen verwenden.
+                    final Optional<Path> tableXml = FILE_SYSTEM_PROVIDER.findByFileName(tableLibrary.get(), tableName + ".table.xml", tableName + ".xml")
+                            .stream()
                             .findFirst();
                     if (tableXml.isEmpty()) {
                         throw new RuntimeException("Table xml " + tableName + "not found.");
@@ -0,0 +1,58 @@
+package aero.minova.cas.controller;
+
+import java.util.function.Function;
+
+import aero.minova.cas.api.domain.Table;
+import lombok.Getter;
+
+/**
+ * Legt fest, wie eine Erweiterung bei gleichzeitigen Anfragen ausgeführt wird. Erweiterungen sind standardmäßig {@link #THREAD_SAFE}, d.h. sie werden
+ * parallel ausgeführt. Erweiterungen, die einen eigenen, nicht threadsicheren Zustand verändern, können sich für {@link #SERIALIZED} oder
+ * {@link #keyed(Function)} entscheiden.
+ */
+@Getter
+public final class ExtensionConcurrency {
+
+	public enum Mode {
+		/**
+		 * Die Erweiterung wird ohne Sperre ausgeführt.
+		 */
+		THREAD_SAFE,
+		/**
+		 * Es wird immer nur ein Aufruf dieser Erweiterung gleichzeitig ausgeführt.
+		 */
+		SERIALIZED,
+		/**
+		 * Aufrufe mit demselben Schlüssel werden nacheinander ausgeführt, Aufrufe mit unterschiedlichen Schlüsseln parallel.
+		 */
+		KEYED
+	}
+
+	public static final ExtensionConcurrency THREAD_SAFE = new ExtensionConcurrency(Mode.THREAD_SAFE, null);
+
+	public static final ExtensionConcurrency SERIALIZED = new ExtensionConcurrency(Mode.SERIALIZED, null);
+
+	private final Mode mode;
+
+	private final Function<Table, ?> keyFunction;
+
+	private ExtensionConcurrency(Mode mode, Function<Table, ?> keyFunction) {
+		this.mode = mode;
+		this.keyFunction = keyFunction;
+	}
+
+	/**
+	 * Aufrufe, für welche die übergebene Funktion denselben Schlüssel liefert, werden nacheinander ausgeführt. Typischerweise ist der Schlüssel der KeyLong
+	 * oder KeyText des bearbeiteten Datensatzes.
+	 *
+	 * @param keyFunction
+	 *            Ermittelt aus der Eingabe den Schlüssel, auf den gesperrt wird. Darf null zurückgeben.
+	 * @return Die Konfiguration für die Erweiterung.
+	 */
+	public static ExtensionConcurrency keyed(Function<Table, ?> keyFunction) {
+		if (keyFunction == null) {
+			throw new IllegalArgumentException("A key function is required for keyed extension locking.");
+		}
+		return new ExtensionConcurrency(Mode.KEYED, keyFunction);
+	}
+}
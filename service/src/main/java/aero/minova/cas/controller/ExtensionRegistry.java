@@ -0,0 +1,155 @@
+package aero.minova.cas.controller;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import aero.minova.cas.api.domain.Table;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Threadsichere Registrierung der Erweiterungen eines Controllers. Die Namen sind case insensitive. Jede Erweiterung wird gemäß ihrer
+ * {@link ExtensionConcurrency} ausgeführt, sodass sich nur Aufrufe derselben Erweiterung (bzw. desselben Schlüssels) gegenseitig blockieren und nicht mehr alle
+ * Erweiterungen aller Nutzer.
+ * <p>
+ * Muss ein Aufruf auf eine Sperre warten, wird dies über die Metriken <code>cas.extension.lock.contended</code> und <code>cas.extension.lock.wait</code>
+ * erfasst.
+ *
+ * @param <R>
+ *            Ergebnis-Typ der Erweiterungen
+ */
+public class ExtensionRegistry<R> {
+
+	/**
+	 * Anzahl der Sperren pro Erweiterung mit {@link ExtensionConcurrency.Mode#KEYED}. Dadurch wächst der Speicherbedarf nicht mit der Anzahl der Schlüssel.
+	 */
+	private static final int KEY_LOCK_STRIPES = 64;
+
+	private final String registryName;
+
+	private final Map<String, RegisteredExtension> extensions = new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+
+	/**
+	 * @param registryName
+	 *            Name der Registrierung, z.B. "procedure" oder "view". Wird als Tag der Metriken verwendet.
+	 */
+	public ExtensionRegistry(String registryName) {
+		this.registryName = registryName;
+	}
+
+	/**
+	 * Registriert eine Erweiterung.
+	 *
+	 * @param name
+	 *            Name der Erweiterung
+	 * @param extension
+	 *            Erweiterung
+	 * @param concurrency
+	 *            Wie die Erweiterung bei gleichzeitigen Aufrufen ausgeführt wird.
+	 * @return false, wenn es bereits eine Erweiterung mit diesem Namen gibt. Die Erweiterung wird dann nicht registriert.
+	 */
+	public boolean register(String name, Function<Table, R> extension, ExtensionConcurrency concurrency) {
+		return extensions.putIfAbsent(name, new RegisteredExtension(name, extension, concurrency)) == null;
+	}
+
+	public boolean contains(String name) {
+		return extensions.containsKey(name);
+	}
+
+	/**
+	 * @return Die Namen aller registrierten Erweiterungen.
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(extensions.keySet());
+	}
+
+	/**
+	 * Sucht die Erweiterung mit dem Namen. Die zurückgegebene Funktion beachtet beim Aufruf die {@link ExtensionConcurrency} der Erweiterung.
+	 *
+	 * @param name
+	 *            Name der Erweiterung
+	 * @return Die Erweiterung oder ein leeres Optional, falls es keine Erweiterung mit diesem Namen gibt.
+	 */
+	public Optional<Function<Table, R>> find(String name) {
+		if (name == null) {
+			return Optional.empty();
+		}
+		RegisteredExtension extension = extensions.get(name);
+		if (extension == null) {
+			return Optional.empty();
+		}
+		Function<Table, R> guarded = extension::apply;
+		return Optional.of(guarded);
+	}
+
+	private class RegisteredExtension {
+
+		private final Function<Table, R> extension;
+		private final ExtensionConcurrency concurrency;
+		private final ReentrantLock[] locks;
+		private final Counter contended;
+		private final Timer waitTime;
+
+		RegisteredExtension(String name, Function<Table, R> extension, ExtensionConcurrency concurrency) {
+			this.extension = extension;
+			this.concurrency = concurrency == null ? ExtensionConcurrency.THREAD_SAFE : concurrency;
+
+			switch (this.concurrency.getMode()) {
+			case SERIALIZED:
+				locks = new ReentrantLock[] { new ReentrantLock() };
+				break;
+			case KEYED:
+				locks = new ReentrantLock[KEY_LOCK_STRIPES];
+				for (int i = 0; i < locks.length; i++) {
+					locks[i] = new ReentrantLock();
+				}
+				break;
+			default:
+				locks = null;
+			}
+
+			if (locks != null) {
+				contended = Metrics.counter("cas.extension.lock.contended", "registry", registryName, "extension", name);
+				waitTime = Metrics.timer("cas.extension.lock.wait", "registry", registryName, "extension", name);
+			} else {
+				contended = null;
+				waitTime = null;
+			}
+		}
+
+		R apply(Table inputTable) {
+			if (locks == null) {
+				return extension.apply(inputTable);
+			}
+
+			final ReentrantLock lock;
+			if (locks.length == 1) {
+				lock = locks[0];
+			} else {
+				Object key = concurrency.getKeyFunction().apply(inputTable);
+				lock = locks[Math.floorMod(Objects.hashCode(key), locks.length)];
+			}
+
+			// Nur wenn die Sperre belegt ist, wird die Wartezeit gemessen.
+			if (!lock.tryLock()) {
+				contended.increment();
+				long start = System.nanoTime();
+				lock.lock();
+				waitTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			}
+			try {
+				return extension.apply(inputTable);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
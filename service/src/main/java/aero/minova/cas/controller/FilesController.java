@@ -1,22 +1,39 @@
 package aero.minova.cas.controller;
 
-import static java.nio.file.Files.readAllBytes;
-
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Paths;
-import java.nio.file.attribute.FileTime;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -26,17 +43,32 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.util.FileSystemUtils;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import aero.minova.cas.CustomLogger;
+import aero.minova.cas.service.FatJarZipCache;
+import aero.minova.cas.service.FileManifest;
 import aero.minova.cas.service.FilesService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.val;
 
 @RestController
@@ -44,6 +76,17 @@ import lombok.val;
 @ConditionalOnProperty(prefix = "application.runner", value = "enabled", havingValue = "true", matchIfMissing = true)
 public class FilesController {
 
+	/**
+	 * Dateiendungen, deren Inhalt bereits komprimiert ist.
+	 */
+	private static final Set<String> COMPRESSED_EXTENSIONS = Set.of("zip", "jar", "war", "gz", "tgz", "7z", "png", "jpg", "jpeg", "gif", "webp", "docx",
+			"xlsx", "pptx");
+
+	/**
+	 * Kleinere Dateien werden nicht vorab komprimiert, da sie dadurch kaum kleiner werden.
+	 */
+	private static final long PRECOMPRESS_MIN_SIZE = 1024;
+
 	@Autowired
 	FilesService fileService;
 
@@ -53,12 +96,35 @@ public class FilesController {
 	@Autowired
 	SqlProcedureController spc;
 
+	@Autowired
+	FatJarZipCache fatJarZipCache;
+
 	@org.springframework.beans.factory.annotation.Value("${generate.mdi.per.user:true}")
 	boolean generateMDIPerUser;
 
 	@org.springframework.beans.factory.annotation.Value("${fat.jar.mode:false}")
 	boolean isFatJarMode;
 
+	// Beim Start nur veränderte Dateien hashen und nur veränderte Ordner zippen
+	@org.springframework.beans.factory.annotation.Value("${files.incremental:true}")
+	boolean incrementalFiles;
+
+	// Anzahl der Threads für hashAll und zipAll, bei 0 die Anzahl der Prozessoren
+	@org.springframework.beans.factory.annotation.Value("${files.parallelism:0}")
+	int parallelism;
+
+	// Beim Hashen zusätzlich eine gzip-Variante jeder Datei in Internal/Gzip ablegen
+	@org.springframework.beans.factory.annotation.Value("${files.precompress:true}")
+	boolean precompressFiles;
+
+	// Hierbei handelt es sich um Megabytes
+	@org.springframework.beans.factory.annotation.Value("${upload.logs.max.entry.size:100}")
+	long maxLogEntrySize;
+
+	// Hierbei handelt es sich um Megabytes
+	@org.springframework.beans.factory.annotation.Value("${upload.logs.max.size:200}")
+	long maxLogSize;
+
 	// TODO Extension vorerst entfernt, aber für später aufheben
 	// TODO Bytes in JSON durch BASE64 darstellen
 //	@PostConstruct
@@ -142,24 +208,32 @@ public class FilesController {
 
 	/**
 	 * Verarbeitet User-Anfragen zum Senden eines Files. Falls das angefragte File gefunden werden kann, wird es zurückgegeben, andernfalls wird entweder eine
-	 * FileNotFoundException oder eine IllegalAccessException geworfen.
+	 * FileNotFoundException oder eine IllegalAccessException geworfen. Die Datei wird direkt aus dem Dateisystem bzw. den Resourcen in die Antwort gestreamt
+	 * und nicht vorher komplett in den Speicher geladen.
+	 * <p>
+	 * Für Dateien aus dem Dateisystem werden ETag (der MD5-Wert aus Internal/MD5) und Last-Modified gesetzt. Stimmen If-None-Match oder If-Modified-Since der
+	 * Anfrage damit überein, wird nur 304 (Not Modified) zurückgegeben. Über den Range-Header können Teile der Datei angefragt werden.
+	 * <p>
+	 * Unterstützt der Client gzip und gibt es eine aktuelle gzip-Variante der Datei in Internal/Gzip, wird diese mit Content-Encoding gzip geschickt.
 	 *
 	 * @param path
 	 *            Der Pfad des Files, welches der User anfragt, als String.
-	 * @return byte[] des angefragten Files.
+	 * @return Das angefragte File.
 	 * @throws Exception
 	 *             Entweder eine IllegalAccessException, falls der Pfad außerhalb des System-Ordners liegt, oder FileNotFoundException, falls es keine Datei mit
 	 *             diesem Namen in dem gewünschten Pfad gibt.
 	 */
 	@RequestMapping(value = "files/read", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
-	public @ResponseBody byte[] getFile(@RequestParam String path) throws Exception {
+	public ResponseEntity<Resource> getFile(@RequestParam String path) throws Exception {
 
 		// Zuerst prüfen, ob application.mdi aus Datenbank gelesen werden soll
 		if (generateMDIPerUser && path.contains("application.mdi")) {
 
 			// Falls es beim Auslesen der Mdi zu einem Fehler kommt, wird stattdessen eine StandardMdi aus dem Root-Path zurückgegeben.
 			try {
-				return fileService.readMDI();
+				// Mit dem MD5-Wert als ETag bekommt der Client 304, solange sich seine MDI nicht ändert.
+				final FilesService.MdiContent mdi = fileService.getMDI();
+				return toResponse(new ByteArrayResource(mdi.getContent()), mdi.getHash(), -1);
 			} catch (Exception e) {
 				customLogger.logError("Mdi could not be read. It will be loaded from the system file path.", e);
 			}
@@ -173,7 +247,7 @@ public class FilesController {
 			if (path.endsWith(".zip")) {
 				return getZip(path.substring(0, path.length() - 4));
 			}
-			return getClass().getResourceAsStream(path).readAllBytes();
+			return toResponse(getClassPathResource(path));
 		}
 
 		// Ansonsten Dateisystem nutzen
@@ -186,7 +260,19 @@ public class FilesController {
 		}
 		val inputPath = fileService.checkLegalPath(Paths.get(path));
 		customLogger.logUserRequest("files/read: " + path);
-		return readAllBytes(inputPath);
+		final String hash = readHash(fileService.getMd5Folder().resolve(path + ".md5"), inputPath);
+		final long lastModified = Files.getLastModifiedTime(inputPath).toMillis();
+
+		final HttpHeaders contentHeaders = new HttpHeaders();
+		contentHeaders.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+		contentHeaders.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+		final Path gzipPath = getGzipPath(fileService.getSystemFolder().relativize(inputPath));
+		if (acceptsGzip(getRequestHeaders()) && isUpToDate(gzipPath, inputPath)) {
+			contentHeaders.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+			// Die komprimierte Variante braucht einen eigenen ETag. Range-Anfragen beziehen sich dann auf die komprimierten Bytes.
+			return toResponse(new FileSystemResource(gzipPath), contentHeaders, hash == null ? null : hash + "-gzip", lastModified);
+		}
+		return toResponse(new FileSystemResource(inputPath), contentHeaders, hash, lastModified);
 	}
 
 	/**
@@ -194,32 +280,30 @@ public class FilesController {
 	 *
 	 * @param path
 	 *            Der Pfad des Files, zu welchem der User die MD5 Datei möchte, als String.
-	 * @return Der MD5 Wert des angefragten Files als byte[].
+	 * @return Der MD5 Wert des angefragten Files.
 	 * @throws Exception
 	 *             Entweder eine IllegalAccessException, falls der Pfad außerhalb des System-Ordners liegt, oder FileNotFoundException, falls es keine Datei mit
 	 *             diesem Namen in dem gewünschten Pfad gibt.
 	 */
 	@RequestMapping(value = "files/hash", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
-	public @ResponseBody byte[] getHash(@RequestParam String path) throws Exception {
+	public ResponseEntity<Resource> getHash(@RequestParam String path) throws Exception {
 		if (isFatJarMode) {
 			if (!path.startsWith("/")) {
 				path = "/" + path;
 			}
-			final byte[] pathContent;
 			if (path.endsWith(".zip")) {
-				pathContent = getZip(path);
-			} else {
-				pathContent = getFile(path);
+				// Wie bei files/read wird das Zip des Pfads ohne Endung verwendet.
+				final String md5 = fatJarZipCache.getZip(path.substring(0, path.length() - 4)).getMd5();
+				return toResponse(new ByteArrayResource(md5.getBytes(StandardCharsets.UTF_8)), md5, -1);
 			}
-			MessageDigest md;
-			try {
-				md = MessageDigest.getInstance("MD5");
-			} catch (NoSuchAlgorithmException e) {
-				throw new RuntimeException("msg.MD5Error");
+			final Resource pathContent = getFile(path).getBody();
+			// Der Inhalt wird beim Lesen gehasht und muss dafür nicht komplett im Speicher liegen.
+			MessageDigest md = createMd5Digest();
+			try (DigestInputStream in = new DigestInputStream(pathContent.getInputStream(), md)) {
+				in.transferTo(OutputStream.nullOutputStream());
 			}
-			md.update(pathContent);
-			String fx = "%0" + (md.getDigestLength() * 2) + "x";
-			return String.format(fx, new BigInteger(1, md.digest())).getBytes(StandardCharsets.UTF_8);
+			byte[] hash = toHex(md);
+			return toResponse(new ByteArrayResource(hash), new String(hash, StandardCharsets.UTF_8), -1);
 		}
 		path = path.replace('\\', '/');
 		customLogger.logUserRequest("files/hash: " + path);
@@ -237,67 +321,113 @@ public class FilesController {
 		}
 
 		fileService.checkLegalPath(md5FilePath);
-		return readAllBytes(md5FilePath);
+		// Der Hash ist gleichzeitig der ETag der MD5-Datei.
+		return toResponse(md5FilePath, readHash(md5FilePath, md5FilePath));
 	}
 
-	@RequestMapping(value = "files/zip", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
-	public @ResponseBody byte[] getZip(@RequestParam String path) throws Exception {
+	/**
+	 * Liefert mit einer Anfrage Pfad, Größe und MD5-Wert aller Dateien, die der User lesen darf. Damit muss der Client nicht für jede Datei files/hash
+	 * aufrufen. Jede Zeile enthält Pfad, Größe und MD5-Wert getrennt durch Tabs. Der ETag ist die Version des Manifests. Unterstützt der Client gzip, wird das
+	 * Manifest komprimiert geschickt.
+	 *
+	 * @param acceptEncoding
+	 *            Der Accept-Encoding Header der Anfrage.
+	 * @return Das Manifest.
+	 * @throws Exception
+	 *             NoSuchFileException, falls die Dateien noch nicht gehasht wurden.
+	 */
+	@RequestMapping(value = "files/manifest")
+	public ResponseEntity<Resource> getManifest(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+			throws Exception {
+		customLogger.logUserRequest("files/manifest");
+		final FilesService.ManifestContent manifest = fileService.getManifestContent();
+
+		final HttpHeaders contentHeaders = new HttpHeaders();
+		contentHeaders.setContentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+		contentHeaders.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+		if (acceptEncoding != null && acceptsGzip(List.of(acceptEncoding))) {
+			contentHeaders.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+			// Die komprimierte Variante braucht einen eigenen ETag.
+			return toResponse(new ByteArrayResource(manifest.getGzipContent()), contentHeaders, manifest.getHash() + "-gzip", manifest.getLastModified());
+		}
+		return toResponse(new ByteArrayResource(manifest.getContent()), contentHeaders, manifest.getHash(), manifest.getLastModified());
+	}
+
+	/**
+	 * Schickt mehrere Dateien als ein Zip. Alle Pfade werden zuerst mit {@link FilesService#checkLegalPath(Path)} geprüft. Danach wird das Zip direkt in die
+	 * Antwort gestreamt und nicht im Speicher aufgebaut. Bereits komprimierte Dateien wie Zips, Jars oder Bilder werden unkomprimiert (STORED) eingefügt.
+	 *
+	 * @param paths
+	 *            Die Pfade der Dateien relativ zum System-Ordner.
+	 * @param response
+	 *            Die Antwort, in die das Zip geschrieben wird.
+	 * @throws Exception
+	 *             IllegalAccessException, falls ein Pfad außerhalb des System-Ordners liegt, NoSuchFileException, falls eine Datei nicht existiert, oder
+	 *             IllegalArgumentException, falls ein Pfad auf einen Ordner zeigt.
+	 */
+	@RequestMapping(value = "files/bulk", produces = { "application/zip" })
+	public void getFiles(@RequestBody List<String> paths, HttpServletResponse response) throws Exception {
+		// Zuerst alle Dateien prüfen, damit Fehler noch als normale Antwort verschickt werden können.
+		final Map<String, Resource> resources = new LinkedHashMap<>();
 		if (isFatJarMode) {
-			final var pathStr = path.toString();
-			if (!path.startsWith("/")) {
-				path = "/" + path;
-			}
-			final List<String> matchingResources = new ArrayList<>();
-			final var deployedResources = new String(getClass().getResourceAsStream("/aero.minova.app.resources/deployed.resources.txt").readAllBytes());
-			for (final var resourceListPath : deployedResources.split("\n")) {
-				if (resourceListPath.isBlank()) {
-					continue;
+			for (String path : paths) {
+				path = path.replace('\\', '/');
+				if (!path.startsWith("/")) {
+					path = "/" + path;
 				}
-				final var resourceList = new String(getClass().getResourceAsStream(resourceListPath).readAllBytes());
-				for (final var resource : resourceList.split("\n")) {
-					if (resource.isBlank()) {
-						continue;
-					}
-					if (resource.startsWith(pathStr) && !matchingResources.contains(resource)) {
-						matchingResources.add(resource);
-					}
+				resources.putIfAbsent(path.substring(1), getClassPathResource(path));
+			}
+		} else {
+			// Die Privilegien aller Dateien werden gesammelt abgefragt und nicht einzeln pro Datei.
+			final List<Path> inputPaths = fileService
+					.checkLegalPaths(paths.stream().map(path -> Paths.get(path.replace('\\', '/'))).distinct().toList());
+			for (Path inputPath : inputPaths) {
+				if (Files.isDirectory(inputPath)) {
+					throw new IllegalArgumentException("files/bulk only accepts files, but " + fileService.getSystemFolder().relativize(inputPath)
+							+ " is a directory.");
 				}
+				resources.putIfAbsent(toManifestPath(fileService.getSystemFolder().relativize(inputPath)), new FileSystemResource(inputPath));
 			}
-			String resourcePathLog = null;
-			ZipEntry ze = null;
-			ByteArrayOutputStream fos = new ByteArrayOutputStream();
-			try (ZipOutputStream zos = new ZipOutputStream(fos);) {
-
-				for (String resourcePath : matchingResources) {
-					resourcePathLog = resourcePath;
-					if (isFileResource(resourcePath)) {
-						ze = new ZipEntry(resourcePath.substring(1));
-
-						// CreationTime der Zip und Änderungs-Zeitpunkt der Zip auf diese festen
-						// Zeitpunkte setzen, da sich sonst jedes Mal der md5 Wert ändert,
-						// wenn die Zip erstellt wird.
-						ze.setCreationTime(FileTime.from(Instant.EPOCH));
-						ze.setTime(0);
-						zos.putNextEntry(ze);
-
-						final var resourceContent = getClass().getResourceAsStream(resourcePath).readAllBytes();
-						zos.write(resourceContent, 0, resourceContent.length);
-						zos.closeEntry();
+		}
+		customLogger.logUserRequest("files/bulk: " + resources.size() + " files");
+
+		response.setContentType("application/zip");
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"files.zip\"");
+		try (ZipOutputStream zos = new ZipOutputStream(response.getOutputStream())) {
+			for (Map.Entry<String, Resource> resource : resources.entrySet()) {
+				final ZipEntry ze = new ZipEntry(resource.getKey());
+				if (isCompressed(resource.getKey())) {
+					// Für STORED müssen Größe und CRC vor dem Inhalt feststehen. Dafür wird die Datei einmal vorab gelesen.
+					final CRC32 crc = new CRC32();
+					try (InputStream in = new CheckedInputStream(resource.getValue().getInputStream(), crc)) {
+						ze.setSize(in.transferTo(OutputStream.nullOutputStream()));
 					}
+					ze.setCompressedSize(ze.getSize());
+					ze.setCrc(crc.getValue());
+					ze.setMethod(ZipEntry.STORED);
 				}
-			} catch (Exception e) {
-				if (ze != null) {
-					customLogger.logFiles("Error while zipping file " + ze.getName());
-					throw new RuntimeException("msg.ZipError %" + ze.getName());
-				} else {
-					// Landet nur hier, wenn es nicht mal bis in das erste if geschafft hat.
-					customLogger.logFiles("Error while accessing file path for file to zip.");
-					throw new RuntimeException("Error while accessing file path " + resourcePathLog + " for file to zip.", e);
+				zos.putNextEntry(ze);
+				try (InputStream in = resource.getValue().getInputStream()) {
+					in.transferTo(zos);
 				}
-			} finally {
-				fos.close();
+				zos.closeEntry();
 			}
-			return fos.toByteArray();
+		}
+	}
+
+	/**
+	 * @return true, wenn die Datei laut ihrer Endung bereits komprimiert ist und deshalb nicht erneut komprimiert werden muss.
+	 */
+	private static boolean isCompressed(String fileName) {
+		return COMPRESSED_EXTENSIONS.contains(FilenameUtils.getExtension(fileName).toLowerCase());
+	}
+
+	@RequestMapping(value = "files/zip", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
+	public ResponseEntity<Resource> getZip(@RequestParam String path) throws Exception {
+		if (isFatJarMode) {
+			// Die Zips werden einmal erstellt und danach aus dem Speicher geschickt.
+			final FatJarZipCache.Zip zip = fatJarZipCache.getZip(path);
+			return toResponse(new ByteArrayResource(zip.getContent()), zip.getMd5(), -1);
 		}
 		path = path.replace('\\', '/');
 		customLogger.logUserRequest("files/zip: " + path);
@@ -310,36 +440,254 @@ public class FilesController {
 		}
 		Path zipFilePath = fileService.getZipsFolder().resolve(toBeResolved);
 		fileService.checkLegalPath(zipFilePath);
-		return readAllBytes(zipFilePath);
+		return toResponse(zipFilePath, readHash(fileService.getMd5Folder().resolve("Internal").resolve("Zips").resolve(toBeResolved + ".md5"), zipFilePath));
+	}
+
+	/**
+	 * Erstellt die Antwort für eine Datei ohne ETag und Last-Modified.
+	 */
+	private ResponseEntity<Resource> toResponse(Resource resource) throws IOException {
+		return toResponse(resource, null, -1);
+	}
+
+	/**
+	 * Erstellt die Antwort für eine Datei aus dem Dateisystem. Last-Modified ist der Änderungszeitpunkt der Datei.
+	 */
+	private ResponseEntity<Resource> toResponse(Path path, String hash) throws IOException {
+		return toResponse(new FileSystemResource(path), hash, Files.getLastModifiedTime(path).toMillis());
+	}
+
+	/**
+	 * Erstellt die Antwort für eine Datei. Die Resource wird von Spring gestreamt, welches dabei auch Content-Length setzt und Range-Anfragen beantwortet.
+	 * Hat sich die Datei laut If-None-Match bzw. If-Modified-Since nicht verändert, wird 304 ohne Inhalt zurückgegeben. Das gilt auch für POST, da die Clients
+	 * die Dateien per POST anfragen.
+	 *
+	 * @param resource
+	 *            Der Inhalt der Antwort.
+	 * @param hash
+	 *            Der MD5-Wert des Inhalts für den ETag oder null.
+	 * @param lastModified
+	 *            Der Änderungszeitpunkt in Millisekunden oder -1.
+	 */
+	private ResponseEntity<Resource> toResponse(Resource resource, String hash, long lastModified) throws IOException {
+		HttpHeaders contentHeaders = new HttpHeaders();
+		contentHeaders.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+		return toResponse(resource, contentHeaders, hash, lastModified);
+	}
+
+	/**
+	 * Wie {@link #toResponse(Resource, String, long)}, nur mit eigenen Headern für den Inhalt, z.B. Content-Type und Content-Encoding. Diese werden nur bei
+	 * 200 gesetzt.
+	 */
+	private ResponseEntity<Resource> toResponse(Resource resource, HttpHeaders contentHeaders, String hash, long lastModified) throws IOException {
+		HttpHeaders headers = new HttpHeaders();
+		if (hash != null) {
+			headers.setETag("\"" + hash + "\"");
+		}
+		if (lastModified >= 0) {
+			headers.setLastModified(lastModified);
+		}
+
+		HttpHeaders requestHeaders = getRequestHeaders();
+		if (requestHeaders != null && isNotModified(requestHeaders, headers)) {
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+		}
+
+		headers.addAll(contentHeaders);
+		if (requestHeaders != null && !requestHeaders.getRange().isEmpty() && !isRangeApplicable(requestHeaders, headers)) {
+			// Die Datei hat sich seit dem abgebrochenen Download verändert. Spring beantwortet Range-Anfragen nur für Resourcen, deren Inhalt wiederholt gelesen
+			// werden kann. Deshalb wird die komplette Datei als InputStreamResource geschickt.
+			headers.setContentLength(resource.contentLength());
+			return ResponseEntity.ok().headers(headers).body(new InputStreamResource(resource.getInputStream()));
+		}
+		return ResponseEntity.ok().headers(headers).body(resource);
+	}
+
+	/**
+	 * @return Die Header der aktuellen Anfrage oder null, falls die Methode nicht über HTTP aufgerufen wurde.
+	 */
+	private static HttpHeaders getRequestHeaders() {
+		if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+			return new ServletServerHttpRequest(attributes.getRequest()).getHeaders();
+		}
+		return null;
+	}
+
+	/**
+	 * Prüft If-None-Match und, falls dieser Header fehlt, If-Modified-Since.
+	 */
+	private static boolean isNotModified(HttpHeaders requestHeaders, HttpHeaders responseHeaders) {
+		List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+		if (!ifNoneMatch.isEmpty()) {
+			String eTag = responseHeaders.getETag();
+			if (eTag == null) {
+				return false;
+			}
+			for (String tag : ifNoneMatch) {
+				if (tag.equals("*") || tag.equals(eTag) || tag.equals("W/" + eTag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		long ifModifiedSince = requestHeaders.getIfModifiedSince();
+		long lastModified = responseHeaders.getLastModified();
+		// HTTP-Datumsangaben sind sekundengenau.
+		return ifModifiedSince >= 0 && lastModified >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+	}
+
+	/**
+	 * Prüft den If-Range-Header. Ein Teil der Datei darf nur geschickt werden, wenn sich die Datei seit dem ersten Teil nicht verändert hat.
+	 */
+	private static boolean isRangeApplicable(HttpHeaders requestHeaders, HttpHeaders responseHeaders) {
+		String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+		if (ifRange == null) {
+			return true;
+		}
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			// Schwache ETags sind für If-Range nicht erlaubt.
+			return ifRange.equals(responseHeaders.getETag());
+		}
+		long lastModified = responseHeaders.getLastModified();
+		try {
+			return lastModified >= 0 && lastModified / 1000 == requestHeaders.getFirstDate(HttpHeaders.IF_RANGE) / 1000;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return true, wenn der Client laut Accept-Encoding gzip unterstützt.
+	 */
+	private static boolean acceptsGzip(HttpHeaders requestHeaders) {
+		return requestHeaders != null && acceptsGzip(requestHeaders.getOrEmpty(HttpHeaders.ACCEPT_ENCODING));
+	}
+
+	/**
+	 * Prüft, ob der Client laut Accept-Encoding gzip annimmt. Jeder Eintrag besteht aus Kodierung und optionalem q-Wert, z.B. "gzip;q=0.5". Mit q=0 lehnt der
+	 * Client die Kodierung ab. Ist gzip bzw. x-gzip nicht genannt, gilt der Wert von "*".
+	 *
+	 * @param acceptEncodings
+	 *            Die Werte des Accept-Encoding Headers.
+	 * @return true, wenn gzip bzw. x-gzip oder "*" mit einem q-Wert größer 0 angegeben ist.
+	 */
+	static boolean acceptsGzip(List<String> acceptEncodings) {
+		Double gzipQuality = null;
+		Double wildcardQuality = null;
+		for (String acceptEncoding : acceptEncodings) {
+			for (String entry : acceptEncoding.split(",")) {
+				final String[] parts = entry.split(";");
+				final String coding = parts[0].trim().toLowerCase();
+				double quality = 1;
+				for (int i = 1; i < parts.length; i++) {
+					final String parameter = parts[i].trim().toLowerCase();
+					if (parameter.startsWith("q=")) {
+						try {
+							quality = Double.parseDouble(parameter.substring(2).trim());
+						} catch (NumberFormatException e) {
+							// Ein ungültiger q-Wert wird wie q=0 behandelt, damit nichts geschickt wird, was der Client nicht angefragt hat.
+							quality = 0;
+						}
+					}
+				}
+				if (coding.equals("gzip") || coding.equals("x-gzip")) {
+					gzipQuality = gzipQuality == null ? quality : Math.max(gzipQuality, quality);
+				} else if (coding.equals("*")) {
+					wildcardQuality = quality;
+				}
+			}
+		}
+		if (gzipQuality != null) {
+			return gzipQuality > 0;
+		}
+		return wildcardQuality != null && wildcardQuality > 0;
+	}
+
+	/**
+	 * @return true, wenn die aus einer Datei erzeugte Datei (MD5-Datei, gzip-Variante) existiert und nicht älter als die Datei ist.
+	 */
+	private static boolean isUpToDate(Path derivedPath, Path filePath) throws IOException {
+		return Files.isRegularFile(derivedPath) && Files.getLastModifiedTime(derivedPath).compareTo(Files.getLastModifiedTime(filePath)) >= 0;
+	}
+
+	/**
+	 * Liest den MD5-Wert einer Datei aus ihrer MD5-Datei im Internal/MD5-Ordner.
+	 *
+	 * @param md5FilePath
+	 *            Die MD5-Datei.
+	 * @param filePath
+	 *            Die Datei, zu der die MD5-Datei gehört.
+	 * @return Der MD5-Wert oder null, falls es keine MD5-Datei gibt oder sie älter als die Datei ist.
+	 */
+	private static String readHash(Path md5FilePath, Path filePath) throws IOException {
+		if (!isUpToDate(md5FilePath, filePath)) {
+			return null;
+		}
+		String hash = Files.readString(md5FilePath, StandardCharsets.UTF_8).trim();
+		return hash.isEmpty() ? null : hash;
+	}
+
+	/**
+	 * @param path
+	 *            Absoluter Pfad der Resource im Classpath.
+	 * @return Die Resource.
+	 * @throws NoSuchFileException
+	 *             Falls es die Resource nicht gibt.
+	 */
+	private Resource getClassPathResource(String path) throws NoSuchFileException {
+		Resource resource = new ClassPathResource(path, getClass());
+		if (!resource.exists()) {
+			throw new NoSuchFileException("msg.FileError %" + path);
+		}
+		return resource;
+	}
+
+	private static MessageDigest createMd5Digest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("msg.MD5Error");
+		}
+	}
+
+	private static byte[] toHex(MessageDigest md) {
+		String fx = "%0" + (md.getDigestLength() * 2) + "x";
+		return String.format(fx, new BigInteger(1, md.digest())).getBytes(StandardCharsets.UTF_8);
 	}
 
 	/**
-	 * Die User-Anfrage zum Uploaden einer Log-Datei des Users. Der User schickt diese Datei als Zip. Die Datei wird dann im Internal/UserLogs gespeichert.
+	 * Die User-Anfrage zum Uploaden einer Log-Datei des Users. Der User schickt diese Datei als Zip. Das Zip wird direkt aus der Anfrage in einen neuen
+	 * Ordner in Internal/UserLogs entpackt, ohne es vorher im Speicher oder als Datei abzulegen. Wird {@link #maxLogEntrySize} für eine Datei oder
+	 * {@link #maxLogSize} für alle Dateien zusammen überschritten, wird der Ordner wieder gelöscht.
 	 *
 	 * @param log
-	 *            Die gezippte Log-Datei als byte[].
+	 *            Die gezippte Log-Datei als Stream.
 	 * @throws IOException
 	 *             Falls die Datei nicht geschrieben oder entpackt werden kann.
 	 */
 	@RequestMapping(value = "upload/logs", produces = { MediaType.APPLICATION_OCTET_STREAM_VALUE })
 	@ResponseStatus(value = HttpStatus.OK)
-	public @ResponseBody void getLogs(@RequestBody byte[] log) throws IOException {
+	public @ResponseBody void getLogs(InputStream log) throws IOException {
 		if (isFatJarMode) {
 			customLogger.logUserRequest("Ignoring `upload/logs` because the fat jar mode is active and therefore not file system access is used.");
 			return;
 		}
 		// Doppelpunkte müssen raus, da Sonderzeichen im Filenamen nicht erlaubt sind
 		String logFolderName = ("Log-" + LocalDateTime.now()).replace(":", "-");
-		File logFileFolder = fileService.getLogsFolder().resolve(logFolderName).toFile();
-		File logPath = new File(logFileFolder + ".zip");
-		logFileFolder.mkdirs();
-
-		customLogger.logUserRequest("Storing: " + logPath);
-		Files.write(logPath.toPath(), log);
+		Path logFileFolder = fileService.getLogsFolder().resolve(logFolderName);
+		Files.createDirectories(logFileFolder);
 
 		// hochgeladenes File unzippen
-		customLogger.logUserRequest("Unzipping File: " + logPath);
-		fileService.unzipFile(logPath, logFileFolder.toPath());
+		customLogger.logUserRequest("Unzipping upload into: " + logFileFolder);
+		long size;
+		try {
+			size = fileService.unzip(log, logFileFolder, maxLogEntrySize * 1024 * 1024, maxLogSize * 1024 * 1024);
+		} catch (IOException | RuntimeException e) {
+			// Der Ordner wurde für diesen Upload angelegt und enthält nur dessen Dateien.
+			FileSystemUtils.deleteRecursively(logFileFolder);
+			throw e;
+		}
+		customLogger.logUserRequest("Stored " + size + " bytes of logs in " + logFileFolder);
 	}
 
 	/**
@@ -352,16 +700,29 @@ public class FilesController {
 	 */
 	public void hashFile(Path p) throws Exception {
 		final val filePath = fileService.checkLegalPath(p);
-		MessageDigest md;
-		try {
-			md = MessageDigest.getInstance("MD5");
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException("msg.MD5Error");
+		writeHash(p, hash(filePath));
+	}
+
+	/**
+	 * Berechnet den MD5-Wert einer Datei. Die Datei wird dabei gestreamt und nicht komplett in den Speicher geladen.
+	 */
+	private static String hash(Path filePath) throws IOException {
+		MessageDigest md = createMd5Digest();
+		try (DigestInputStream in = new DigestInputStream(Files.newInputStream(filePath), md)) {
+			in.transferTo(OutputStream.nullOutputStream());
 		}
-		md.update(readAllBytes(filePath));
-		String fx = "%0" + (md.getDigestLength() * 2) + "x";
-		byte[] hashOfFile = String.format(fx, new BigInteger(1, md.digest())).getBytes(StandardCharsets.UTF_8);
+		return new String(toHex(md), StandardCharsets.UTF_8);
+	}
 
+	/**
+	 * Schreibt den MD5-Wert einer Datei in ihre MD5-Datei im Internal/MD5-Ordner.
+	 *
+	 * @param p
+	 *            Der Pfad der Datei relativ zum System-Ordner.
+	 * @param hash
+	 *            Der MD5-Wert.
+	 */
+	private void writeHash(Path p, String hash) throws IOException {
 		// Path für die neue MD5-Datei zusammenbauen
 		Path mdDataName = fileService.getMd5Folder().resolve(p);
 
@@ -374,11 +735,50 @@ public class FilesController {
 		File hashedFile = new File(mdDataName + ".md5");
 		customLogger.logFiles("Hashing: " + hashedFile.getAbsolutePath());
 
-		Files.write(Paths.get(hashedFile.getAbsolutePath()), hashOfFile);
+		Files.write(Paths.get(hashedFile.getAbsolutePath()), hash.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param relativePath
+	 *            Der Pfad der Datei relativ zum System-Ordner.
+	 * @return Der Pfad der gzip-Variante der Datei in Internal/Gzip.
+	 */
+	private Path getGzipPath(Path relativePath) {
+		return Paths.get(fileService.getGzipFolder().resolve(relativePath.toString()) + ".gz");
+	}
+
+	/**
+	 * @return true, wenn für die Datei eine gzip-Variante erzeugt werden soll. Bereits komprimierte und sehr kleine Dateien sowie Dateien aus dem
+	 *         Internal-Ordner werden ausgelassen.
+	 */
+	private boolean isPrecompressible(Path path, BasicFileAttributes attributes) {
+		return precompressFiles && attributes.size() >= PRECOMPRESS_MIN_SIZE && !isCompressed(path.getFileName().toString())
+				&& !path.startsWith(fileService.getZipsFolder().getParent());
 	}
 
 	/**
-	 * Hashed beim Starten des CAS alle Dateien und speichert deren MD5-Dateien im Internal/MD5-Ordner.
+	 * Schreibt die gzip-Variante einer Datei nach Internal/Gzip. Sie wird zuerst unter einem temporären Namen geschrieben und dann ersetzt, damit files/read
+	 * nie eine halb geschriebene Datei schickt.
+	 *
+	 * @param path
+	 *            Die Datei.
+	 * @param relativePath
+	 *            Der Pfad der Datei relativ zum System-Ordner.
+	 */
+	private void writeGzip(Path path, Path relativePath) throws IOException {
+		final Path gzipPath = getGzipPath(relativePath);
+		Files.createDirectories(gzipPath.getParent());
+		final Path tempFile = gzipPath.resolveSibling(gzipPath.getFileName() + ".tmp");
+		try (InputStream in = Files.newInputStream(path); OutputStream out = new GZIPOutputStream(Files.newOutputStream(tempFile))) {
+			in.transferTo(out);
+		}
+		Files.move(tempFile, gzipPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Hashed beim Starten des CAS alle Dateien und speichert deren MD5-Dateien im Internal/MD5-Ordner. Größe, Änderungszeitpunkt und MD5-Wert jeder Datei
+	 * werden in Internal/files.manifest gespeichert. Im inkrementellen Modus werden nur Dateien gehasht, die sich seitdem verändert haben oder deren MD5-Datei
+	 * fehlt. Die Dateien werden parallel gehasht. Dabei wird für komprimierbare Dateien auch die gzip-Variante in Internal/Gzip geschrieben.
 	 *
 	 * @throws Exception
 	 *             Falls die MD5-Dateien nicht geschrieben werden können.
@@ -387,27 +787,57 @@ public class FilesController {
 	@EventListener(ApplicationReadyEvent.class)
 	@Order(2)
 	@RequestMapping(value = "files/hashAll")
-	public void hashAll() throws Exception {
+	public synchronized void hashAll() throws Exception {
 		if (isFatJarMode) {
 			// In diesem Modus werden die Zips bei jeder Anfrage on the fly neu generiert.
 			return;
 		}
-		List<Path> programFiles = fileService.populateFilesList(fileService.getSystemFolder());
-		for (Path path : programFiles) {
-			// Mit dieser If-Abfrage wird verhindert, dass es .md5-Dateiketten gibt
-			if (path.startsWith(fileService.getMd5Folder())) {
-				continue;
-			}
+		final Path systemFolder = fileService.getSystemFolder().toAbsolutePath();
+		final Path manifestFile = fileService.getFilesManifest();
+		final FileManifest manifest = incrementalFiles ? FileManifest.read(manifestFile) : new FileManifest();
+
+		final Set<String> paths = new HashSet<>();
+		final Map<Path, BasicFileAttributes> changedFiles = new LinkedHashMap<>();
+		// Mit dem Ausschluss des MD5- und Gzip-Ordners wird verhindert, dass es .md5- bzw. .gz-Dateiketten gibt
+		for (Map.Entry<Path, BasicFileAttributes> file : listFiles(systemFolder, fileService.getMd5Folder(), fileService.getGzipFolder()).entrySet()) {
+			final Path path = file.getKey();
 			// wir wollen keine Hashes von einem Directory ( zips allerdings schon)
-			if (!path.toFile().isDirectory()) {
-				hashFile(fileService.getSystemFolder().toAbsolutePath().relativize(path.toAbsolutePath()));
+			if (file.getValue().isDirectory() || isManifest(path)) {
+				continue;
 			}
+			final Path relativePath = systemFolder.relativize(path);
+			final String manifestPath = toManifestPath(relativePath);
+			paths.add(manifestPath);
 
+			final FileManifest.Entry entry = manifest.get(manifestPath);
+			if (entry != null && entry.matches(file.getValue()) && Files.exists(fileService.getMd5Folder().resolve(relativePath + ".md5"))
+					&& (!isPrecompressible(path, file.getValue()) || Files.exists(getGzipPath(relativePath)))) {
+				continue;
+			}
+			changedFiles.put(path, file.getValue());
 		}
+
+		customLogger.logFiles("Hashing " + changedFiles.size() + " of " + paths.size() + " files.");
+		runInParallel(changedFiles.keySet(), path -> {
+			final BasicFileAttributes attributes = changedFiles.get(path);
+			final Path relativePath = systemFolder.relativize(path);
+			final String hash = hash(path);
+			writeHash(relativePath, hash);
+			if (isPrecompressible(path, attributes)) {
+				writeGzip(path, relativePath);
+			}
+			// Es werden die Attribute von vor dem Hashen gespeichert. Ändert sich die Datei währenddessen, wird sie beim nächsten Mal erneut gehasht.
+			manifest.put(new FileManifest.Entry(toManifestPath(relativePath), attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+		});
+
+		manifest.retainAll(paths);
+		manifest.write(manifestFile);
 	}
 
 	/**
-	 * Zipped beim Starten des CAS alle Dateien und speichert deren Zip-Dateien im Internal/Zips.
+	 * Zipped beim Starten des CAS alle Dateien und speichert deren Zip-Dateien im Internal/Zips. Für jeden Ordner wird in Internal/zips.manifest ein Hash
+	 * über Pfad, Größe und Änderungszeitpunkt aller enthaltenen Dateien gespeichert. Im inkrementellen Modus werden nur Ordner gezippt, bei denen sich dieser
+	 * Hash verändert hat oder deren Zip fehlt. Die Ordner werden parallel gezippt.
 	 *
 	 * @throws Exception
 	 *             Falls Dateien nicht gezipped werden konnten oder der Dateipfad außerhalb des Root-Directories zeigt.
@@ -416,34 +846,286 @@ public class FilesController {
 	@EventListener(ApplicationReadyEvent.class)
 	@Order(1)
 	@RequestMapping(value = "files/zipAll")
-	public void zipAll() throws Exception {
+	public synchronized void zipAll() throws Exception {
 		if (isFatJarMode) {
 			// In diesem Modus werden die Zips bei jeder Anfrage on the fly neu generiert.
 			return;
 		}
-		List<Path> programFiles = fileService.populateFilesList(fileService.getSystemFolder());
-		for (Path path : programFiles) {
-			if (path.startsWith(fileService.getZipsFolder().getParent().toString())) {
+		final Path systemFolder = fileService.getSystemFolder().toAbsolutePath();
+		final Map<Path, BasicFileAttributes> programFiles = listFiles(systemFolder, fileService.getZipsFolder().getParent());
+
+		final List<Path> zippableFolders = new ArrayList<>();
+		for (Map.Entry<Path, BasicFileAttributes> file : programFiles.entrySet()) {
+			if (file.getValue().isDirectory() && isZippable(file.getKey())) {
+				zippableFolders.add(file.getKey());
+			}
+		}
+		final Map<Path, FolderState> folders = createFolderStates(systemFolder, programFiles, zippableFolders);
+
+		final Path manifestFile = fileService.getZipsManifest();
+		final FileManifest previousManifest = incrementalFiles ? FileManifest.read(manifestFile) : new FileManifest();
+		final FileManifest manifest = new FileManifest();
+		final List<Path> changedFolders = new ArrayList<>();
+		for (Map.Entry<Path, FolderState> folder : folders.entrySet()) {
+			final Path relativePath = systemFolder.relativize(folder.getKey());
+			final FileManifest.Entry entry = folder.getValue().toEntry(toManifestPath(relativePath));
+			manifest.put(entry);
+
+			final FileManifest.Entry previousEntry = previousManifest.get(entry.getPath());
+			if (previousEntry == null || !previousEntry.getHash().equals(entry.getHash())
+					|| !Files.exists(fileService.getZipsFolder().resolve(relativePath + ".zip"))) {
+				changedFolders.add(folder.getKey());
+			}
+		}
+
+		customLogger.logFiles("Zipping " + changedFolders.size() + " of " + folders.size() + " folders.");
+		runInParallel(changedFolders, path -> createZip(systemFolder.relativize(path)));
+		manifest.write(manifestFile);
+	}
+
+	/**
+	 * Hasht einzelne Dateien neu, z.B. weil sie sich laut {@link aero.minova.cas.service.SystemFolderWatcher} verändert haben. Existiert eine Datei nicht mehr,
+	 * werden ihre MD5-Datei, ihre gzip-Variante und ihr Eintrag in Internal/files.manifest entfernt. Bei einem gelöschten Ordner gilt das für alle Dateien
+	 * darin.
+	 *
+	 * @param relativePaths
+	 *            Die Pfade der Dateien relativ zum System-Ordner.
+	 * @throws Exception
+	 *             Falls die MD5-Dateien nicht geschrieben werden können.
+	 */
+	public synchronized void hashFiles(Collection<Path> relativePaths) throws Exception {
+		final Path systemFolder = fileService.getSystemFolder().toAbsolutePath();
+		final Path manifestFile = fileService.getFilesManifest();
+		final FileManifest manifest = FileManifest.read(manifestFile);
+
+		final Map<Path, BasicFileAttributes> changedFiles = new LinkedHashMap<>();
+		for (Path relativePath : relativePaths) {
+			final Path path = systemFolder.resolve(relativePath).normalize();
+			if (!path.startsWith(systemFolder) || path.startsWith(fileService.getMd5Folder()) || path.startsWith(fileService.getGzipFolder())
+					|| isManifest(path)) {
+				continue;
+			}
+			if (Files.isRegularFile(path)) {
+				changedFiles.put(path, Files.readAttributes(path, BasicFileAttributes.class));
+			} else if (!Files.exists(path)) {
+				manifest.remove(toManifestPath(relativePath));
+				final Path md5Path = fileService.getMd5Folder().resolve(relativePath.toString());
+				Files.deleteIfExists(Paths.get(md5Path + ".md5"));
+				FileSystemUtils.deleteRecursively(md5Path);
+				Files.deleteIfExists(getGzipPath(relativePath));
+				FileSystemUtils.deleteRecursively(fileService.getGzipFolder().resolve(relativePath.toString()));
+			}
+		}
+
+		runInParallel(changedFiles.keySet(), path -> {
+			final BasicFileAttributes attributes = changedFiles.get(path);
+			final Path relativePath = systemFolder.relativize(path);
+			final String hash = hash(path);
+			writeHash(relativePath, hash);
+			if (isPrecompressible(path, attributes)) {
+				writeGzip(path, relativePath);
+			} else {
+				Files.deleteIfExists(getGzipPath(relativePath));
+			}
+			manifest.put(new FileManifest.Entry(toManifestPath(relativePath), attributes.size(), attributes.lastModifiedTime().toMillis(), hash));
+		});
+		manifest.write(manifestFile);
+	}
+
+	/**
+	 * Zippt einzelne Ordner neu und aktualisiert ihre Einträge in Internal/zips.manifest. Existiert ein Ordner nicht mehr, werden seine Zips und Einträge
+	 * entfernt.
+	 *
+	 * @param relativeFolders
+	 *            Die Pfade der Ordner relativ zum System-Ordner.
+	 * @return Die Pfade der geschriebenen bzw. gelöschten Zips relativ zum System-Ordner, damit sie neu gehasht werden können.
+	 * @throws Exception
+	 *             Falls ein Ordner nicht gezippt werden kann.
+	 */
+	public synchronized List<Path> zipFolders(Collection<Path> relativeFolders) throws Exception {
+		final Path systemFolder = fileService.getSystemFolder().toAbsolutePath();
+		final Path internalFolder = fileService.getZipsFolder().getParent();
+		final Path manifestFile = fileService.getZipsManifest();
+		final FileManifest manifest = FileManifest.read(manifestFile);
+
+		final List<Path> zips = new ArrayList<>();
+		final List<Path> existingFolders = new ArrayList<>();
+		for (Path relativeFolder : relativeFolders) {
+			final Path folder = systemFolder.resolve(relativeFolder).normalize();
+			if (folder.equals(systemFolder) || !folder.startsWith(systemFolder) || folder.startsWith(internalFolder) || !isZippable(folder)) {
+				continue;
+			}
+			final Path zipFile = Paths.get(fileService.getZipsFolder().resolve(relativeFolder.toString()) + ".zip");
+			zips.add(systemFolder.relativize(zipFile));
+			if (Files.isDirectory(folder)) {
+				existingFolders.add(folder);
+			} else if (!Files.exists(folder)) {
+				manifest.remove(toManifestPath(relativeFolder));
+				Files.deleteIfExists(zipFile);
+				FileSystemUtils.deleteRecursively(fileService.getZipsFolder().resolve(relativeFolder.toString()));
+			}
+		}
+
+		runInParallel(existingFolders, folder -> {
+			final Map<Path, FolderState> states = createFolderStates(systemFolder, listFiles(folder, internalFolder), List.of(folder));
+			createZip(systemFolder.relativize(folder));
+			manifest.put(states.get(folder).toEntry(toManifestPath(systemFolder.relativize(folder))));
+		});
+		manifest.write(manifestFile);
+		return zips;
+	}
+
+	/**
+	 * Berechnet für die Ordner einen Hash über alle enthaltenen Dateien. Die Dateien werden sortiert, damit der Hash nicht von der Reihenfolge abhängt, in
+	 * der das Dateisystem sie liefert.
+	 *
+	 * @param systemFolder
+	 *            Der System-Ordner.
+	 * @param files
+	 *            Alle Dateien in den Ordnern mit ihren Attributen.
+	 * @param folders
+	 *            Die Ordner, für die ein Hash berechnet werden soll.
+	 */
+	private static Map<Path, FolderState> createFolderStates(Path systemFolder, Map<Path, BasicFileAttributes> files, Collection<Path> folders) {
+		final Map<Path, FolderState> states = new HashMap<>();
+		for (Path folder : folders) {
+			states.put(folder, new FolderState());
+		}
+		for (Path path : new TreeSet<>(files.keySet())) {
+			final BasicFileAttributes attributes = files.get(path);
+			if (attributes.isDirectory()) {
 				continue;
 			}
+			final String line = toManifestPath(systemFolder.relativize(path)) + "\t" + attributes.size() + "\t" + attributes.lastModifiedTime().toMillis() + "\n";
+			for (Path folder = path.getParent(); folder != null && !folder.equals(systemFolder); folder = folder.getParent()) {
+				final FolderState state = states.get(folder);
+				if (state != null) {
+					state.add(line, attributes.lastModifiedTime().toMillis());
+				}
+			}
+		}
+		return states;
+	}
+
+	/**
+	 * wir wollen nicht noch einen zip von einer zip Datei, wir wollen allerdings hier NUR Directories haben
+	 */
+	private static boolean isZippable(Path folder) {
+		return !FilenameUtils.getExtension(folder.toString()).toLowerCase().contains("zip");
+	}
 
-			// XXX String fileSuffix = path.toString().substring(path.toString().lastIndexOf(".") + 1 );
-			String fileSuffix = FilenameUtils.getExtension(path.toString());
-			// es kann sein, dass von einem vorherigen Start bereits gezippte Dateien vorhanden sind, welche schon gehashed wurden
-			if (fileSuffix.equalsIgnoreCase("md5")) {
-				String filePrefix = path.toString().substring(0, path.toString().lastIndexOf("."));
-				// XXX fileSuffix = path.toString().substring(filePrefix.lastIndexOf(".") + 1 );
-				fileSuffix = FilenameUtils.getExtension(path.toString());
+	/**
+	 * Listet alle Dateien und Ordner unterhalb eines Ordners mit ihren Attributen auf.
+	 *
+	 * @param folder
+	 *            Der zu durchsuchende Ordner. Er selbst ist nicht im Ergebnis enthalten.
+	 * @param excluded
+	 *            Ordner, die samt Inhalt übersprungen werden.
+	 */
+	private static Map<Path, BasicFileAttributes> listFiles(Path folder, Path... excluded) throws IOException {
+		final List<Path> excludedFolders = new ArrayList<>();
+		for (Path excludedFolder : excluded) {
+			excludedFolders.add(excludedFolder.toAbsolutePath());
+		}
+		final Map<Path, BasicFileAttributes> files = new LinkedHashMap<>();
+		Files.walkFileTree(folder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if (excludedFolders.stream().anyMatch(dir::startsWith)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				if (!dir.equals(folder)) {
+					files.put(dir, attrs);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				files.put(file, attrs);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return files;
+	}
+
+	/**
+	 * Führt eine Aufgabe für alle Pfade parallel in einem eigenen ForkJoinPool aus, damit der gemeinsame Pool nicht blockiert wird.
+	 */
+	private void runInParallel(Collection<Path> paths, FileTask task) throws Exception {
+		if (paths.isEmpty()) {
+			return;
+		}
+		final ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+		try {
+			pool.submit(() -> paths.parallelStream().forEach(path -> {
+				try {
+					task.run(path);
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new FileTaskException(e);
+				}
+			})).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof FileTaskException fileTaskException) {
+				throw (Exception) fileTaskException.getCause();
 			}
-			// wir wollen nicht noch einen zip von einer zip Datei, wir wollen allerdings hier NUR Directories haben
-			if ((!fileSuffix.toLowerCase().contains("zip")) && (path.toFile().isDirectory())) {
-				createZip(fileService.getSystemFolder().toAbsolutePath().relativize(path.toAbsolutePath()));
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
 			}
+			throw e;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private boolean isManifest(Path path) {
+		final Path fileName = path.getFileName();
+		return path.getParent().equals(fileService.getFilesManifest().getParent())
+				&& (fileName.toString().startsWith(fileService.getFilesManifest().getFileName().toString())
+						|| fileName.toString().startsWith(fileService.getZipsManifest().getFileName().toString()));
+	}
+
+	private static String toManifestPath(Path relativePath) {
+		return relativePath.toString().replace('\\', '/');
+	}
+
+	@FunctionalInterface
+	private interface FileTask {
+		void run(Path path) throws Exception;
+	}
+
+	/**
+	 * Transportiert geprüfte Exceptions aus dem ForkJoinPool.
+	 */
+	private static class FileTaskException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		FileTaskException(Exception cause) {
+			super(cause);
 		}
 	}
 
-	private boolean isFileResource(String resourcePath) {
-		return !resourcePath.endsWith("/");
+	/**
+	 * Der Stand eines Ordners für Internal/zips.manifest.
+	 */
+	private static class FolderState {
+		private final MessageDigest md = createMd5Digest();
+
+		private long fileCount;
+
+		private long lastModified;
+
+		void add(String line, long fileLastModified) {
+			md.update(line.getBytes(StandardCharsets.UTF_8));
+			fileCount++;
+			lastModified = Math.max(lastModified, fileLastModified);
+		}
+
+		FileManifest.Entry toEntry(String path) {
+			return new FileManifest.Entry(path, fileCount, lastModified, new String(toHex(md), StandardCharsets.UTF_8));
+		}
 	}
 
 	/**
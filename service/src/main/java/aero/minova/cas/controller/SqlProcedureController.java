@@ -9,7 +9,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,19 +52,18 @@ public class SqlProcedureController {
 	@Setter
 	QueueService queueService;
 
-	final Object extensionSynchronizer = new Object();
-
 	/**
 	 * Das sind Registrierungen, die ausgeführt werden, wenn eine Prozedur mit den Namen der Registrierung ausgeführt werden soll.
 	 */
-	private final Map<String, Function<Table, ResponseEntity>> extensions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private final ExtensionRegistry<ResponseEntity> extensions = new ExtensionRegistry<>("procedure");
 	/**
 	 * Wird nur verwendet, falls die Tabelle "xvcasUserSecurity" nicht vorhanden ist. In diesem Fall kann man annehmen, das die Datenbank nicht aufgesetzt ist.
 	 */
 	private final Map<String, Function<Table, Boolean>> extensionBootstrapChecks = new HashMap<>();
 
 	/**
-	 * Hiermit lassen sich Erweiterungen registrieren, die ausgeführt werden, wenn eine Prozedur mit der Namen der Registrierung ausgeführt werden soll.
+	 * Hiermit lassen sich Erweiterungen registrieren, die ausgeführt werden, wenn eine Prozedur mit der Namen der Registrierung ausgeführt werden soll. Die
+	 * Erweiterung muss threadsicher sein, da sie parallel für mehrere Anfragen ausgeführt wird.
 	 *
 	 * @param name
 	 *            Name der Erweiterung
@@ -73,12 +71,25 @@ public class SqlProcedureController {
 	 *            Erweiterung
 	 */
 	public void registerExtension(String name, Function<Table, ResponseEntity> ext) {
-		if (extensions.containsKey(name)) {
+		registerExtension(name, ext, ExtensionConcurrency.THREAD_SAFE);
+	}
+
+	/**
+	 * Hiermit lassen sich Erweiterungen registrieren, die ausgeführt werden, wenn eine Prozedur mit der Namen der Registrierung ausgeführt werden soll.
+	 *
+	 * @param name
+	 *            Name der Erweiterung
+	 * @param ext
+	 *            Erweiterung
+	 * @param concurrency
+	 *            Legt fest, ob die Erweiterung parallel, nacheinander oder pro Schlüssel nacheinander ausgeführt wird.
+	 */
+	public void registerExtension(String name, Function<Table, ResponseEntity> ext, ExtensionConcurrency concurrency) {
+		if (!extensions.register(name, ext, concurrency)) {
 			String errorMessage = "Cannot register two extensions with the same name: " + name;
 			customLogger.logSetup(errorMessage);
 			throw new IllegalArgumentException(errorMessage);
 		}
-		extensions.put(name, ext);
 	}
 
 	/**
@@ -107,7 +118,7 @@ public class SqlProcedureController {
 		extensionSetupTable.addColumn(new Column("KeyText", DataType.STRING));
 		extensionSetupTable.addColumn(new Column("Description", DataType.STRING));
 
-		for (String extensionName : extensions.keySet()) {
+		for (String extensionName : extensions.getNames()) {
 			Row extensionSetupRows = new Row();
 			extensionSetupRows.addValue(null);
 			extensionSetupRows.addValue(new Value(extensionName, null));
@@ -175,11 +186,14 @@ public class SqlProcedureController {
 			Optional<ResponseEntity> extensionResult = checkForExtension(inputTable);
 
 			if (extensionResult.isPresent()) {
+				queueService.wakeUp();
 				return extensionResult.get();
 			}
 
 			ResponseEntity result = new ResponseEntity(processSqlProcedureRequest(inputTable, privilegeRequest), HttpStatus.ACCEPTED);
 			queueService.accept(inputTable, result);
+			// Die Prozedur ist committed, die dabei entstandenen Nachrichten können sofort verschickt werden.
+			queueService.wakeUp();
 			if (inputTable.getName().equals("setup")) {
 				database.getConnection().createStatement().execute("set ANSI_WARNINGS on");
 			}
@@ -201,23 +215,19 @@ public class SqlProcedureController {
 	 * @return Das Ergebnis der Extension als Optional mit der übergebenen Table als Input.
 	 */
 	Optional<ResponseEntity> checkForExtension(Table inputTable) {
-		ResponseEntity extResult = null;
-		synchronized (extensionSynchronizer) {
-			if (extensions.containsKey(inputTable.getName())) {
-				final var extension = extensions.get(inputTable.getName());
-				extResult = extension.apply(inputTable);
-				queueService.accept(inputTable, extResult);
-				if (extResult == null) {
-					customLogger.logError(
-							"Extension " + extension
-									+ " returned null. This is not allowed to happen, as otherwise the SQL method is executed after the extension as well.",
-							new NullPointerException());
-				}
-				return Optional.of(extResult);
-			} else {
-				return Optional.empty();
-			}
+		final Optional<Function<Table, ResponseEntity>> extension = extensions.find(inputTable.getName());
+		if (extension.isEmpty()) {
+			return Optional.empty();
+		}
+		ResponseEntity extResult = extension.get().apply(inputTable);
+		queueService.accept(inputTable, extResult);
+		if (extResult == null) {
+			customLogger.logError(
+					"Extension " + inputTable.getName()
+							+ " returned null. This is not allowed to happen, as otherwise the SQL method is executed after the extension as well.",
+					new NullPointerException());
 		}
+		return Optional.of(extResult);
 	}
 
 	/**
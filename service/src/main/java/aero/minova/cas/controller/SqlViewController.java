@@ -4,8 +4,7 @@ import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.Optional;
 import java.util.function.Function;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,6 +21,7 @@ import aero.minova.cas.api.domain.Row;
 import aero.minova.cas.api.domain.Table;
 import aero.minova.cas.api.domain.TableException;
 import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.api.restapi.ColumnarTableHttpMessageConverter;
 import aero.minova.cas.service.ProcedureService;
 import aero.minova.cas.service.SecurityService;
 import aero.minova.cas.service.ViewService;
@@ -41,15 +41,14 @@ public class SqlViewController {
 	@Autowired
 	ProcedureService procedureService;
 
-	final Object extensionSynchronizer = new Object();
-
 	/**
 	 * Das sind Registrierungen, die ausgeführt werden, wenn eine View mit den Namen der Registrierung ausgeführt werden soll.
 	 */
-	private final Map<String, Function<Table, Table>> extensions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+	private final ExtensionRegistry<Table> extensions = new ExtensionRegistry<>("view");
 
 	/**
 	 * Hiermit lassen sich Erweiterungen für Views registrieren, die ausgeführt werden, wenn eine View mit der Namen der Registrierung ausgeführt werden soll.
+	 * Die Erweiterung muss threadsicher sein, da sie parallel für mehrere Anfragen ausgeführt wird.
 	 *
 	 * @param name
 	 *            Name der Erweiterung
@@ -57,12 +56,25 @@ public class SqlViewController {
 	 *            Erweiterung
 	 */
 	public void registerExtension(String name, Function<Table, Table> ext) {
-		if (extensions.containsKey(name)) {
+		registerExtension(name, ext, ExtensionConcurrency.THREAD_SAFE);
+	}
+
+	/**
+	 * Hiermit lassen sich Erweiterungen für Views registrieren, die ausgeführt werden, wenn eine View mit der Namen der Registrierung ausgeführt werden soll.
+	 *
+	 * @param name
+	 *            Name der Erweiterung
+	 * @param ext
+	 *            Erweiterung
+	 * @param concurrency
+	 *            Legt fest, ob die Erweiterung parallel, nacheinander oder pro Schlüssel nacheinander ausgeführt wird.
+	 */
+	public void registerExtension(String name, Function<Table, Table> ext, ExtensionConcurrency concurrency) {
+		if (!extensions.register(name, ext, concurrency)) {
 			String errorMessage = "Cannot register two extensions with the same name: " + name;
 			customLogger.logSetup(errorMessage);
 			throw new IllegalArgumentException(errorMessage);
 		}
-		extensions.put(name, ext);
 	}
 
 	/**
@@ -76,7 +88,7 @@ public class SqlViewController {
 		extensionSetupTable.addColumn(new Column("KeyText", DataType.STRING));
 		extensionSetupTable.addColumn(new Column("Description", DataType.STRING));
 
-		for (String extensionName : extensions.keySet()) {
+		for (String extensionName : extensions.getNames()) {
 			Row extensionSetupRows = new Row();
 			extensionSetupRows.addValue(null);
 			extensionSetupRows.addValue(new Value(extensionName, null));
@@ -93,14 +105,14 @@ public class SqlViewController {
 	}
 
 	@Deprecated
-	@GetMapping(value = "data/index", produces = "application/json")
+	@GetMapping(value = "data/index", produces = { "application/json", ColumnarTableHttpMessageConverter.MEDIA_TYPE_VALUE })
 	public Table getIndexViewGet(@RequestBody Table inputTable) throws Exception {
 		customLogger.logUserRequest(
 				": WARNING! The Get-Mapping of data/index will be removed in 6 months on 1st of September! Please use the Post-Mapping instead.");
 		return getIndexView(inputTable);
 	}
 
-	@PostMapping(value = "data/index", produces = "application/json")
+	@PostMapping(value = "data/index", produces = { "application/json", ColumnarTableHttpMessageConverter.MEDIA_TYPE_VALUE })
 	public Table getIndexView(@RequestBody Table inputTable) throws Exception {
 		customLogger.logUserRequest(": data/view: ", inputTable);
 		return getIndexView(inputTable, true);
@@ -112,9 +124,10 @@ public class SqlViewController {
 		if (authoritiesForThisTable.isEmpty()) {
 			throw new TableException(new RuntimeException("msg.PrivilegeError %" + inputTable.getName()));
 		}
-		if (checkForExtension && extensions.containsKey(inputTable.getName())) {
-			synchronized (extensionSynchronizer) {
-				return extensions.get(inputTable.getName()).apply(inputTable);
+		if (checkForExtension) {
+			Optional<Function<Table, Table>> extension = extensions.find(inputTable.getName());
+			if (extension.isPresent()) {
+				return extension.get().apply(inputTable);
 			}
 		}
 		return viewService.executeView(inputTable, authoritiesForThisTable);
@@ -0,0 +1,212 @@
+package aero.minova.cas.controller;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import aero.minova.cas.api.domain.Column;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.SqlProcedureResult;
+import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.api.domain.XSqlProcedureResult;
+import aero.minova.cas.api.domain.XTable;
+import lombok.Getter;
+
+/**
+ * Ausführungsplan einer x-procedure Transaktion. Beim Erstellen werden alle Referenzen der XTables auf Ergebnisse vorheriger Prozeduren einmalig ausgewertet
+ * und geprüft, sodass fehlende Referenzen auffallen, bevor SQL ausgeführt wird. Die Abhängigkeiten bilden einen gerichteten azyklischen Graphen, da eine
+ * Prozedur nur Ergebnisse von Prozeduren referenzieren darf, die vor ihr ausgeführt werden.
+ * <p>
+ * Während der Ausführung werden die Ergebnisse über ihre Id abgelegt. Die Spalten-Indizes der Output-Parameter werden pro Ergebnis nur einmal ermittelt.
+ * Dadurch wächst der Aufwand für das Auflösen der Referenzen nur noch linear mit der Anzahl der Prozeduren.
+ */
+class XProcedurePlan {
+
+	/**
+	 * Eine Referenz eines Values auf einen Output-Parameter einer vorher ausgeführten Prozedur.
+	 */
+	@Getter
+	static class Reference {
+		private final int rowIndex;
+		private final int valueIndex;
+		private final String dependencyId;
+		private final int position;
+		private final String columnName;
+
+		Reference(int rowIndex, int valueIndex, String dependencyId, int position, String columnName) {
+			this.rowIndex = rowIndex;
+			this.valueIndex = valueIndex;
+			this.dependencyId = dependencyId;
+			this.position = position;
+			this.columnName = columnName;
+		}
+	}
+
+	/**
+	 * Ein Schritt des Plans, d.h. eine XTable mit ihren bereits ausgewerteten Referenzen.
+	 */
+	@Getter
+	static class Step {
+		private final XTable xTable;
+		private final List<Reference> references;
+
+		Step(XTable xTable, List<Reference> references) {
+			this.xTable = xTable;
+			this.references = references;
+		}
+	}
+
+	@Getter
+	private final List<Step> steps;
+
+	/**
+	 * Die Ergebnisse der bereits ausgeführten Prozeduren. Bei doppelten Ids gilt, wie bisher, das erste Ergebnis.
+	 */
+	private final Map<String, XSqlProcedureResult> resultsById = new HashMap<>();
+
+	/**
+	 * Pro Ergebnis-Id die Spalten-Indizes der Output-Parameter.
+	 */
+	private final Map<String, Map<String, Integer>> columnIndexesById = new HashMap<>();
+
+	private XProcedurePlan(List<Step> steps, Collection<XSqlProcedureResult> previousResults) {
+		this.steps = steps;
+		for (XSqlProcedureResult result : previousResults) {
+			addResult(result);
+		}
+	}
+
+	/**
+	 * Erstellt den Ausführungsplan für die XTables.
+	 *
+	 * @param inputTables
+	 *            Die XTables in der Reihenfolge, in der sie ausgeführt werden sollen.
+	 * @param previousResults
+	 *            Die Ergebnisse bereits ausgeführter Prozeduren, die ebenfalls referenziert werden dürfen.
+	 * @return Der Ausführungsplan.
+	 * @throws RuntimeException
+	 *             wenn eine Referenz auf eine Id verweist, die weder in den vorherigen Ergebnissen noch in einer früheren XTable vorkommt
+	 */
+	static XProcedurePlan compile(List<XTable> inputTables, Collection<XSqlProcedureResult> previousResults) {
+		Map<String, Boolean> knownIds = new HashMap<>();
+		for (XSqlProcedureResult result : previousResults) {
+			knownIds.put(result.getId(), Boolean.TRUE);
+		}
+
+		List<Step> steps = new ArrayList<>(inputTables.size());
+		for (XTable xt : inputTables) {
+			List<Reference> references = new ArrayList<>();
+			List<Row> rows = xt.getTable().getRows();
+			for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
+				List<Value> values = rows.get(rowIndex).getValues();
+				for (int valueIndex = 0; valueIndex < values.size(); valueIndex++) {
+					Value v = values.get(valueIndex);
+					// Die Referenz-Id steht in der Rule des Values. Im Value des Values steht, in welcher Column das der gewünschte Parameter steht.
+					if (v != null && v.getRule() != null) {
+						if (!knownIds.containsKey(v.getRule())) {
+							throw new RuntimeException("Cannot find SqlProcedureResult with Id " + v.getRule());
+						}
+						references.add(parseReference(rowIndex, valueIndex, v));
+					}
+				}
+			}
+			steps.add(new Step(xt, Collections.unmodifiableList(references)));
+			// Erst nach der XTable selbst darf ihre Id referenziert werden.
+			knownIds.put(xt.getId(), Boolean.TRUE);
+		}
+		return new XProcedurePlan(Collections.unmodifiableList(steps), previousResults);
+	}
+
+	private static Reference parseReference(int rowIndex, int valueIndex, Value v) {
+		int position = 0;
+		String stringValue = v.getStringValue();
+		/*
+		 * Bei mehreren Rows in einer Referenztabelle, wird mit - die Position angegeben, in der geschickten Table z.B. r-parent_call-0-KeyLong. Der Value dazu
+		 * würde hier folgendermaßen aussehen: Value("0-KeyLong","parent_call")
+		 */
+		if (stringValue.contains("-")) {
+			// Spaltennamen könnten auch '-' enthalten, deshalb kein Split.
+			String positionString = stringValue.substring(0, stringValue.indexOf("-"));
+			position = Integer.parseInt(positionString);
+			stringValue = stringValue.substring(positionString.length() + 1);
+		}
+		return new Reference(rowIndex, valueIndex, v.getRule(), position, stringValue);
+	}
+
+	/**
+	 * @return Die XTables aller Schritte in der Reihenfolge ihrer Ausführung.
+	 */
+	List<XTable> getXTables() {
+		List<XTable> xTables = new ArrayList<>(steps.size());
+		for (Step step : steps) {
+			xTables.add(step.getXTable());
+		}
+		return xTables;
+	}
+
+	/**
+	 * Legt das Ergebnis einer ausgeführten Prozedur ab, damit nachfolgende Schritte es referenzieren können.
+	 *
+	 * @param result
+	 *            Das Ergebnis der Prozedur.
+	 */
+	void addResult(XSqlProcedureResult result) {
+		resultsById.putIfAbsent(result.getId(), result);
+	}
+
+	/**
+	 * Ersetzt alle Referenzen des Schritts durch die Values aus den Ergebnissen der referenzierten Prozeduren.
+	 *
+	 * @param step
+	 *            Der Schritt, dessen Referenzen aufgelöst werden sollen.
+	 * @return Die Table des Schritts, in welcher die Values bereits ersetzt wurden.
+	 * @throws RuntimeException
+	 *             wenn das ResultSet einer Dependency keinen Output-Parameter enthält
+	 * @throws RuntimeException
+	 *             wenn im ResultSet einer Dependency kein Reference-Value gefunden wird
+	 */
+	Table fillInDependencies(Step step) {
+		Table workingTable = step.getXTable().getTable();
+		for (Reference reference : step.getReferences()) {
+			XSqlProcedureResult dependency = resultsById.get(reference.getDependencyId());
+			if (dependency == null) {
+				throw new RuntimeException("Cannot find SqlProcedureResult with Id " + reference.getDependencyId());
+			}
+
+			// Ohne OutputParameter kann man nichts referenzieren.
+			if (dependency.getResultSet().getOutputParameters() == null) {
+				throw new RuntimeException("No output parameters for resultset with id " + dependency.getId());
+			}
+
+			Value newValue = findValue(dependency, reference.getColumnName(), reference.getPosition());
+			if (newValue == null) {
+				throw new RuntimeException("No reference value found for column " + reference.getColumnName() + " in row " + reference.getPosition() + " !");
+			}
+			// Tausche Value mit dem Ergebnis aus einem der ResultSets aus.
+			workingTable.getRows().get(reference.getRowIndex()).getValues().set(reference.getValueIndex(), newValue);
+		}
+		return workingTable;
+	}
+
+	private Value findValue(XSqlProcedureResult dependency, String columnName, int row) {
+		SqlProcedureResult resultSet = dependency.getResultSet();
+		Integer columnIndex = columnIndexesById.computeIfAbsent(dependency.getId(), id -> indexColumns(resultSet.getOutputParameters())).get(columnName);
+		if (columnIndex == null) {
+			return null;
+		}
+		return resultSet.getOutputParameters().getRows().get(row).getValues().get(columnIndex);
+	}
+
+	private static Map<String, Integer> indexColumns(Table outputParameters) {
+		Map<String, Integer> columnIndexes = new HashMap<>();
+		List<Column> columns = outputParameters.getColumns();
+		for (int i = 0; i < columns.size(); i++) {
+			columnIndexes.putIfAbsent(columns.get(i).getName(), i);
+		}
+		return columnIndexes;
+	}
+}
@@ -6,7 +6,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.function.BiFunction;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -120,10 +122,15 @@ public class XSqlProcedureController {
 
 			} else { // Ansonsten die Prozeduren einzeln verarbeiten
 
+				// Die Referenzen und die Rechte aller Prozeduren werden vorab geprüft. Ist etwas ungültig, wird gar nicht erst eine Transaktion geöffnet.
+				XProcedurePlan plan = XProcedurePlan.compile(inputTables, resultSets);
+				Map<String, List<Row>> privileges = createPrivilegeCache();
+				resolvePrivileges(inputTables, privileges);
+
 				connection = systemDatabase.getConnection();
-				resultSets = processXProcedures(inputTables, resultSets, sb, connection, inputTablesWithResults);
+				resultSets = processXProcedures(plan, resultSets, sb, connection, inputTablesWithResults, privileges);
 				// Hier werden die Checks nach der eigentlichen Anfrage ausgeführt.
-				checkFollowUpProcedures(inputTables, resultSets, sb, connection, inputTablesWithResults);
+				checkFollowUpProcedures(inputTables, resultSets, sb, connection, inputTablesWithResults, privileges);
 				// Erst wenn auch die Checks erfolgreich waren, wird der Commit gesendet.
 				connection.commit();
 			}
@@ -135,6 +142,8 @@ public class XSqlProcedureController {
 					queueService.accept(mapEntry.getKey(), new ResponseEntity<>(result, HttpStatus.ACCEPTED));
 				}
 			}
+			// Die Nachrichten nicht erst beim nächsten Intervall, sondern sofort verschicken.
+			queueService.wakeUp();
 		} catch (Throwable e) {
 			customLogger.logError("XSqlProcedure could not be executed: " + sb, e);
 			if (connection != null) {
@@ -176,13 +185,7 @@ public class XSqlProcedureController {
 
 		// Privilegien Prüfen und Extension ausführen
 		if (extensionFunction != null) {
-			for (XTable table : inputTables) {
-				List<Row> privilegeRequest = new ArrayList<>();
-				privilegeRequest.addAll(securityService.getPrivilegePermissions(table.getTable().getName()));
-				if (privilegeRequest.isEmpty()) {
-					throw new ProcedureException("msg.PrivilegeError %" + table.getTable());
-				}
-			}
+			resolvePrivileges(inputTables, new TreeMap<>(String.CASE_INSENSITIVE_ORDER));
 
 			extResult = extensionFunction.apply(inputTables, inputTablesWithResults);
 		}
@@ -210,17 +213,61 @@ public class XSqlProcedureController {
 	@Deprecated
 	private List<XSqlProcedureResult> processXProcedures(List<XTable> inputTables, List<XSqlProcedureResult> resultSets, StringBuffer sb, Connection connection)
 			throws Exception {
-		return processXProcedures(inputTables, resultSets, sb, connection, null);
+		return processXProcedures(XProcedurePlan.compile(inputTables, resultSets), resultSets, sb, connection, null, createPrivilegeCache());
+	}
+
+	/**
+	 * Erstellt den Zwischenspeicher für die Rechte einer Transaktion.
+	 *
+	 * @return Eine leere Map, in der die Rechte pro Prozedur (case insensitive) abgelegt werden, oder null, wenn die Rechte nicht geprüft werden können, weil
+	 *         die Datenbank-Objekte für die Privileg-Prüfung fehlen.
+	 * @throws Exception
+	 *             Fehler bei der Ermittelung
+	 */
+	private Map<String, List<Row>> createPrivilegeCache() throws Exception {
+		return securityService.arePrivilegeStoresSetup() ? new TreeMap<>(String.CASE_INSENSITIVE_ORDER) : null;
+	}
+
+	/**
+	 * Ermittelt die Rechte aller Prozeduren der übergebenen XTables, die noch nicht im Zwischenspeicher liegen, mit einer einzigen Abfrage und prüft, ob für
+	 * jede Prozedur ein Recht vorhanden ist.
+	 *
+	 * @param inputTables
+	 *            Die XTables, deren Prozeduren ausgeführt werden sollen.
+	 * @param privileges
+	 *            Der Zwischenspeicher der Rechte. Ist er null, werden keine Rechte geprüft.
+	 * @throws ProcedureException
+	 *             "msg.PrivilegeError", wenn für eine Prozedur kein Recht vorhanden ist
+	 */
+	void resolvePrivileges(List<XTable> inputTables, Map<String, List<Row>> privileges) throws ProcedureException {
+		if (privileges == null) {
+			return;
+		}
+		Set<String> missingPrivileges = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		for (XTable xt : inputTables) {
+			if (!privileges.containsKey(xt.getTable().getName())) {
+				missingPrivileges.add(xt.getTable().getName());
+			}
+		}
+		if (!missingPrivileges.isEmpty()) {
+			privileges.putAll(securityService.getPrivilegePermissions(missingPrivileges));
+		}
+		for (XTable xt : inputTables) {
+			List<Row> privilegeRows = privileges.get(xt.getTable().getName());
+			if (privilegeRows == null || privilegeRows.isEmpty()) {
+				throw new ProcedureException("msg.PrivilegeError %" + xt.getTable().getName());
+			}
+		}
 	}
 
 	/**
 	 * Überprüft, ob nötige Privilegien für jede XTable vorhanden sind und führt dann die entsprechende Prozedur aus. Hier wird noch KEIN Commit auf die
 	 * Datenbank durchgeführt. Es wird ebenfalls überprüft, ob eine mögliche Extension vorhanden ist.
 	 *
-	 * @param inputTables
-	 *            Eine Liste an XTables, welche Prozeduren enthalten ausgeführt werden sollen.
+	 * @param plan
+	 *            Der Ausführungsplan der XTables, welche Prozeduren enthalten, die ausgeführt werden sollen.
 	 * @param resultSets
-	 *            Die bisher noch leere Liste an XSqlResultSets, welche in dieser Methode gefüllt weden.
+	 *            Die Liste an XSqlResultSets, welche in dieser Methode gefüllt weden.
 	 * @param sb
 	 *            Ein StringBuffer für das Loggen der Prozedur-Aufrufe
 	 * @param connection
@@ -228,24 +275,27 @@ public class XSqlProcedureController {
 	 * @param inputTablesWithResults
 	 *            Eine Map, in welcher die InputTables und deren SqlProcedureResults gespeichert werden. Wird zum Versenden von Nachrichten über den
 	 *            QueueService später benötigt.
+	 * @param privileges
+	 *            Die bereits ermittelten Rechte der Transaktion. Fehlende Rechte werden für alle XTables gemeinsam nachgeladen. Ist die Map null, werden keine
+	 *            Rechte geprüft.
 	 * @return Gibt die zuvor leere Liste an XSqlProcedureResults zurück, welche nun gefüllt ist.
 	 * @throws Exception
 	 *             Wirft einen Fehler, falls das Privileg nicht vorhanden ist oder es einen Fehler bei der Ausführung der Prozedur gab.
 	 */
-	private List<XSqlProcedureResult> processXProcedures(List<XTable> inputTables, List<XSqlProcedureResult> resultSets, StringBuffer sb, Connection connection,
-			Map<Table, List<SqlProcedureResult>> inputTablesWithResults) throws Exception {
-		for (XTable xt : inputTables) {
+	private List<XSqlProcedureResult> processXProcedures(XProcedurePlan plan, List<XSqlProcedureResult> resultSets, StringBuffer sb, Connection connection,
+			Map<Table, List<SqlProcedureResult>> inputTablesWithResults, Map<String, List<Row>> privileges) throws Exception {
+		// Rechteprüfung für alle Prozeduren auf einmal
+		resolvePrivileges(plan.getXTables(), privileges);
+
+		for (XProcedurePlan.Step step : plan.getSteps()) {
+			XTable xt = step.getXTable();
 			SqlProcedureResult result = new SqlProcedureResult();
 			// Referenzen auf Ergebnisse bereits ausgeführter Prozeduren auflösen.
-			Table filledTable = fillInDependencies(xt, resultSets);
+			Table filledTable = plan.fillInDependencies(step);
 
-			// Rechteprüfung
 			final List<Row> privilegeRequest = new ArrayList<>();
-			if (securityService.arePrivilegeStoresSetup()) {
-				privilegeRequest.addAll(securityService.getPrivilegePermissions(filledTable.getName()));
-				if (privilegeRequest.isEmpty()) {
-					throw new ProcedureException("msg.PrivilegeError %" + filledTable.getName());
-				}
+			if (privileges != null) {
+				privilegeRequest.addAll(privileges.get(filledTable.getName()));
 			}
 
 			ResponseEntity extensionResult = sqlProcedureController.checkForExtension(filledTable).orElse(null);
@@ -271,7 +321,9 @@ public class XSqlProcedureController {
 			}
 
 			// SqlProcedureResult wird in Liste hinzugefügt, um dessen Werte später in andere Values schreiben zu können.
-			resultSets.add(new XSqlProcedureResult(xt.getId(), result));
+			XSqlProcedureResult xSqlProcedureResult = new XSqlProcedureResult(xt.getId(), result);
+			resultSets.add(xSqlProcedureResult);
+			plan.addResult(xSqlProcedureResult);
 
 		}
 		return resultSets;
@@ -286,51 +338,15 @@ public class XSqlProcedureController {
 	 *            Die Liste an bereits ausgeführten xSqlProcedureResults. Diese beinhalten die Referenz-Values.
 	 * @return Eine Table, in welcher der Value bereits ersetzt wurde.
 	 * @throws RuntimeException
+	 *             wenn eine Referenz auf eine nicht vorhandene Id verweist
+	 * @throws RuntimeException
 	 *             wenn das ResultSet einer Dependency keinen Output-Parameter enthält
 	 * @throws RuntimeException
 	 *             wenn im ResultSet einer Dependency kein Reference-Value gefunden wird
 	 */
 	Table fillInDependencies(XTable dependant, List<XSqlProcedureResult> dependencies) {
-
-		Table workingTable = dependant.getTable();
-
-		for (Row r : workingTable.getRows()) {
-			for (int i = 0; i < r.getValues().size(); i++) {
-				Value v = r.getValues().get(i);
-				// Die Referenz-Id steht in der Rule des Values. Im Value des Values steht, in welcher Column das der gewünschte Parameter steht.
-				if (v != null && v.getRule() != null) {
-					XSqlProcedureResult dependency = findxSqlResultSet(v.getRule(), dependencies);
-					int position = 0;
-
-					String stringValue = v.getStringValue();
-					/*
-					 * Bei mehreren Rows in einer Referenztabelle, wird mit - die Position angegeben, in der geschickten Table z.B. r-parent_call-0-KeyLong. Der
-					 * Value dazu würde hier folgendermaßen aussehen: Value("0-KeyLong","parent_call")
-					 */
-					if (stringValue.contains("-")) {
-						// Spaltennamen könnten auch '-' enthalten, deshalb kein Split.
-						String positionString = stringValue.substring(0, stringValue.indexOf("-"));
-						position = Integer.parseInt(positionString);
-						stringValue = stringValue.substring(positionString.length() + 1);
-					}
-
-					// Ohne OutputParameter kann man nichts referenzieren.
-					if (dependency.getResultSet().getOutputParameters() == null) {
-						throw new RuntimeException("No output parameters for resultset with id " + dependency.getId());
-					}
-
-					Value newValue = findValueInColumn(dependency.getResultSet(), stringValue, position).orElse(null);
-					if (newValue == null) {
-						throw new RuntimeException("No reference value found for column " + stringValue + " in row " + position + " !");
-					}
-					// Tausche Value mit dem Ergebnis aus einem der ResultSets aus.
-					r.getValues().remove(i);
-					r.getValues().add(i, newValue);
-				}
-			}
-		}
-
-		return workingTable;
+		XProcedurePlan plan = XProcedurePlan.compile(List.of(dependant), dependencies);
+		return plan.fillInDependencies(plan.getSteps().get(0));
 	}
 
 	/**
@@ -391,6 +407,24 @@ public class XSqlProcedureController {
 		return resultsWithThatName;
 	}
 
+	/**
+	 * Gruppiert die ResultSets nach dem Namen ihrer Output-Parameter, wie {@link #findxSqlResultSetByName(String, List)}, nur für alle Namen auf einmal.
+	 *
+	 * @param resultSets
+	 *            Die Liste an xSqlProcedureResults, welche zur Verfügung stehen.
+	 * @return Pro Tabellen-Namen die xSqlProcedureResults mit diesem Namen, in der ursprünglichen Reihenfolge.
+	 */
+	Map<String, List<XSqlProcedureResult>> groupxSqlResultSetsByName(List<XSqlProcedureResult> resultSets) {
+		Map<String, List<XSqlProcedureResult>> resultsByName = new HashMap<>();
+		for (XSqlProcedureResult xSqlResult : resultSets) {
+			if (xSqlResult.getResultSet() != null && xSqlResult.getResultSet().getOutputParameters() != null
+					&& xSqlResult.getResultSet().getOutputParameters().getName() != null) {
+				resultsByName.computeIfAbsent(xSqlResult.getResultSet().getOutputParameters().getName(), name -> new ArrayList<>()).add(xSqlResult);
+			}
+		}
+		return resultsByName;
+	}
+
 	/**
 	 * Findet anhand der übergebenen Liste an XTables und über einen Aufruf der xtcasUserPrivilege-Tabelle heraus, welche Check-Prozeduren für die gerade
 	 * ausgeführten XProzeduren durchgeführt werden müssen. In dieser Methode wird noch kein Commit an die Datenbank gesendet. Methode dient nur zur
@@ -407,7 +441,13 @@ public class XSqlProcedureController {
 	 */
 	@Deprecated
 	private void checkFollowUpProcedures(List<XTable> inputTables, List<XSqlProcedureResult> xsqlResults, StringBuffer sb, Connection connection) {
-		checkFollowUpProcedures(inputTables, xsqlResults, sb, connection, null);
+		try {
+			checkFollowUpProcedures(inputTables, xsqlResults, sb, connection, null, createPrivilegeCache());
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
 	}
 
 	/**
@@ -425,11 +465,13 @@ public class XSqlProcedureController {
 	 * @param inputTablesWithResults
 	 *            Eine Map, in welcher die InputTables und deren SqlProcedureResults gespeichert werden. Wird zum Versenden von Nachrichten über den
 	 *            QueueService später benötigt.
+	 * @param privileges
+	 *            Die bereits ermittelten Rechte der Transaktion. Die Rechte der Check-Prozeduren werden gemeinsam nachgeladen.
 	 * @throws RuntimeException
 	 *             "msg.PrivilegeError"
 	 */
 	private void checkFollowUpProcedures(List<XTable> inputTables, List<XSqlProcedureResult> xsqlResults, StringBuffer sb, Connection connection,
-			Map<Table, List<SqlProcedureResult>> inputTablesWithResults) {
+			Map<Table, List<SqlProcedureResult>> inputTablesWithResults, Map<String, List<Row>> privileges) {
 		// Die nötigen Check-Prozeduren aus der xtcasUserPrivilege-Tabelle auslesen.
 		Table privilegeRequest = new Table();
 		privilegeRequest.setName("xtcasUserPrivilege");
@@ -454,6 +496,9 @@ public class XSqlProcedureController {
 				throw new RuntimeException("msg.PrivilegeError");
 			}
 
+			// Die Ergebnisse werden einmalig nach Namen gruppiert, statt sie für jeden TransactionChecker erneut zu durchsuchen.
+			Map<String, List<XSqlProcedureResult>> resultsByName = groupxSqlResultSetsByName(xsqlResults);
+
 			// Neue Prozedur-Aufrufe für alle gefundenen TransactionChecker zusammenbauen.
 			List<XTable> checksXtables = new ArrayList<>();
 			for (Row privilegeCheck : checksPerPrivilege.getRows()) {
@@ -462,7 +507,7 @@ public class XSqlProcedureController {
 					String transactionChecker = privilegeCheck.getValues().get(1).getStringValue();
 
 					// Alle ResultSets mit diesem Namen (nicht ID) müssen gecheckt werden.
-					List<XSqlProcedureResult> resultsToCheck = findxSqlResultSetByName(dependencyTableName, xsqlResults);
+					List<XSqlProcedureResult> resultsToCheck = new ArrayList<>(resultsByName.getOrDefault(dependencyTableName, List.of()));
 
 					// Falls keine passenden OutputParameter gefunden werden können, muss das ResultSet des Haupt-Aufrufs (der erste in der Transaktion)
 					// verwendet werden.
@@ -502,7 +547,7 @@ public class XSqlProcedureController {
 
 				}
 			}
-			processXProcedures(checksXtables, xsqlResults, sb, connection, inputTablesWithResults);
+			processXProcedures(XProcedurePlan.compile(checksXtables, xsqlResults), xsqlResults, sb, connection, inputTablesWithResults, privileges);
 		} catch (Exception e) {
 			throw new RuntimeException("Error while trying to find follow up procedures.", e);
 		}
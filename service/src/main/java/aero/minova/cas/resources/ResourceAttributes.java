@@ -0,0 +1,117 @@
+package aero.minova.cas.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Die Attribute einer Resource. Größe und Änderungszeitpunkt stammen aus dem Jar-Eintrag bzw. der Datei, in der die Resource liegt. Damit können Aufrufer
+ * entscheiden, ob sie eine Resource zwischenspeichern, ohne sie dafür zu lesen.
+ */
+class ResourceAttributes implements BasicFileAttributes {
+    private final Object fileKey;
+    private final boolean directory;
+    private final long size;
+    private final FileTime lastModified;
+
+    private ResourceAttributes(Object fileKeyArg, boolean directoryArg, long sizeArg, FileTime lastModifiedArg) {
+        fileKey = fileKeyArg;
+        directory = directoryArg;
+        size = sizeArg;
+        lastModified = lastModifiedArg;
+    }
+
+    /**
+     * @param url
+     *            Die URL der Resource oder null, falls der Classloader sie nicht kennt.
+     * @param path
+     *            Der Pfad der Resource.
+     * @param isDirectory
+     *            Ob die Resource laut Resourcen-Liste ein Ordner ist.
+     * @throws NoSuchFileException
+     *             Falls es die Resource nicht gibt.
+     */
+    static ResourceAttributes read(URL url, Path path, boolean isDirectory) throws IOException {
+        if (isDirectory) {
+            return new ResourceAttributes(path, true, 0, FileTime.fromMillis(0));
+        }
+        if (url == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        if (url.getProtocol().equals("file")) {
+            try {
+                final var file = Paths.get(url.toURI());
+                return new ResourceAttributes(path, Files.isDirectory(file), Files.size(file), Files.getLastModifiedTime(file));
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        final var connection = url.openConnection();
+        if (connection instanceof JarURLConnection) {
+            // Der Jar-Eintrag wird gelesen, ohne die Resource selbst zu öffnen.
+            final var entry = ((JarURLConnection) connection).getJarEntry();
+            if (entry != null) {
+                return new ResourceAttributes(path, entry.isDirectory(), entry.getSize(), FileTime.fromMillis(Math.max(entry.getTime(), 0)));
+            }
+        }
+        try (InputStream in = connection.getInputStream()) {
+            return new ResourceAttributes(path, false, connection.getContentLengthLong(), FileTime.fromMillis(Math.max(connection.getLastModified(), 0)));
+        }
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return lastModified;
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return lastModified;
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return lastModified;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return !directory;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    /**
+     * @return Die Größe in Bytes oder -1, falls sie nicht bekannt ist.
+     */
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Object fileKey() {
+        return fileKey;
+    }
+}
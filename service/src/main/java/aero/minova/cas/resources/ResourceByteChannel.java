@@ -0,0 +1,114 @@
+package aero.minova.cas.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Liest eine große Resource als Stream, statt sie komplett in den Speicher zu laden. Wird auf eine frühere Position gesprungen, wird die Resource neu
+ * geöffnet.
+ */
+class ResourceByteChannel implements SeekableByteChannel {
+
+    @FunctionalInterface
+    interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    private final Opener opener;
+    private final long size;
+    private InputStream in;
+    private long position;
+    private long streamPosition;
+    private boolean open = true;
+
+    ResourceByteChannel(Opener openerArg, long sizeArg) {
+        opener = openerArg;
+        size = sizeArg;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (in == null || streamPosition > position) {
+            if (in != null) {
+                in.close();
+            }
+            in = opener.open();
+            streamPosition = 0;
+        }
+        while (streamPosition < position) {
+            final var skipped = in.skip(position - streamPosition);
+            if (skipped > 0) {
+                streamPosition += skipped;
+            } else if (in.read() < 0) {
+                return -1;
+            } else {
+                streamPosition++;
+            }
+        }
+        final var buffer = new byte[Math.min(dst.remaining(), 8192)];
+        final var read = in.read(buffer);
+        if (read < 0) {
+            return -1;
+        }
+        dst.put(buffer, 0, read);
+        position += read;
+        streamPosition = position;
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long newSize) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package aero.minova.cas.resources;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Hält die Inhalte kleiner Resourcen im Speicher. Ist die Gesamtgröße erreicht, werden die am längsten nicht mehr gelesenen Resourcen entfernt.
+ */
+class ResourceContentCache {
+    private final long maxEntrySize;
+    private final long maxSize;
+    private final LinkedHashMap<String, byte[]> contents = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * @param maxEntrySizeArg
+     *            Die maximale Größe einer Resource in Bytes, die zwischengespeichert wird.
+     * @param maxSizeArg
+     *            Die maximale Größe aller zwischengespeicherten Resourcen in Bytes.
+     */
+    ResourceContentCache(long maxEntrySizeArg, long maxSizeArg) {
+        maxEntrySize = maxEntrySizeArg;
+        maxSize = maxSizeArg;
+    }
+
+    /**
+     * @return true, wenn eine Resource dieser Größe zwischengespeichert wird.
+     */
+    boolean isCacheable(long resourceSize) {
+        return resourceSize >= 0 && resourceSize <= maxEntrySize && resourceSize <= maxSize;
+    }
+
+    synchronized byte[] get(String resourcePath) {
+        return contents.get(resourcePath);
+    }
+
+    synchronized void put(String resourcePath, byte[] content) {
+        if (!isCacheable(content.length)) {
+            return;
+        }
+        final var previous = contents.put(resourcePath, content);
+        size += content.length - (previous == null ? 0 : previous.length);
+        final Iterator<Map.Entry<String, byte[]>> eldest = contents.entrySet().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            final var entry = eldest.next();
+            if (entry.getValue() != content) {
+                size -= entry.getValue().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * @return Die Größe aller zwischengespeicherten Resourcen in Bytes.
+     */
+    synchronized long size() {
+        return size;
+    }
+}
@@ -11,15 +11,21 @@ import java.util.Set;
 import static aero.minova.cas.resources.ResourceFileSystemProvider.FILE_SYSTEM_PROVIDER;
 
 public class ResourceFileSystem extends FileSystem {
+    private final ResourceFileSystemProvider provider;
     private ClassLoader classLoader;
 
     public ResourceFileSystem(ClassLoader classLoaderArg) {
+        this(null, classLoaderArg);
+    }
+
+    ResourceFileSystem(ResourceFileSystemProvider providerArg, ClassLoader classLoaderArg) {
+        provider = providerArg;
         classLoader = classLoaderArg;
     }
 
     @Override
     public FileSystemProvider provider() {
-        return FILE_SYSTEM_PROVIDER;
+        return provider == null ? FILE_SYSTEM_PROVIDER : provider;
     }
 
     @Override
@@ -2,35 +2,87 @@ package aero.minova.cas.resources;
 
 import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileAttributeView;
-import java.nio.file.attribute.FileTime;
 import java.nio.file.spi.FileSystemProvider;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.Arrays.asList;
 
+/**
+ * Stellt die Resourcen aus deployed.resources.txt als Dateisystem bereit. Die Resourcen-Liste wird beim Erstellen einmal indiziert, damit walk,
+ * newDirectoryStream und die Suche nach Dateinamen nur die passenden Resourcen anfassen und nicht jedes Mal die komplette Liste durchsuchen.
+ * <p>
+ * Alle Pfade gehören zu einem gemeinsamen {@link ResourceFileSystem}. Die Inhalte kleiner Resourcen werden in einem begrenzten LRU-Cache gehalten, große
+ * Resourcen werden beim Lesen gestreamt.
+ */
 public class ResourceFileSystemProvider extends FileSystemProvider {
     public static ResourceFileSystemProvider FILE_SYSTEM_PROVIDER = new ResourceFileSystemProvider(ResourceFileSystemProvider.class.getClassLoader());
     public static final String SCHEME = "aero-minova-classloader-resource";
+    /**
+     * Größere Resourcen werden nicht zwischengespeichert, sondern gestreamt.
+     */
+    static final long MAX_CACHED_RESOURCE_SIZE = 256 * 1024;
+    /**
+     * Die maximale Größe aller zwischengespeicherten Resourcen.
+     */
+    static final long MAX_CACHE_SIZE = 32 * 1024 * 1024;
     private final ClassLoader classLoader;
-    private final List<String> resourceList = new ArrayList<>();
+    private final ResourceFileSystem fileSystem;
+    private final ResourceContentCache contentCache;
+    /**
+     * Die Resourcen ändern sich zur Laufzeit nicht, deshalb werden ihre Attribute nur einmal gelesen.
+     */
+    private final Map<String, ResourceAttributes> attributesByPath = new ConcurrentHashMap<>();
+    /**
+     * Alle Resourcen sortiert nach Pfad mit ihrer Position in der Resourcen-Liste. Damit können alle Resourcen unterhalb eines Ordners als Teilbereich gelesen
+     * und in der ursprünglichen Reihenfolge zurückgegeben werden.
+     */
+    private final NavigableMap<String, Integer> resourceIndex = new TreeMap<>();
+    /**
+     * Die direkten Kinder jedes Ordners. Der Schlüssel ist der Ordner mit '/' am Anfang und Ende, z.B. "/forms/".
+     */
+    private final Map<String, Set<String>> childrenByDirectory = new HashMap<>();
+    /**
+     * Die Pfade aller Dateien mit einem Dateinamen in der Reihenfolge der Resourcen-Liste.
+     */
+    private final Map<String, List<String>> resourcesByName = new HashMap<>();
 
     public ResourceFileSystemProvider(ClassLoader classLoaderArg) {
+        this(classLoaderArg, readResourceList());
+    }
+
+    ResourceFileSystemProvider(ClassLoader classLoaderArg, List<String> resourceList) {
+        this(classLoaderArg, resourceList, MAX_CACHED_RESOURCE_SIZE, MAX_CACHE_SIZE);
+    }
+
+    ResourceFileSystemProvider(ClassLoader classLoaderArg, List<String> resourceList, long maxCachedResourceSize, long maxCacheSize) {
         classLoader = classLoaderArg;
+        fileSystem = new ResourceFileSystem(this, classLoaderArg);
+        contentCache = new ResourceContentCache(maxCachedResourceSize, maxCacheSize);
+        for (final var resource : resourceList) {
+            index(resource);
+        }
+    }
+
+    private static List<String> readResourceList() {
+        final List<String> resourceList = new ArrayList<>();
         try {
-            final var deployedResources = new String(getClass().getResourceAsStream("/aero.minova.app.resources/deployed.resources.txt").readAllBytes());
+            final var deployedResources = new String(ResourceFileSystemProvider.class.getResourceAsStream("/aero.minova.app.resources/deployed.resources.txt").readAllBytes());
             for (final var resourceListPath : deployedResources.split("\n")) {
                 if (resourceListPath.isBlank()) {
                     continue;
                 }
-                final var resourceListStr = new String(getClass().getResourceAsStream(resourceListPath).readAllBytes());
+                final var resourceListStr = new String(ResourceFileSystemProvider.class.getResourceAsStream(resourceListPath).readAllBytes());
                 for (final var resource : resourceListStr.split("\n")) {
                     if (resource.isBlank()) {
                         continue;
@@ -41,6 +93,30 @@ public class ResourceFileSystemProvider extends FileSystemProvider {
         } catch (Throwable th) {
             throw new RuntimeException(th);
         }
+        return resourceList;
+    }
+
+    private void index(String resource) {
+        if (resourceIndex.putIfAbsent(resource, resourceIndex.size()) != null) {
+            return;
+        }
+        final var isDirectory = resource.endsWith("/");
+        final var withoutTrailingSlash = isDirectory ? resource.substring(0, resource.length() - 1) : resource;
+        final var separator = withoutTrailingSlash.lastIndexOf('/');
+        if (separator < 0) {
+            return;
+        }
+        if (!isDirectory) {
+            resourcesByName.computeIfAbsent(withoutTrailingSlash.substring(separator + 1), name -> new ArrayList<>()).add(resource);
+        }
+        // Ordner, die nicht selbst in der Liste stehen, werden trotzdem als Kinder ihres Eltern-Ordners eingetragen.
+        var child = resource;
+        var parent = withoutTrailingSlash.substring(0, separator + 1);
+        while (childrenByDirectory.computeIfAbsent(parent, directory -> new LinkedHashSet<>()).add(child) && parent.length() > 1) {
+            child = parent;
+            final var parentWithoutTrailingSlash = parent.substring(0, parent.length() - 1);
+            parent = parentWithoutTrailingSlash.substring(0, parentWithoutTrailingSlash.lastIndexOf('/') + 1);
+        }
     }
 
     @Override
@@ -50,12 +126,12 @@ public class ResourceFileSystemProvider extends FileSystemProvider {
 
     @Override
     public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
-        return new ResourceFileSystem(classLoader);
+        return fileSystem;
     }
 
     @Override
     public FileSystem getFileSystem(URI uri) {
-        return new ResourceFileSystem(classLoader);
+        return fileSystem;
     }
 
     @Override
@@ -69,62 +145,153 @@ public class ResourceFileSystemProvider extends FileSystemProvider {
 
     @Override
     public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs) throws IOException {
+        final var resourcePath = toResourcePath(path);
+        final var content = readCachedContent(resourcePath);
+        if (content != null) {
+            return new SeekableInMemoryByteChannel(content);
+        }
+        return new ResourceByteChannel(() -> open(resourcePath), readAttributes(resourcePath).size());
+    }
+
+    @Override
+    public InputStream newInputStream(Path path, OpenOption... options) throws IOException {
+        final var resourcePath = toResourcePath(path);
+        final var content = readCachedContent(resourcePath);
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        return open(resourcePath);
+    }
+
+    /**
+     * Liefert den Inhalt einer kleinen Resource aus dem Cache bzw. lädt ihn in den Cache.
+     *
+     * @return Der Inhalt oder null, falls die Resource zu groß ist oder ihre Größe nicht bekannt ist und deshalb gestreamt wird.
+     */
+    private byte[] readCachedContent(ResourcePath path) throws IOException {
+        final var cached = contentCache.get(path.resourcePath());
+        if (cached != null) {
+            return cached;
+        }
+        if (!contentCache.isCacheable(readAttributes(path).size())) {
+            return null;
+        }
+        try (InputStream in = open(path)) {
+            final var content = in.readAllBytes();
+            contentCache.put(path.resourcePath(), content);
+            return content;
+        }
+    }
+
+    private InputStream open(ResourcePath path) throws IOException {
+        final var loadedResource = classLoader.getResourceAsStream(path.resourcePath());
+        if (loadedResource == null) {
+            throw new FileNotFoundException(path.resourcePath());
+        }
+        return loadedResource;
+    }
+
+    private ResourceAttributes readAttributes(ResourcePath path) throws IOException {
+        final var cached = attributesByPath.get(path.resourcePath());
+        if (cached != null) {
+            return cached;
+        }
+        final var attributes = ResourceAttributes.read(classLoader.getResource(path.resourcePath()), path, isDirectory(path));
+        attributesByPath.putIfAbsent(path.resourcePath(), attributes);
+        return attributes;
+    }
+
+    private boolean isDirectory(ResourcePath path) {
+        return childrenByDirectory.containsKey(toDirectoryPrefix(path));
+    }
+
+    /**
+     * @return Die Größe aller zwischengespeicherten Resourcen in Bytes.
+     */
+    long getCachedContentSize() {
+        return contentCache.size();
+    }
+
+    private ResourcePath toResourcePath(Path path) {
         if (path instanceof ResourcePath) {
-            final var resourcePath = (ResourcePath) path;
-            final var loadedResource = classLoader.getResourceAsStream(resourcePath.resourcePath());
-            if (loadedResource == null) {
-                throw new FileNotFoundException(resourcePath.resourcePath());
-            }
-            return new SeekableInMemoryByteChannel(loadedResource.readAllBytes());
-        } else {
-            throw new UnsupportedOperationException("Only " + getClass().getName() + " are supported and not " + path.getClass().getName() + ".");
+            return (ResourcePath) path;
         }
+        throw new UnsupportedOperationException("Only " + ResourcePath.class.getName() + " are supported and not " + path.getClass().getName() + ".");
     }
 
+    /**
+     * Liefert alle Resourcen unterhalb eines Ordners in der Reihenfolge der Resourcen-Liste.
+     */
     public List<Path> walk(Path rawPath) {
-        final ResourcePath path;
-        if (rawPath instanceof ResourcePath) {
-            path = (ResourcePath) rawPath;
-        } else {
-            throw new IllegalArgumentException();
-        }
-        try {
-            final var pathStr = path.resourcePath() + "/";
-            final List<Path> matchingResources = new ArrayList<>();
-            for (final var resource : resourceList) {
-                if (resource.startsWith("/" + pathStr)) {
-                    matchingResources.add(getFileSystem(null).getPath(resource));
+        final var prefix = toDirectoryPrefix(rawPath);
+        final List<Path> matchingResources = new ArrayList<>();
+        resourceIndex.subMap(prefix, true, prefix + Character.MAX_VALUE, false).entrySet().stream()//
+                .sorted(Map.Entry.comparingByValue())//
+                .forEach(resource -> matchingResources.add(fileSystem.getPath(resource.getKey())));
+        return matchingResources;
+    }
+
+    /**
+     * Sucht unterhalb eines Ordners Dateien mit einem der angegebenen Namen.
+     *
+     * @param rawPath
+     *            Der Ordner, in dem gesucht wird.
+     * @param fileNames
+     *            Die gesuchten Dateinamen.
+     * @return Die gefundenen Dateien in der Reihenfolge der Resourcen-Liste.
+     */
+    public List<Path> findByFileName(Path rawPath, String... fileNames) {
+        final var prefix = toDirectoryPrefix(rawPath);
+        final var matchingResources = new TreeMap<Integer, String>();
+        for (final var fileName : fileNames) {
+            for (final var resource : resourcesByName.getOrDefault(fileName, List.of())) {
+                if (resource.startsWith(prefix)) {
+                    matchingResources.put(resourceIndex.get(resource), resource);
                 }
             }
-            return matchingResources;
-        } catch (Throwable th) {
-            throw new RuntimeException(th);
         }
+        final List<Path> result = new ArrayList<>();
+        for (final var resource : matchingResources.values()) {
+            result.add(fileSystem.getPath(resource));
+        }
+        return result;
     }
 
-    private List<Path> walk(ResourcePath path, int maxDepth) {
-        try {
-            final var pathStr = path.resourcePath() + "/";
-            final List<Path> matchingResources = new ArrayList<>();
-            for (final var resource : resourceList) {
-                if (resource.startsWith("/" + pathStr)) {
-                    if (resource.endsWith("/") && resource.substring(pathStr.length()).split("/").length < 3) {
-                        matchingResources.add(getFileSystem(null).getPath(resource));
-                    } else if (resource.substring(pathStr.length()).split("/").length < 2) {
-                        matchingResources.add(getFileSystem(null).getPath(resource));
-                    }
-                }
-            }
-            return matchingResources;
-        } catch (Throwable th) {
-            throw new RuntimeException(th);
+    /**
+     * Liefert die direkten Kinder eines Ordners, also Dateien und Ordner.
+     */
+    private List<Path> list(ResourcePath path) {
+        final List<Path> children = new ArrayList<>();
+        for (final var child : childrenByDirectory.getOrDefault(toDirectoryPrefix(path), Set.of())) {
+            children.add(fileSystem.getPath(child));
         }
+        return children;
+    }
+
+    /**
+     * @return Der Pfad des Ordners, wie er in der Resourcen-Liste steht, z.B. "/forms/".
+     */
+    private static String toDirectoryPrefix(Path rawPath) {
+        if (!(rawPath instanceof ResourcePath)) {
+            throw new IllegalArgumentException();
+        }
+        final var resourcePath = ((ResourcePath) rawPath).resourcePath();
+        if (resourcePath.equals("./")) {
+            return "/";
+        }
+        return "/" + resourcePath + "/";
     }
 
     @Override
     public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
         if (dir instanceof ResourcePath) {
-            final var dirIterator = walk((ResourcePath) dir, 2).stream();
+            final var dirIterator = list((ResourcePath) dir).stream().filter(path -> {
+                try {
+                    return filter == null || filter.accept(path);
+                } catch (IOException e) {
+                    throw new DirectoryIteratorException(e);
+                }
+            });
             return new DirectoryStream<>() {
 
                 @Override
@@ -179,9 +346,9 @@ public class ResourceFileSystemProvider extends FileSystemProvider {
     @Override
     public void checkAccess(Path path, AccessMode... modes) throws IOException {
         if (path instanceof ResourcePath) {
-            final var resourcePath = ((ResourcePath) path).resourcePath();
-            if (classLoader.getResourceAsStream(resourcePath) == null) {
-                throw new FileNotFoundException(resourcePath);
+            final var resourcePath = (ResourcePath) path;
+            if (!isDirectory(resourcePath) && classLoader.getResource(resourcePath.resourcePath()) == null) {
+                throw new FileNotFoundException(resourcePath.resourcePath());
             }
         }
     }
@@ -194,59 +361,7 @@ public class ResourceFileSystemProvider extends FileSystemProvider {
     @Override
     public <A extends BasicFileAttributes> A readAttributes(Path path, Class<A> type, LinkOption... options) throws IOException {
         if (type.equals(BasicFileAttributes.class)) {
-            return (A) new BasicFileAttributes() {
-
-                @Override
-                public FileTime lastModifiedTime() {
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                public FileTime lastAccessTime() {
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                public FileTime creationTime() {
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                public boolean isRegularFile() {
-                    if (path instanceof ResourcePath) {
-                        return classLoader.getResourceAsStream(((ResourcePath) path).resourcePath()) != null;
-                    }
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                public boolean isDirectory() {
-                    if (path instanceof ResourcePath) {
-                        return classLoader.getResourceAsStream(((ResourcePath) path).resourcePath()) != null;
-                    }
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                public boolean isSymbolicLink() {
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                public boolean isOther() {
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                public long size() {
-                    throw new UnsupportedOperationException();
-                }
-
-                @Override
-                public Object fileKey() {
-                    return path;
-                }
-            };
+            return (A) readAttributes(toResourcePath(path));
         } else {
             throw new IllegalArgumentException("Attributes type is not supported: " + type.getName());
         }
@@ -0,0 +1,271 @@
+package aero.minova.cas.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import aero.minova.cas.CustomLogger;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Hält im Fat-Jar-Modus die Zips der Resourcen im Speicher. Die Resourcen im Classpath ändern sich zur Laufzeit nicht. Deshalb wird jedes Zip nur einmal
+ * erstellt und dabei gleich sein MD5-Wert berechnet. Wie im Dateisystem gibt es nur Zips für Ordner, die in den Resourcen-Listen vorkommen, aber nicht für
+ * den obersten Ordner. So ist die Anzahl der Zips durch die Resourcen begrenzt und nicht durch die angefragten Pfade. Fragen mehrere Threads gleichzeitig
+ * dasselbe Zip an, wird es nur einmal erstellt.
+ */
+@Component
+public class FatJarZipCache {
+
+	static final String DEPLOYED_RESOURCES = "/aero.minova.app.resources/deployed.resources.txt";
+
+	@Autowired
+	CustomLogger customLogger;
+
+	/**
+	 * Alle Resourcen aus den Resourcen-Listen, in der Reihenfolge aus deployed.resources.txt.
+	 */
+	private volatile List<String> deployedResources;
+
+	/**
+	 * Pfad, Größe und MD5-Wert aller Resourcen für files/manifest.
+	 */
+	private volatile List<FileManifest.Entry> manifestEntries;
+
+	/**
+	 * Alle Ordner der Resourcen mit "/" am Ende, ohne den obersten Ordner.
+	 */
+	private volatile Set<String> directories;
+
+	/**
+	 * Die fertigen bzw. gerade erstellten Zips pro Ordner.
+	 */
+	private final Map<String, CompletableFuture<Zip>> zips = new ConcurrentHashMap<>();
+
+	@Getter
+	@AllArgsConstructor
+	public static class Zip {
+		private final byte[] content;
+
+		private final String md5;
+	}
+
+	/**
+	 * Liefert das Zip aller Resourcen in einem Ordner.
+	 *
+	 * @param path
+	 *            Der Pfad des Ordners, z.B. "/forms".
+	 * @return Das Zip mit seinem MD5-Wert.
+	 * @throws NoSuchFileException
+	 *             Falls es den Ordner in den Resourcen nicht gibt.
+	 */
+	public Zip getZip(String path) throws NoSuchFileException {
+		String directory = path.startsWith("/") ? path : "/" + path;
+		if (!directory.endsWith("/")) {
+			directory = directory + "/";
+		}
+		if (!getDirectories().contains(directory)) {
+			throw new NoSuchFileException("msg.FileError %" + path);
+		}
+
+		final CompletableFuture<Zip> zip = new CompletableFuture<>();
+		final CompletableFuture<Zip> existing = zips.putIfAbsent(directory, zip);
+		if (existing != null) {
+			return join(existing);
+		}
+
+		try {
+			zip.complete(createZip(findResources(directory)));
+		} catch (RuntimeException e) {
+			// Fehler werden nicht gespeichert, damit die nächste Anfrage es erneut versucht.
+			zips.remove(directory, zip);
+			zip.completeExceptionally(e);
+		}
+		return join(zip);
+	}
+
+	/**
+	 * Liefert Pfad, Größe und MD5-Wert aller Resourcen, sortiert nach Pfad. Die Pfade haben wie im Manifest des Dateisystems keinen führenden "/". Die
+	 * Resourcen werden nur beim ersten Aufruf gelesen. Da sie sich zur Laufzeit nicht ändern, ist der Änderungszeitpunkt immer 0.
+	 *
+	 * @return Die Einträge für files/manifest.
+	 */
+	public List<FileManifest.Entry> getManifestEntries() {
+		List<FileManifest.Entry> entries = manifestEntries;
+		if (entries == null) {
+			final List<FileManifest.Entry> newEntries = new ArrayList<>();
+			for (String resourcePath : new TreeSet<>(getDeployedResources())) {
+				if (!resourcePath.endsWith("/")) {
+					newEntries.add(createManifestEntry(resourcePath));
+				}
+			}
+			entries = List.copyOf(newEntries);
+			manifestEntries = entries;
+			customLogger.logFiles("Cached manifest with " + entries.size() + " resources.");
+		}
+		return entries;
+	}
+
+	/**
+	 * Öffnet eine Resource aus dem Classpath.
+	 */
+	InputStream openResource(String resourcePath) throws IOException {
+		InputStream in = getClass().getResourceAsStream(resourcePath);
+		if (in == null) {
+			throw new IOException("Resource " + resourcePath + " not found.");
+		}
+		return in;
+	}
+
+	private List<String> findResources(String path) {
+		final List<String> matchingResources = new ArrayList<>();
+		for (String resource : getDeployedResources()) {
+			if (resource.startsWith(path) && !matchingResources.contains(resource)) {
+				matchingResources.add(resource);
+			}
+		}
+		return List.copyOf(matchingResources);
+	}
+
+	private Set<String> getDirectories() {
+		Set<String> result = directories;
+		if (result == null) {
+			result = new HashSet<>();
+			for (String resource : getDeployedResources()) {
+				for (int end = resource.indexOf('/', 1); end > 0; end = resource.indexOf('/', end + 1)) {
+					result.add(resource.substring(0, end + 1));
+				}
+			}
+			directories = result;
+		}
+		return result;
+	}
+
+	private List<String> getDeployedResources() {
+		List<String> resources = deployedResources;
+		if (resources == null) {
+			resources = new ArrayList<>();
+			for (String resourceListPath : readLines(DEPLOYED_RESOURCES)) {
+				resources.addAll(readLines(resourceListPath));
+			}
+			deployedResources = resources;
+		}
+		return resources;
+	}
+
+	private List<String> readLines(String resourcePath) {
+		try (InputStream in = openResource(resourcePath)) {
+			final List<String> lines = new ArrayList<>();
+			for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+				if (!line.isBlank()) {
+					lines.add(line);
+				}
+			}
+			return lines;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Error while reading resource list " + resourcePath + ".", e);
+		}
+	}
+
+	private Zip createZip(List<String> resources) {
+		final MessageDigest md = createMd5Digest();
+
+		String resourcePathLog = null;
+		ZipEntry ze = null;
+		ByteArrayOutputStream fos = new ByteArrayOutputStream();
+		// Der MD5-Wert wird beim Schreiben des Zips berechnet.
+		try (ZipOutputStream zos = new ZipOutputStream(new DigestOutputStream(fos, md))) {
+			for (String resourcePath : resources) {
+				resourcePathLog = resourcePath;
+				if (!resourcePath.endsWith("/")) {
+					ze = new ZipEntry(resourcePath.substring(1));
+
+					// CreationTime der Zip und Änderungs-Zeitpunkt der Zip auf diese festen
+					// Zeitpunkte setzen, da sich sonst jedes Mal der md5 Wert ändert,
+					// wenn die Zip erstellt wird.
+					ze.setCreationTime(FileTime.from(Instant.EPOCH));
+					ze.setTime(0);
+					zos.putNextEntry(ze);
+
+					// Die Resource wird direkt in die Zip gestreamt.
+					try (InputStream resourceContent = openResource(resourcePath)) {
+						resourceContent.transferTo(zos);
+					}
+					zos.closeEntry();
+				}
+			}
+		} catch (Exception e) {
+			if (ze != null) {
+				customLogger.logFiles("Error while zipping file " + ze.getName());
+				throw new RuntimeException("msg.ZipError %" + ze.getName());
+			} else {
+				// Landet nur hier, wenn es nicht mal bis in das erste if geschafft hat.
+				customLogger.logFiles("Error while accessing file path for file to zip.");
+				throw new RuntimeException("Error while accessing file path " + resourcePathLog + " for file to zip.", e);
+			}
+		}
+
+		customLogger.logFiles("Cached zip with " + resources.size() + " resources.");
+		return new Zip(fos.toByteArray(), toHex(md));
+	}
+
+	private FileManifest.Entry createManifestEntry(String resourcePath) {
+		final MessageDigest md = createMd5Digest();
+		// Der Inhalt wird beim Lesen gehasht und muss dafür nicht komplett im Speicher liegen.
+		try (DigestInputStream in = new DigestInputStream(openResource(resourcePath), md)) {
+			final long size = in.transferTo(OutputStream.nullOutputStream());
+			return new FileManifest.Entry(resourcePath.substring(1), size, 0, toHex(md));
+		} catch (IOException e) {
+			customLogger.logFiles("Error while hashing file " + resourcePath);
+			throw new UncheckedIOException("Error while hashing resource " + resourcePath + ".", e);
+		}
+	}
+
+	private static MessageDigest createMd5Digest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("msg.MD5Error");
+		}
+	}
+
+	private static String toHex(MessageDigest md) {
+		return String.format("%0" + (md.getDigestLength() * 2) + "x", new BigInteger(1, md.digest()));
+	}
+
+	private static Zip join(CompletableFuture<Zip> zip) {
+		try {
+			return zip.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package aero.minova.cas.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Merkt sich für jede Datei im System-Ordner Größe, Änderungszeitpunkt und MD5-Wert. Damit müssen beim Start des CAS nur Dateien neu gehasht und Ordner neu
+ * gezippt werden, die sich seit dem letzten Start verändert haben. Das Manifest wird als Textdatei mit einer Zeile pro Datei gespeichert. Die Spalten sind
+ * durch Tabs getrennt: Pfad relativ zum System-Ordner, Größe in Bytes, Änderungszeitpunkt in Millisekunden und MD5-Wert.
+ * <p>
+ * Für die Zips werden in einem eigenen Manifest Ordner gespeichert. Die Größe ist dort die Anzahl der Dateien im Ordner, der Änderungszeitpunkt der der
+ * neuesten Datei und der Hash ein MD5-Wert über Pfad, Größe und Änderungszeitpunkt aller Dateien im Ordner.
+ */
+public class FileManifest {
+
+	private static final String SEPARATOR = "\t";
+
+	@Getter
+	@AllArgsConstructor
+	public static class Entry {
+		private final String path;
+
+		private final long size;
+
+		private final long lastModified;
+
+		private final String hash;
+
+		/**
+		 * @return true, wenn die Datei mit diesen Attributen laut Größe und Änderungszeitpunkt unverändert ist.
+		 */
+		public boolean matches(BasicFileAttributes attributes) {
+			return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+		}
+	}
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Liest ein Manifest. Fehlt die Datei, ist das Manifest leer. Zeilen, die nicht gelesen werden können, werden ignoriert. Die Dateien werden dann beim
+	 * nächsten Mal neu gehasht.
+	 *
+	 * @param file
+	 *            Die Manifest-Datei.
+	 * @return Das gelesene Manifest.
+	 * @throws IOException
+	 *             Falls die Datei nicht gelesen werden kann.
+	 */
+	public static FileManifest read(Path file) throws IOException {
+		FileManifest manifest = new FileManifest();
+		if (!Files.isRegularFile(file)) {
+			return manifest;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] columns = line.split(SEPARATOR);
+				if (columns.length != 4) {
+					continue;
+				}
+				try {
+					manifest.put(new Entry(columns[0], Long.parseLong(columns[1]), Long.parseLong(columns[2]), columns[3]));
+				} catch (NumberFormatException e) {
+					// Die Datei wird neu gehasht.
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Speichert das Manifest sortiert nach Pfad. Die Datei wird zuerst unter einem temporären Namen geschrieben und dann ersetzt, damit bei einem Absturz kein
+	 * halbes Manifest übrig bleibt.
+	 *
+	 * @param file
+	 *            Die Manifest-Datei.
+	 * @throws IOException
+	 *             Falls die Datei nicht geschrieben werden kann.
+	 */
+	public void write(Path file) throws IOException {
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+			for (Entry entry : new TreeMap<>(entries).values()) {
+				writer.write(entry.getPath() + SEPARATOR + entry.getSize() + SEPARATOR + entry.getLastModified() + SEPARATOR + entry.getHash());
+				writer.newLine();
+			}
+		}
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public Entry get(String path) {
+		return entries.get(path);
+	}
+
+	public void put(Entry entry) {
+		entries.put(entry.getPath(), entry);
+	}
+
+	public Collection<Entry> getEntries() {
+		return entries.values();
+	}
+
+	/**
+	 * Entfernt den Eintrag einer Datei bzw. die Einträge aller Dateien in einem Ordner.
+	 *
+	 * @param path
+	 *            Der Pfad der Datei oder des Ordners.
+	 */
+	public void remove(String path) {
+		entries.keySet().removeIf(entryPath -> entryPath.equals(path) || entryPath.startsWith(path + "/"));
+	}
+
+	/**
+	 * Entfernt alle Einträge, deren Pfad nicht in der übergebenen Menge enthalten ist, z.B. weil die Datei gelöscht wurde.
+	 */
+	public void retainAll(Set<String> paths) {
+		entries.keySet().retainAll(paths);
+	}
+}
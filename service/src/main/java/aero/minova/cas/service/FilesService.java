@@ -11,15 +11,28 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -27,8 +40,10 @@ import java.util.zip.ZipOutputStream;
 import javax.xml.namespace.QName;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
 
 import aero.minova.cas.CustomLogger;
 import aero.minova.cas.api.domain.Column;
@@ -45,7 +60,11 @@ import aero.minova.cas.service.mdi.MenuType;
 import jakarta.annotation.PostConstruct;
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
 import jakarta.xml.bind.Marshaller;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.Setter;
 
 @Service
@@ -60,12 +79,19 @@ public class FilesService {
 	@org.springframework.beans.factory.annotation.Value("${fat.jar.mode:false}")
 	boolean isFatJarMode;
 
+	// Hierbei handelt es sich um Sekunden
+	@org.springframework.beans.factory.annotation.Value("${mdi.cache.seconds:60}")
+	long mdiCacheSeconds;
+
 	@Autowired
 	SecurityService securityUtils;
 
 	@Autowired
 	SqlViewController viewController;
 
+	@Autowired
+	FatJarZipCache fatJarZipCache;
+
 	@Autowired
 	public CustomLogger customLogger;
 	private Path systemFolder;
@@ -74,6 +100,68 @@ public class FilesService {
 	private Path zipsFolder;
 	private Path md5Folder;
 
+	/**
+	 * Die Anzahl der Privilegien, die beim Filtern des Manifests mit einer Abfrage geprüft werden.
+	 */
+	private static final int PRIVILEGE_CHUNK_SIZE = 200;
+
+	/**
+	 * Das Manifest aller Dateien, solange sich Internal/files.manifest nicht ändert.
+	 */
+	@Setter(AccessLevel.NONE)
+	private volatile ManifestContent cachedManifest;
+
+	/**
+	 * Der Inhalt von files/manifest: eine Zeile pro Datei mit Pfad, Größe und MD5-Wert, getrennt durch Tabs.
+	 */
+	@Getter
+	@AllArgsConstructor(access = AccessLevel.PRIVATE)
+	public static class ManifestContent {
+		@Getter(AccessLevel.NONE)
+		private final List<FileManifest.Entry> entries;
+
+		private final byte[] content;
+
+		private final byte[] gzipContent;
+
+		/**
+		 * Der MD5-Wert von {@link #content}. Er dient als Version des Manifests.
+		 */
+		private final String hash;
+
+		private final long lastModified;
+	}
+
+	/**
+	 * Die generierten MDIs pro Kombination von SecurityTokens, siehe {@link #getMdiCacheKey()}.
+	 */
+	@Setter(AccessLevel.NONE)
+	private final Map<String, MdiContent> mdiCache = new ConcurrentHashMap<>();
+
+	/**
+	 * Der JAXBContext ist thread-safe und teuer zu erstellen, deshalb gibt es nur einen. Marshaller sind nicht thread-safe und werden deshalb in
+	 * {@link #mdiMarshallers} wiederverwendet.
+	 */
+	@Setter(AccessLevel.NONE)
+	private volatile JAXBContext mdiContext;
+
+	@Setter(AccessLevel.NONE)
+	private final Queue<Marshaller> mdiMarshallers = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Eine generierte MDI mit ihrem MD5-Wert, der als ETag verwendet wird.
+	 */
+	@Getter
+	@AllArgsConstructor(access = AccessLevel.PRIVATE)
+	public static class MdiContent {
+		private final byte[] content;
+
+		private final String hash;
+
+		@Getter(AccessLevel.NONE)
+		private final long created;
+	}
+
 	public FilesService() {}
 
 	public FilesService(String rootPath) {
@@ -155,6 +243,112 @@ public class FilesService {
 		return zipsFolder;
 	}
 
+	/**
+	 * Gibt den Pfad zum Ordner mit den vorab komprimierten Varianten der Dateien zurück.
+	 *
+	 * @return Pfad zu Internal/Gzip.
+	 */
+	public Path getGzipFolder() {
+		return internalFolder.resolve("Gzip");
+	}
+
+	/**
+	 * Gibt den Pfad zum Manifest mit den MD5-Werten aller Dateien zurück.
+	 *
+	 * @return Pfad zu Internal/files.manifest.
+	 */
+	public Path getFilesManifest() {
+		return internalFolder.resolve("files.manifest");
+	}
+
+	/**
+	 * Gibt den Pfad zum Manifest mit dem Stand der Ordner beim letzten Zippen zurück.
+	 *
+	 * @return Pfad zu Internal/zips.manifest.
+	 */
+	public Path getZipsManifest() {
+		return internalFolder.resolve("zips.manifest");
+	}
+
+	/**
+	 * Liefert das Manifest aller Dateien, die der User lesen darf. Grundlage ist Internal/files.manifest, das von hashAll zusammen mit den MD5-Dateien
+	 * geschrieben wird. Aus dem Internal-Ordner werden nur die Zips aufgenommen. Das Manifest wird im Speicher gehalten, bis sich die Datei ändert. Ist
+	 * files.permission.check aktiv, wird es pro Anfrage nach den Privilegien "files/read:Pfad" des Users gefiltert. Im Fat-Jar-Modus wird das Manifest
+	 * einmal aus den Resourcen des Classpaths erstellt, siehe {@link FatJarZipCache#getManifestEntries()}.
+	 *
+	 * @return Das Manifest mit seiner Version.
+	 * @throws IOException
+	 *             Falls Internal/files.manifest nicht existiert oder nicht gelesen werden kann.
+	 */
+	public ManifestContent getManifestContent() throws IOException {
+		if (isFatJarMode) {
+			ManifestContent manifest = cachedManifest;
+			if (manifest == null) {
+				// Die Resourcen ändern sich zur Laufzeit nicht. Ohne Änderungszeitpunkt wird kein Last-Modified geschickt.
+				manifest = createManifestContent(fatJarZipCache.getManifestEntries(), -1);
+				cachedManifest = manifest;
+			}
+			return filterAccessibleEntries(manifest);
+		}
+		final Path manifestFile = getFilesManifest();
+		if (!Files.isRegularFile(manifestFile)) {
+			throw new NoSuchFileException("msg.FileError %" + systemFolder.relativize(manifestFile));
+		}
+		final long lastModified = Files.getLastModifiedTime(manifestFile).toMillis();
+		ManifestContent manifest = cachedManifest;
+		if (manifest == null || manifest.getLastModified() != lastModified) {
+			final String internalPath = systemFolder.relativize(internalFolder).toString().replace('\\', '/') + "/";
+			final String zipsPath = systemFolder.relativize(zipsFolder).toString().replace('\\', '/') + "/";
+			final List<FileManifest.Entry> entries = new ArrayList<>();
+			for (FileManifest.Entry entry : FileManifest.read(manifestFile).getEntries()) {
+				if (!entry.getPath().startsWith(internalPath) || entry.getPath().startsWith(zipsPath)) {
+					entries.add(entry);
+				}
+			}
+			entries.sort(Comparator.comparing(FileManifest.Entry::getPath));
+			manifest = createManifestContent(entries, lastModified);
+			cachedManifest = manifest;
+		}
+		return filterAccessibleEntries(manifest);
+	}
+
+	/**
+	 * Ist files.permission.check aktiv, bleiben nur die Einträge, für die der User das Privileg "files/read:Pfad" hat.
+	 */
+	private ManifestContent filterAccessibleEntries(ManifestContent manifest) throws IOException {
+		if (!permissionCheck) {
+			return manifest;
+		}
+
+		final List<FileManifest.Entry> accessibleEntries = new ArrayList<>();
+		for (int start = 0; start < manifest.entries.size(); start += PRIVILEGE_CHUNK_SIZE) {
+			final List<FileManifest.Entry> chunk = manifest.entries.subList(start, Math.min(start + PRIVILEGE_CHUNK_SIZE, manifest.entries.size()));
+			final Map<String, List<Row>> privileges = securityUtils
+					.getPrivilegePermissions(chunk.stream().map(entry -> "files/read:" + entry.getPath()).toList());
+			for (FileManifest.Entry entry : chunk) {
+				if (!privileges.get("files/read:" + entry.getPath()).isEmpty()) {
+					accessibleEntries.add(entry);
+				}
+			}
+		}
+		return createManifestContent(accessibleEntries, manifest.getLastModified());
+	}
+
+	private static ManifestContent createManifestContent(List<FileManifest.Entry> entries, long lastModified) throws IOException {
+		final StringBuilder builder = new StringBuilder();
+		for (FileManifest.Entry entry : entries) {
+			builder.append(entry.getPath()).append('\t').append(entry.getSize()).append('\t').append(entry.getHash()).append('\n');
+		}
+		final byte[] content = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+		final ByteArrayOutputStream gzipContent = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(gzipContent)) {
+			out.write(content);
+		}
+
+		return new ManifestContent(entries, content, gzipContent.toByteArray(), md5(content), lastModified);
+	}
+
 	/**
 	 * Diese Methode erzeugt eine Liste aller vorhandenen Files in einem Directory. Falls sich noch weitere Directories in diesem befinden, wird deren Inhalt
 	 * ebenfalls aufgelistet
@@ -196,6 +390,41 @@ public class FilesService {
 				throw new RuntimeException("msg.PrivilegeError %" + "files/read:" + path);
 			}
 		}
+		return resolveLegalPath(path);
+	}
+
+	/**
+	 * Wie {@link #checkLegalPath(Path)}, nur für mehrere Dateien auf einmal. Die Privilegien "files/read:Pfad" werden dabei gesammelt mit einer Abfrage pro
+	 * {@value #PRIVILEGE_CHUNK_SIZE} Pfade geprüft statt mit einer Abfrage pro Datei.
+	 *
+	 * @param paths
+	 *            Pfade zu den gewünschten Dateien.
+	 * @return Die absoluten Pfade in derselben Reihenfolge.
+	 * @throws Exception
+	 *             RuntimeException, falls User nicht erforderliche Privilegien besitzt, IllegalAccessException, falls ein Pfad nicht in das abgegrenzte
+	 *             Dateisystem zeigt, NoSuchFileException, falls eine gewünschte Datei nicht existiert.
+	 */
+	public List<Path> checkLegalPaths(List<Path> paths) throws Exception {
+		if (permissionCheck) {
+			for (int start = 0; start < paths.size(); start += PRIVILEGE_CHUNK_SIZE) {
+				final List<String> privilegeNames = paths.subList(start, Math.min(start + PRIVILEGE_CHUNK_SIZE, paths.size())).stream()
+						.map(path -> "files/read:" + path).toList();
+				final Map<String, List<Row>> privileges = securityUtils.getPrivilegePermissions(privilegeNames);
+				for (String privilegeName : privilegeNames) {
+					if (privileges.get(privilegeName).isEmpty()) {
+						throw new RuntimeException("msg.PrivilegeError %" + privilegeName);
+					}
+				}
+			}
+		}
+		final List<Path> inputPaths = new ArrayList<>();
+		for (Path path : paths) {
+			inputPaths.add(resolveLegalPath(path));
+		}
+		return inputPaths;
+	}
+
+	private Path resolveLegalPath(Path path) throws Exception {
 		Path inputPath = getSystemFolder().resolve(path).toAbsolutePath().normalize();
 		File f = inputPath.toFile();
 		if (!inputPath.startsWith(getSystemFolder())) {
@@ -281,37 +510,92 @@ public class FilesService {
 	 *             Falls das Directory nicht existiert oder kein Directory ist oder falls die Datei nicht entpackt werden kann.
 	 */
 	public void unzipFile(File fileZip, Path destDirName) throws IOException {
-		byte[] buffer = new byte[1024];
-		FileInputStream fis;
-		try {
-			fis = new FileInputStream(fileZip);
-			ZipInputStream zis = new ZipInputStream(fis);
-			ZipEntry ze = zis.getNextEntry();
-			while (ze != null) {
-				String zippedFileEntry = ze.getName();
-				if (zippedFileEntry.startsWith(File.separator)) {
+		try (InputStream in = Files.newInputStream(fileZip.toPath())) {
+			unzip(in, destDirName, Long.MAX_VALUE, Long.MAX_VALUE);
+		} catch (IOException e) {
+			customLogger.logFiles("Error while unzipping file " + fileZip + " into directory " + destDirName);
+			throw new RuntimeException("msg.UnZipError %" + fileZip + " %" + destDirName, e);
+		}
+	}
+
+	/**
+	 * Entpackt ein Zip direkt aus einem Stream, ohne es vorher in den Speicher oder auf die Festplatte zu schreiben. Die entpackten Bytes werden beim
+	 * Schreiben gezählt, da die Größenangaben im Zip gefälscht sein können. Einträge, die außerhalb des Ziel-Ordners landen würden, werden abgelehnt. Schlägt
+	 * das Entpacken fehl, werden nur die Dateien und Ordner gelöscht, die dabei neu angelegt wurden. Was vorher schon im Ziel-Ordner lag, bleibt erhalten.
+	 *
+	 * @param in
+	 *            Der Inhalt des Zips.
+	 * @param destDirName
+	 *            Der Ordner, in den entpackt wird.
+	 * @param maxEntrySize
+	 *            Die maximale Größe einer entpackten Datei in Bytes.
+	 * @param maxTotalSize
+	 *            Die maximale Größe aller entpackten Dateien zusammen in Bytes.
+	 * @return Die Größe aller entpackten Dateien in Bytes.
+	 * @throws IOException
+	 *             Falls das Zip nicht gelesen oder eine Datei nicht geschrieben werden kann.
+	 * @throws IllegalArgumentException
+	 *             Falls eine Größe überschritten wird oder ein Eintrag außerhalb des Ziel-Ordners liegt.
+	 */
+	public long unzip(InputStream in, Path destDirName, long maxEntrySize, long maxTotalSize) throws IOException {
+		final Path targetFolder = destDirName.toAbsolutePath().normalize();
+		final byte[] buffer = new byte[8192];
+		// Die neu angelegten Dateien und Ordner, in der Reihenfolge ihrer Erstellung.
+		final List<Path> createdPaths = new ArrayList<>();
+		long totalSize = 0;
+		try (ZipInputStream zis = new ZipInputStream(in)) {
+			ZipEntry ze;
+			while ((ze = zis.getNextEntry()) != null) {
+				String zippedFileEntry = ze.getName().replace('\\', '/');
+				while (zippedFileEntry.startsWith("/")) {
 					zippedFileEntry = zippedFileEntry.substring(1);
 				}
-				File newFile = destDirName.resolve(zippedFileEntry).toFile();
+				final Path newFile = targetFolder.resolve(zippedFileEntry).normalize();
+				if (!newFile.startsWith(targetFolder) || newFile.equals(targetFolder)) {
+					throw new IllegalArgumentException("msg.UnZipError %" + ze.getName() + " %" + destDirName);
+				}
+				if (ze.isDirectory()) {
+					createDirectories(newFile, createdPaths);
+					continue;
+				}
 				// create directories for sub directories in zip
-				new File(newFile.getParent()).mkdirs();
-				FileOutputStream fos = new FileOutputStream(newFile);
-				int len;
-				while ((len = zis.read(buffer)) > 0) {
-					fos.write(buffer, 0, len);
+				createDirectories(newFile.getParent(), createdPaths);
+				if (!Files.exists(newFile)) {
+					createdPaths.add(newFile);
+				}
+				long entrySize = 0;
+				try (OutputStream fos = Files.newOutputStream(newFile)) {
+					int len;
+					while ((len = zis.read(buffer)) > 0) {
+						entrySize += len;
+						totalSize += len;
+						if (entrySize > maxEntrySize || totalSize > maxTotalSize) {
+							throw new IllegalArgumentException("msg.UnZipSizeError %" + ze.getName() + " %" + destDirName);
+						}
+						fos.write(buffer, 0, len);
+					}
 				}
-				fos.close();
-				zis.closeEntry();
-				ze = zis.getNextEntry();
 			}
-			zis.closeEntry();
-			zis.close();
-			fis.close();
-		} catch (IOException e) {
-			customLogger.logFiles("Error while unzipping file " + fileZip + " into directory " + destDirName);
-			throw new RuntimeException("msg.UnZipError %" + fileZip + " %" + destDirName, e);
+		} catch (IOException | RuntimeException e) {
+			customLogger.logFiles("Error while unzipping into directory " + destDirName + ": " + e.getMessage());
+			for (int i = createdPaths.size() - 1; i >= 0; i--) {
+				FileSystemUtils.deleteRecursively(createdPaths.get(i));
+			}
+			throw e;
+		}
+		return totalSize;
+	}
 
+	/**
+	 * Legt einen Ordner samt fehlender übergeordneter Ordner an und merkt sich alle Ordner, die es vorher nicht gab.
+	 */
+	private static void createDirectories(Path directory, List<Path> createdPaths) throws IOException {
+		final List<Path> missingDirectories = new ArrayList<>();
+		for (Path parent = directory; parent != null && !Files.exists(parent); parent = parent.getParent()) {
+			missingDirectories.add(0, parent);
 		}
+		Files.createDirectories(directory);
+		createdPaths.addAll(missingDirectories);
 	}
 
 	/**
@@ -320,6 +604,69 @@ public class FilesService {
 	 * @return die generierte MDI als byte Array.
 	 */
 	public byte[] readMDI() {
+		return getMDI().getContent();
+	}
+
+	/**
+	 * Liefert die MDI des Users. Da sie nur von den SecurityTokens des Users abhängt, wird sie pro Kombination von SecurityTokens für
+	 * {@link #mdiCacheSeconds} Sekunden zwischengespeichert. Ändert sich xtcasMdi über den {@link MdiService}, werden alle MDIs sofort verworfen. Änderungen
+	 * direkt in der Datenbank werden spätestens nach Ablauf der Zeit sichtbar.
+	 *
+	 * @return die generierte MDI mit ihrem MD5-Wert.
+	 */
+	public MdiContent getMDI() {
+		final String cacheKey = mdiCacheSeconds > 0 ? getMdiCacheKey() : null;
+		if (cacheKey != null) {
+			final MdiContent cached = mdiCache.get(cacheKey);
+			if (cached != null && System.currentTimeMillis() - cached.created < mdiCacheSeconds * 1000) {
+				return cached;
+			}
+		}
+		final byte[] content = generateMDI();
+		final MdiContent mdi = new MdiContent(content, md5(content), System.currentTimeMillis());
+		if (cacheKey != null) {
+			mdiCache.put(cacheKey, mdi);
+		}
+		return mdi;
+	}
+
+	/**
+	 * Verwirft alle zwischengespeicherten MDIs, da sich xtcasMdi geändert hat.
+	 */
+	@EventListener
+	public void invalidateMDI(MdiChangedEvent event) {
+		mdiCache.clear();
+	}
+
+	/**
+	 * Die Einträge in xtcasMdi werden per Row-Level-Security nach den SecurityTokens des Users gefiltert. User mit denselben SecurityTokens bekommen deshalb
+	 * dieselbe MDI.
+	 *
+	 * @return Die sortierten SecurityTokens, "*" falls der User alle Einträge sehen darf, oder null, falls er xtcasMdi nicht lesen darf.
+	 */
+	private String getMdiCacheKey() {
+		final List<Row> privileges = securityUtils.getPrivilegePermissions("xtcasMdi");
+		if (privileges.isEmpty()) {
+			// Dann schlägt das Generieren mit der passenden Fehlermeldung fehl.
+			return null;
+		}
+		final List<String> tokens = SecurityService.extractUserTokens(privileges);
+		if (tokens.isEmpty()) {
+			return "*";
+		}
+		return String.join("\n", new TreeSet<>(tokens));
+	}
+
+	private static String md5(byte[] content) {
+		try {
+			final MessageDigest md = MessageDigest.getInstance("MD5");
+			return String.format("%0" + (md.getDigestLength() * 2) + "x", new BigInteger(1, md.digest(content)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("msg.MD5Error");
+		}
+	}
+
+	private byte[] generateMDI() {
 		String user = SecurityContextHolder.getContext().getAuthentication().getName();
 
 		Table mdiQuery = new Table();
@@ -510,21 +857,37 @@ public class FilesService {
 	 */
 	public byte[] xml2byteArray(Main mainXML) {
 		try {
-			// Create JAXB Context
-			JAXBContext jaxbContext = JAXBContext.newInstance(Main.class);
-			// Create Marshaller
-			Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-			jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, java.lang.Boolean.TRUE);
+			Marshaller jaxbMarshaller = mdiMarshallers.poll();
+			if (jaxbMarshaller == null) {
+				jaxbMarshaller = getMdiContext().createMarshaller();
+				jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, java.lang.Boolean.TRUE);
+			}
 
 			QName qName = new QName("", "main");
 			JAXBElement<Main> root = new JAXBElement<>(qName, Main.class, mainXML);
 			ByteArrayOutputStream out = new ByteArrayOutputStream();
 
 			jaxbMarshaller.marshal(root, out);
+			// Nur nach erfolgreichem Marshalling zurückgeben, damit kein Marshaller in einem undefinierten Zustand wiederverwendet wird.
+			mdiMarshallers.offer(jaxbMarshaller);
 			return out.toByteArray();
 		} catch (Exception e) {
 			customLogger.logError(e.getMessage(), e);
 			throw new RuntimeException(e);
 		}
 	}
+
+	private JAXBContext getMdiContext() throws JAXBException {
+		JAXBContext context = mdiContext;
+		if (context == null) {
+			synchronized (this) {
+				context = mdiContext;
+				if (context == null) {
+					context = JAXBContext.newInstance(Main.class);
+					mdiContext = context;
+				}
+			}
+		}
+		return context;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,6 @@
+package aero.minova.cas.service;
+
+/**
+ * Wird veröffentlicht, wenn sich ein Eintrag in xtcasMdi ändert. Die zwischengespeicherten MDIs in {@link FilesService} werden dann verworfen.
+ */
+public class MdiChangedEvent {}
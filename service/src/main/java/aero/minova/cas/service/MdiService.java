@@ -3,6 +3,7 @@ package aero.minova.cas.service;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import aero.minova.cas.service.model.Mdi;
@@ -23,6 +24,9 @@ public class MdiService extends BaseService<Mdi> {
 	@Autowired
 	AuthorizationService authorizationService;
 
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
 	/**
 	 * Äquivalent zum Einspielen von xtcasMdiType.form.xml über setup, dort werden die 3 Typen auch angelegt
 	 */
@@ -203,7 +207,15 @@ public class MdiService extends BaseService<Mdi> {
 			mdi.setSecurityToken(null);
 		}
 
-		return super.save(mdi);
+		mdi = super.save(mdi);
+		eventPublisher.publishEvent(new MdiChangedEvent());
+		return mdi;
+	}
+
+	@Override
+	public void deleteById(int id) {
+		super.deleteById(id);
+		eventPublisher.publishEvent(new MdiChangedEvent());
 	}
 
 }
@@ -23,6 +23,11 @@ public class OAuth2Token {
 		setExpiryDate(expiryDate);
 	}
 
+	public OAuth2Token(String token, Instant expiryDate) {
+		this.token = token;
+		this.expiryDate = expiryDate;
+	}
+
 	private void setExpiryDate(String expiryDate) {
 		try {
 			LocalDateTime ldt = LocalDateTime.parse(expiryDate, OAUTHSERVERFORMAT);
@@ -0,0 +1,243 @@
+package aero.minova.cas.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tomcat.util.codec.binary.Base64;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.service.model.CASServices;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Hält die OAuth2 Tokens der Dienste, an die der QueueService Nachrichten verschickt. Die Tokens werden pro Dienst (KeyLong) gespeichert und im Hintergrund
+ * kurz vor ihrem Ablauf erneuert, sodass der Versand nicht auf den Token-Server warten muss. Das gilt nur, solange der Token verwendet wird. Wurde er seit
+ * dem letzten Abruf nicht gelesen, wird er verworfen und erst beim nächsten Versand neu angefragt. Fragen mehrere Threads gleichzeitig einen neuen Token für
+ * denselben Dienst an, wird nur eine Anfrage an den Token-Server geschickt.
+ */
+@Component
+public class OAuth2TokenCache {
+
+	@Autowired
+	CustomLogger logger;
+
+	@Autowired
+	RestTemplate restTemplate;
+
+	// Hierbei handelt es sich um Sekunden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.oauth2.refresh.ahead:60}")
+	long refreshAhead;
+
+	private final Map<Integer, OAuth2Token> tokens = new ConcurrentHashMap<>();
+
+	/**
+	 * Die laufenden Anfragen an den Token-Server pro Dienst.
+	 */
+	private final Map<Integer, CompletableFuture<OAuth2Token>> pendingRequests = new ConcurrentHashMap<>();
+
+	/**
+	 * Die Dienste, deren Token seit dem letzten Abruf gelesen wurde. Nur deren Tokens werden im Hintergrund erneuert.
+	 */
+	private final Set<Integer> usedTokens = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Die geplanten Erneuerungen pro Dienst.
+	 */
+	private final Map<Integer, ScheduledFuture<?>> scheduledRefreshes = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService scheduler;
+
+	@PostConstruct
+	public void init() {
+		scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("cas-oauth2-refresh-"));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Liefert einen gültigen Token für den Dienst. Ist kein Token vorhanden oder ist er abgelaufen, wird ein neuer Token angefragt.
+	 *
+	 * @param service
+	 *            Der Dienst, an den eine Nachricht verschickt werden soll.
+	 * @return Der Access Token.
+	 * @throws IllegalArgumentException
+	 *             wenn kein Token vom Token-Server gelesen werden konnte.
+	 */
+	public String getToken(CASServices service) {
+		OAuth2Token token = tokens.get(service.getKeyLong());
+		if (token != null && token.getExpiryDate().isAfter(Instant.now())) {
+			usedTokens.add(service.getKeyLong());
+			return token.getToken();
+		}
+		try {
+			return refresh(service).join().getToken();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Verwirft den Token eines Dienstes, z.B. weil der Dienst abgemeldet wurde.
+	 *
+	 * @param serviceKey
+	 *            Der KeyLong des Dienstes.
+	 */
+	public void evict(int serviceKey) {
+		pendingRequests.remove(serviceKey);
+		tokens.remove(serviceKey);
+		usedTokens.remove(serviceKey);
+		ScheduledFuture<?> scheduledRefresh = scheduledRefreshes.remove(serviceKey);
+		if (scheduledRefresh != null) {
+			scheduledRefresh.cancel(false);
+		}
+	}
+
+	/**
+	 * Fragt einen neuen Token an. Läuft für den Dienst bereits eine Anfrage, wird auf deren Ergebnis gewartet.
+	 */
+	CompletableFuture<OAuth2Token> refresh(CASServices service) {
+		final int serviceKey = service.getKeyLong();
+		final CompletableFuture<OAuth2Token> request = new CompletableFuture<>();
+		final CompletableFuture<OAuth2Token> running = pendingRequests.putIfAbsent(serviceKey, request);
+		if (running != null) {
+			return running;
+		}
+
+		try {
+			OAuth2Token token = fetchToken(service);
+			// Wurde der Dienst in der Zwischenzeit abgemeldet, wird der Token nicht mehr gespeichert.
+			if (pendingRequests.get(serviceKey) == request) {
+				tokens.put(serviceKey, token);
+				usedTokens.remove(serviceKey);
+				scheduleRefresh(service, token);
+			}
+			request.complete(token);
+		} catch (RuntimeException e) {
+			request.completeExceptionally(e);
+		} finally {
+			pendingRequests.remove(serviceKey, request);
+		}
+		return request;
+	}
+
+	/**
+	 * Plant die Erneuerung des Tokens {@link #refreshAhead} Sekunden vor seinem Ablauf, bei kurzlebigen Tokens spätestens nach der Hälfte seiner Laufzeit.
+	 * Wurde der Token bis dahin nicht gelesen, wird er stattdessen verworfen. So fragen Dienste, an die nichts mehr verschickt wird, nicht endlos neue Tokens
+	 * an.
+	 */
+	private void scheduleRefresh(CASServices service, OAuth2Token token) {
+		Instant now = Instant.now();
+		Duration lifetime = Duration.between(now, token.getExpiryDate());
+		if (lifetime.isNegative() || lifetime.isZero()) {
+			return;
+		}
+		Duration ahead = Duration.ofSeconds(refreshAhead);
+		if (ahead.compareTo(lifetime.dividedBy(2)) > 0) {
+			ahead = lifetime.dividedBy(2);
+		}
+		long delay = lifetime.minus(ahead).toMillis();
+
+		final int serviceKey = service.getKeyLong();
+		try {
+			ScheduledFuture<?> scheduledRefresh = scheduler.schedule(() -> {
+				if (!usedTokens.remove(serviceKey)) {
+					// Wurde inzwischen ein neuer Token geholt, gehört die geplante Erneuerung bereits zu diesem.
+					if (tokens.remove(serviceKey, token)) {
+						scheduledRefreshes.remove(serviceKey);
+					}
+					return;
+				}
+				try {
+					refresh(service).join();
+				} catch (Exception e) {
+					// Beim nächsten Versand wird erneut versucht, einen Token zu holen.
+					logger.logError("Could not refresh OAuth2 token of service " + service.getKeyText() + ".", e);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+			ScheduledFuture<?> previous = scheduledRefreshes.put(serviceKey, scheduledRefresh);
+			if (previous != null) {
+				previous.cancel(false);
+			}
+		} catch (RejectedExecutionException e) {
+			// Der Dienst wird gerade heruntergefahren.
+		}
+	}
+
+	/**
+	 * Anfrage an einen im übergebenen Service definierten Server schicken, um einen neuen OAuth2 Token zu erhalten. Die Laufzeit wird aus expires_in der
+	 * Antwort gelesen. Fehlt sie, wird wie bisher der Expires Header verwendet.
+	 *
+	 * @param service,
+	 *            ein CASServices Objekt.
+	 * @return ein gültiges OAuth2Token Objekt, ansonsten wird eine IllegalArgumentException geworfen.
+	 */
+	OAuth2Token fetchToken(CASServices service) {
+		try {
+			// Zuerst einen Aufruf an die TokenUrl/ an den Token Server machen, um sich einen Token zu holen.
+			String credentials = service.getClientId() + ":" + service.getClientSecret();
+			String encodedAuth = new String(Base64.encodeBase64(credentials.getBytes(StandardCharsets.UTF_8), false));
+			HttpHeaders headers = new HttpHeaders();
+			headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+			headers.add("Authorization", "Basic " + encodedAuth);
+
+			MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
+			map.add("grant_type", "password");
+			map.add("username", service.getUsername());
+			map.add("password", service.getPassword());
+			map.add("scope", "test");
+
+			HttpEntity<MultiValueMap<String, String>> tokenRequest = new HttpEntity<>(map, headers);
+			String accessTokenUrl = service.getTokenURL();
+
+			ResponseEntity<String> response = restTemplate.exchange(accessTokenUrl, HttpMethod.POST, tokenRequest, String.class);
+
+			// Access Token aus der JSON response lesen.
+			ObjectMapper mapper = new ObjectMapper();
+			JsonNode node = mapper.readTree(response.getBody());
+			String token = node.path("access_token").asText();
+
+			long expiresIn = node.path("expires_in").asLong(0);
+			if (expiresIn > 0) {
+				return new OAuth2Token(token, Instant.now().plusSeconds(expiresIn));
+			}
+
+			List<String> expiryDates = response.getHeaders().getValuesAsList("Expires");
+			return new OAuth2Token(token, expiryDates.get(expiryDates.size() - 1));
+		} catch (Exception e) {
+			throw new IllegalArgumentException("QueueService was not able to read the access token from tokenurl " + service.getTokenURL());
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package aero.minova.cas.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.sql.SystemDatabase;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Räumt die xtcasServiceMessage unabhängig vom Versand auf. Zu alte Nachrichten werden gelöscht und Nachrichten, die zu oft versucht wurden, werden auf
+ * Failed gesetzt. Dafür werden mengenbasierte Statements verwendet, die jeweils höchstens {@link #chunkSize} Zeilen betreffen und einzeln committed werden.
+ * So bleiben die Sperren auch nach einem längeren Ausfall mit vielen Nachrichten kurz.
+ * <p>
+ * Nachrichten, die gerade einer CAS-Instanz zum Versand zugeteilt sind, werden nicht verändert.
+ */
+@Service
+public class QueueHousekeepingService {
+
+	@Autowired
+	private CustomLogger logger;
+
+	@Autowired
+	private SecurityService securityService;
+
+	@Autowired
+	private SystemDatabase systemDatabase;
+
+	// Hierbei handelt es sich um Tage
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.message.age:7}")
+	int allowedMessageAge;
+
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.number.of.attempts:10}")
+	int allowedNumberOfAttempts;
+
+	// Anzahl der Zeilen, die pro Statement gelöscht bzw. aktualisiert werden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.housekeeping.chunk.size:1000}")
+	int chunkSize;
+
+	@Scheduled(cron = "${aero.minova.queue.housekeeping.intervall:0 */5 * * * *}")
+	void scheduledHousekeeping() {
+		try {
+			if (!securityService.isTablePresent("xvcasCASServiceMessage")) {
+				return;
+			}
+			cleanUp();
+		} catch (Exception e) {
+			logger.logError("Error while cleaning up xtcasServiceMessage.", e);
+		}
+	}
+
+	/**
+	 * Löscht zu alte Nachrichten und setzt Nachrichten, die zu oft versucht wurden, auf Failed.
+	 */
+	void cleanUp() {
+		final LocalDateTime now = LocalDateTime.now();
+		final Timestamp nowTimestamp = Timestamp.valueOf(now);
+
+		int deleted = executeInChunks("delete", "from xtcasServiceMessage", //
+				"MessageCreationDate < ? and (ClaimedUntil is null or ClaimedUntil < ?)", //
+				List.of(Timestamp.valueOf(now.minusDays(allowedMessageAge)), nowTimestamp));
+		if (deleted > 0) {
+			Metrics.counter("cas.queue.housekeeping.deleted").increment(deleted);
+			logger.logQueueService("Deleted " + deleted + " messages older than " + allowedMessageAge + " days.");
+		}
+
+		int failed = executeInChunks("update", "xtcasServiceMessage set Failed = ?", //
+				"IsSent = ? and Failed = ? and NumberOfAttempts >= ? and (ClaimedUntil is null or ClaimedUntil < ?)", //
+				List.of(true, false, false, allowedNumberOfAttempts, nowTimestamp));
+		if (failed > 0) {
+			Metrics.counter("cas.queue.housekeeping.failed").increment(failed);
+			logger.logQueueService("Marked " + failed + " messages with at least " + allowedNumberOfAttempts + " attempts as failed.");
+		}
+	}
+
+	/**
+	 * Führt ein Statement so oft aus, bis es weniger als {@link #chunkSize} Zeilen betrifft. Jeder Durchgang wird einzeln committed.
+	 *
+	 * @param command
+	 *            "delete" oder "update".
+	 * @param target
+	 *            Der Teil des Statements nach dem Befehl, z.B. "from xtcasServiceMessage".
+	 * @param condition
+	 *            Die Bedingung, welche Zeilen betroffen sind.
+	 * @param parameters
+	 *            Die Parameter für target und condition in dieser Reihenfolge.
+	 * @return Die Anzahl der insgesamt betroffenen Zeilen.
+	 */
+	private int executeInChunks(String command, String target, String condition, List<Object> parameters) {
+		final int limit = Math.max(1, chunkSize);
+		final String statement;
+		final List<Object> statementParameters = new ArrayList<>();
+		if (systemDatabase.isSQLDatabase()) {
+			statement = command + " top (?) " + target + " where " + condition;
+			statementParameters.add(limit);
+			statementParameters.addAll(parameters);
+		} else if (systemDatabase.isMySQLDatabase()) {
+			// MySQL erlaubt weder limit in einer in-Unterabfrage noch eine Unterabfrage auf die Tabelle, die verändert wird. Deshalb wird die Unterabfrage
+			// als abgeleitete Tabelle vorab ausgewertet.
+			statement = command + " " + target + " where KeyLong in (select KeyLong from (select KeyLong from xtcasServiceMessage where " + condition
+					+ " order by KeyLong limit ?) t)";
+			statementParameters.addAll(parameters);
+			statementParameters.add(limit);
+		} else {
+			// PostgreSQL und H2
+			statement = command + " " + target + " where KeyLong in (select KeyLong from xtcasServiceMessage where " + condition + " order by KeyLong limit ?)";
+			statementParameters.addAll(parameters);
+			statementParameters.add(limit);
+		}
+
+		int total = 0;
+		final Connection connection = systemDatabase.getConnection();
+		try (PreparedStatement preparedStatement = connection.prepareStatement(statement)) {
+			for (int i = 0; i < statementParameters.size(); i++) {
+				preparedStatement.setObject(i + 1, statementParameters.get(i));
+			}
+			int affected;
+			do {
+				affected = preparedStatement.executeUpdate();
+				connection.commit();
+				total += affected;
+			} while (affected >= limit);
+			return total;
+		} catch (SQLException e) {
+			try {
+				connection.rollback();
+			} catch (SQLException e1) {
+				logger.logError("Could not roll back clean up of xtcasServiceMessage.", e1);
+			}
+			throw new RuntimeException("Could not clean up xtcasServiceMessage after " + total + " rows: " + statement, e);
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+	}
+}
@@ -1,17 +1,36 @@
 package aero.minova.cas.service;
 
 import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.temporal.ChronoUnit;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.stream.Collectors;
 
 import org.apache.tomcat.util.codec.binary.Base64;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,27 +40,30 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
 
 import aero.minova.cas.CustomLogger;
 import aero.minova.cas.api.domain.Table;
 import aero.minova.cas.controller.SqlProcedureController;
 import aero.minova.cas.service.model.CASServices;
-import aero.minova.cas.service.model.NewsfeedListener;
 import aero.minova.cas.service.model.ServiceMessage;
 import aero.minova.cas.service.repository.CASServicesRepository;
 import aero.minova.cas.service.repository.ServiceMessageRepository;
 import aero.minova.cas.servicenotifier.ServiceNotifierService;
+import aero.minova.cas.sql.SystemDatabase;
+import io.micrometer.core.instrument.Metrics;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 @Service
 public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
@@ -58,6 +80,9 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	@Autowired
 	private SqlProcedureController spc;
 
+	@Autowired
+	private SystemDatabase systemDatabase;
+
 	// Hierbei handelt es sich um Tage
 	@org.springframework.beans.factory.annotation.Value("${aero.minova.message.age:7}")
 	int allowedMessageAge;
@@ -65,6 +90,73 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	@org.springframework.beans.factory.annotation.Value("${aero.minova.number.of.attempts:10}")
 	int allowedNumberOfAttempts;
 
+	// Anzahl der Dienste, an die gleichzeitig Nachrichten verschickt werden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.parallel.services:4}")
+	int parallelServices;
+
+	// Hierbei handelt es sich um Sekunden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.retry.delay:30}")
+	long retryDelay;
+
+	// Hierbei handelt es sich um Sekunden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.retry.max.delay:3600}")
+	long maxRetryDelay;
+
+	// Eindeutiger Name dieser CAS-Instanz. Ist er nicht gesetzt, wird beim Start ein zufälliger Name erzeugt.
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.node.id:}")
+	String nodeId;
+
+	// Anzahl der Nachrichten, die sich eine Instanz auf einmal zuteilt
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.claim.page.size:100}")
+	int claimPageSize;
+
+	// Hierbei handelt es sich um Sekunden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.claim.lease:300}")
+	long claimLease;
+
+	// Anzahl der aufeinanderfolgenden Fehlversuche, nach denen ein Dienst gesperrt wird
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.circuit.failure.threshold:5}")
+	int circuitFailureThreshold;
+
+	// Hierbei handelt es sich um Sekunden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.circuit.cooldown:60}")
+	long circuitCooldown;
+
+	// Hierbei handelt es sich um Sekunden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.circuit.max.cooldown:1800}")
+	long circuitMaxCooldown;
+
+	// Maximale Größe in Bytes, wenn mehrere Nachrichten gemeinsam verschickt werden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.batch.max.bytes:1048576}")
+	long maxBatchBytes;
+
+	/**
+	 * Die maximale Anzahl an KeyLongs in einem Statement, das Zuteilungen ändert. SQL Server erlaubt z.B. höchstens 2100 Parameter.
+	 */
+	private static final int CLAIM_CHUNK_SIZE = 1000;
+
+	/**
+	 * Pro Dienst (KeyLong) der Zustand seiner Erreichbarkeit.
+	 */
+	private final Map<Integer, ServiceCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+	private ExecutorService dispatcher;
+
+	/**
+	 * Führt die Durchläufe aus. Da es nur einen Thread gibt, laufen nie zwei Durchläufe gleichzeitig.
+	 */
+	private ExecutorService sweepExecutor;
+
+	/**
+	 * Ist true, solange ein Durchlauf angefordert, aber noch nicht gestartet wurde. Weitere Anforderungen werden dann zusammengefasst.
+	 */
+	private final AtomicBoolean sweepRequested = new AtomicBoolean(false);
+
+	/**
+	 * Ist true, wenn seit dem letzten {@link #wakeUp()} neue Nachrichten gespeichert wurden.
+	 */
+	private final AtomicBoolean messagesWaiting = new AtomicBoolean(false);
+
 	@Autowired
 	RestTemplate restTemplate;
 
@@ -77,11 +169,64 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	@Autowired
 	CASServicesRepository casServiceRepo;
 
-	Map<CASServices, OAuth2Token> oauth2TokenList = new HashMap<>();
+	@Autowired
+	OAuth2TokenCache oauth2TokenCache;
 
 	@PostConstruct
 	public void init() {
 		spc.setQueueService(this);
+		if (nodeId == null || nodeId.isBlank()) {
+			nodeId = UUID.randomUUID().toString();
+		}
+		dispatcher = Executors.newFixedThreadPool(Math.max(1, parallelServices), new CustomizableThreadFactory("cas-queue-"));
+		sweepExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("cas-queue-sweep-"));
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		sweepExecutor.shutdownNow();
+		dispatcher.shutdownNow();
+	}
+
+	/**
+	 * Muss aufgerufen werden, nachdem eine Anfrage erfolgreich abgeschlossen (committed) wurde. Wurden dabei über {@link #accept(Table, ResponseEntity)} neue
+	 * Nachrichten gespeichert, werden diese sofort verschickt und nicht erst beim nächsten Intervall.
+	 */
+	public void wakeUp() {
+		if (messagesWaiting.getAndSet(false)) {
+			requestSweep();
+		}
+	}
+
+	/**
+	 * Fordert einen Durchlauf an. Läuft gerade ein Durchlauf, wird der nächste danach gestartet. Mehrere Anforderungen, die in dieser Zeit eintreffen, werden
+	 * zu einem Durchlauf zusammengefasst.
+	 */
+	void requestSweep() {
+		if (sweepRequested.compareAndSet(false, true)) {
+			try {
+				sweepExecutor.execute(() -> {
+					sweepRequested.set(false);
+					try {
+						sendQueueMessage();
+					} catch (Exception e) {
+						logger.logError("Error while sending queued messages.", e);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// Der Dienst wird gerade heruntergefahren.
+				sweepRequested.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Sicherheits-Durchlauf in einem regelmäßigen Abstand. Normalerweise werden neue Nachrichten schon über {@link #wakeUp()} verschickt. Hier werden
+	 * Nachrichten erfasst, deren nächster Versuch ansteht, oder die von außerhalb des CAS in die xtcasServiceMessage geschrieben wurden.
+	 */
+	@Scheduled(cron = "${aero.minova.check.message.intervall:0 * * * * *}")
+	void scheduledSweep() {
+		requestSweep();
 	}
 
 	/**
@@ -105,9 +250,12 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	}
 
 	/**
-	 * Versucht in einem bestimmten regelmäßigen Abstand unversendete Nachrichten an Dienste zu verschicken.
+	 * Versucht unversendete Nachrichten an Dienste zu verschicken. Wird nur über {@link #requestSweep()} aufgerufen, damit nie zwei Durchläufe gleichzeitig
+	 * laufen. Die Nachrichten werden pro Dienst gruppiert. Jeder Dienst bekommt seine Nachrichten der Reihe nach, es werden aber bis zu
+	 * {@link #parallelServices} Dienste gleichzeitig beliefert. Dadurch hält ein langsamer Dienst nicht mehr alle anderen auf.
+	 * <p>
+	 * Es werden nur Nachrichten verschickt, die vorher über {@link #claimMessages()} dieser Instanz zugeteilt wurden.
 	 */
-	@Scheduled(cron = "${aero.minova.check.message.intervall:0 * * * * *}")
 	private void sendQueueMessage() {
 		try {
 			if (!securityService.isTablePresent("xvcasCASServiceMessage")) {
@@ -156,48 +304,435 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 			}
 		});
 
-		List<ServiceMessage> messagesToBeSend;
+		sendClaimedMessages();
+	}
 
-		try {
-			// Holt sich alle Nachrichten, die noch nicht versandt wurden oder noch nicht gefailed sind.
-			messagesToBeSend = serviceMessageRepo.findAllByIsSentFalseAndFailedFalseAndLastActionGreaterThan(0);
-		} catch (Exception e) {
-			logger.logError("Could not read next message. The QueueService could not read tServiceMessage.", e);
+	/**
+	 * Teilt dieser Instanz so lange Seiten zu und verschickt sie, bis keine volle Seite mehr zustande kommt. Wurde bei einer Seite keine Nachricht verschickt
+	 * und kein Versuch verbraucht, z.B. weil alle Dienste gesperrt sind, wird abgebrochen. Sonst würde dieselbe Seite sofort wieder zugeteilt werden.
+	 */
+	void sendClaimedMessages() {
+		int claimed;
+		do {
+			claimed = claimMessages();
+			if (claimed == 0) {
+				return;
+			}
+
+			List<ServiceMessage> messagesToBeSend;
+			try {
+				messagesToBeSend = serviceMessageRepo.findAllByClaimedByAndIsSentFalseAndFailedFalseOrderByKeyLongAsc(nodeId);
+			} catch (Exception e) {
+				logger.logError("Could not read next message. The QueueService could not read tServiceMessage.", e);
+				throw new RuntimeException(e);
+			}
+
+			if (dispatchLanes(messagesToBeSend) <= 0) {
+				return;
+			}
+		} while (claimed >= claimPageSize);
+	}
+
+	/**
+	 * Teilt dieser Instanz bis zu {@link #claimPageSize} unversendete Nachrichten für {@link #claimLease} Sekunden zu. Dadurch können mehrere CAS-Instanzen auf
+	 * dieselbe xtcasServiceMessage zugreifen, ohne eine Nachricht doppelt zu verschicken. Zeilen, die gerade von einer anderen Instanz zugeteilt werden, werden
+	 * übersprungen (READPAST bzw. SKIP LOCKED) statt auf sie zu warten.
+	 * <p>
+	 * Eine Nachricht wird nur zugeteilt, wenn keine ältere Nachricht desselben Dienstes gerade einer Instanz zugeteilt ist oder auf ihren nächsten Versuch
+	 * wartet. So bekommt jeder Dienst seine Nachrichten weiterhin der Reihe nach. Fällt eine Instanz aus, werden ihre Nachrichten nach Ablauf der Zuteilung von
+	 * einer anderen Instanz übernommen. Solange eine Instanz die Nachrichten verschickt, verlängert sie die Zuteilung, sobald die Hälfte davon abgelaufen ist
+	 * (siehe {@link #renewClaim(List, LocalDateTime)}).
+	 *
+	 * @return Die Anzahl der zugeteilten Nachrichten.
+	 */
+	int claimMessages() {
+		final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+		final Timestamp claimedUntil = Timestamp.valueOf(now.toLocalDateTime().plusSeconds(claimLease));
+		final Timestamp oldestMessage = Timestamp.valueOf(now.toLocalDateTime().minusDays(allowedMessageAge));
+
+		// Zu alte und zu oft versuchte Nachrichten werden nicht mehr verschickt, sondern vom QueueHousekeepingService aufgeräumt.
+		final String claimable = "m.IsSent = ? and m.Failed = ? and m.LastAction > 0" //
+				+ " and m.NumberOfAttempts < ? and m.MessageCreationDate >= ?" //
+				+ " and (m.ClaimedUntil is null or m.ClaimedUntil < ?)" //
+				+ " and (m.NextAttemptDate is null or m.NextAttemptDate <= ?)" //
+				+ " and not exists (select 1 from xtcasServiceMessage o where o.CASServiceKey = m.CASServiceKey and o.KeyLong < m.KeyLong" //
+				+ " and o.IsSent = ? and o.Failed = ? and o.LastAction > 0 and (o.ClaimedUntil >= ? or o.NextAttemptDate > ?))";
+
+		final String statement;
+		if (systemDatabase.isSQLDatabase()) {
+			statement = "with next as (select top (?) * from xtcasServiceMessage m with (updlock, readpast, rowlock) where " + claimable
+					+ " order by m.KeyLong) update next set ClaimedBy = ?, ClaimedUntil = ?";
+		} else if (systemDatabase.isPostgreSQLDatabase()) {
+			statement = "update xtcasServiceMessage set ClaimedBy = ?, ClaimedUntil = ? where KeyLong in (select m.KeyLong from xtcasServiceMessage m where "
+					+ claimable + " order by m.KeyLong limit ? for update skip locked)";
+		} else if (systemDatabase.isMySQLDatabase()) {
+			// MySQL erlaubt weder limit in einer in-Unterabfrage noch eine Unterabfrage auf die Tabelle, die aktualisiert wird. Deshalb wird die Unterabfrage
+			// als abgeleitete Tabelle vorab ausgewertet. Da sie ohne Sperren gelesen wird, prüft das update die Zuteilung erneut.
+			statement = "update xtcasServiceMessage set ClaimedBy = ?, ClaimedUntil = ? where (ClaimedUntil is null or ClaimedUntil < ?)"
+					+ " and KeyLong in (select KeyLong from (select m.KeyLong from xtcasServiceMessage m where " + claimable + " order by m.KeyLong limit ?) t)";
+		} else {
+			// H2 wird nur für Tests mit einer einzigen Instanz verwendet.
+			statement = "update xtcasServiceMessage set ClaimedBy = ?, ClaimedUntil = ? where KeyLong in (select m.KeyLong from xtcasServiceMessage m where "
+					+ claimable + " order by m.KeyLong limit ?)";
+		}
+
+		final Connection connection = systemDatabase.getConnection();
+		try (PreparedStatement preparedStatement = connection.prepareStatement(statement)) {
+			int i = 1;
+			if (systemDatabase.isSQLDatabase()) {
+				preparedStatement.setInt(i++, claimPageSize);
+				i = setClaimableParameters(preparedStatement, i, now, oldestMessage);
+				preparedStatement.setString(i++, nodeId);
+				preparedStatement.setTimestamp(i, claimedUntil);
+			} else {
+				preparedStatement.setString(i++, nodeId);
+				preparedStatement.setTimestamp(i++, claimedUntil);
+				if (systemDatabase.isMySQLDatabase()) {
+					preparedStatement.setTimestamp(i++, now);
+				}
+				i = setClaimableParameters(preparedStatement, i, now, oldestMessage);
+				preparedStatement.setInt(i, claimPageSize);
+			}
+			int claimed = preparedStatement.executeUpdate();
+			connection.commit();
+			if (claimed > 0) {
+				logger.logQueueService(nodeId + " claimed " + claimed + " messages until " + claimedUntil);
+			}
+			return claimed;
+		} catch (SQLException e) {
+			try {
+				connection.rollback();
+			} catch (SQLException e1) {
+				logger.logError("Could not roll back message claim.", e1);
+			}
+			logger.logError("Could not claim messages. The QueueService could not update xtcasServiceMessage.", e);
 			throw new RuntimeException(e);
+		} finally {
+			systemDatabase.closeConnection(connection);
 		}
+	}
 
-		if (messagesToBeSend != null && !messagesToBeSend.isEmpty()) {
+	private int setClaimableParameters(PreparedStatement preparedStatement, int index, Timestamp now, Timestamp oldestMessage) throws SQLException {
+		int i = index;
+		preparedStatement.setBoolean(i++, false);
+		preparedStatement.setBoolean(i++, false);
+		preparedStatement.setInt(i++, allowedNumberOfAttempts);
+		preparedStatement.setTimestamp(i++, oldestMessage);
+		preparedStatement.setTimestamp(i++, now);
+		preparedStatement.setTimestamp(i++, now);
+		preparedStatement.setBoolean(i++, false);
+		preparedStatement.setBoolean(i++, false);
+		preparedStatement.setTimestamp(i++, now);
+		preparedStatement.setTimestamp(i++, now);
+		return i;
+	}
 
-			for (ServiceMessage pendingMessage : messagesToBeSend) {
+	/**
+	 * Verteilt die Nachrichten auf eine Warteschlange pro Dienst und wartet, bis alle Warteschlangen abgearbeitet sind.
+	 *
+	 * @param messagesToBeSend
+	 *            Die zugeteilten Nachrichten, sortiert nach ihrem KeyLong.
+	 * @return Die Anzahl der verschickten oder fehlgeschlagenen Nachrichten oder -1, wenn der Durchlauf unterbrochen wurde.
+	 */
+	private int dispatchLanes(List<ServiceMessage> messagesToBeSend) {
+		if (messagesToBeSend == null || messagesToBeSend.isEmpty()) {
+			return 0;
+		}
 
-				// Wenn die allowedNumberOfAttempts zu hoch wird, setzen wir Failed auf true und die Nachricht soll nicht weiter versucht werden zu verschicken.
-				if (pendingMessage.getNumberOfAttempts() >= allowedNumberOfAttempts) {
-					pendingMessage.setFailed(true);
-					serviceMessageRepo.saveAndFlush(pendingMessage);
-					continue;
+		// Pro Dienst eine Warteschlange, in der die Nachrichten in der Reihenfolge ihrer Erstellung stehen.
+		Map<Integer, List<ServiceMessage>> lanes = new LinkedHashMap<>();
+		for (ServiceMessage pendingMessage : messagesToBeSend) {
+			lanes.computeIfAbsent(pendingMessage.getCasService().getKeyLong(), key -> new ArrayList<>()).add(pendingMessage);
+		}
+
+		List<Future<Integer>> runningLanes = new ArrayList<>();
+		for (List<ServiceMessage> lane : lanes.values()) {
+			runningLanes.add(dispatcher.submit(() -> processLane(lane)));
+		}
+
+		// Erst wenn alle Dienste abgearbeitet sind, ist der Durchlauf beendet. So überschneiden sich zwei Durchläufe nicht.
+		int handled = 0;
+		for (Future<Integer> runningLane : runningLanes) {
+			try {
+				handled += runningLane.get();
+			} catch (ExecutionException e) {
+				logger.logError("Error while sending messages.", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return -1;
+			}
+		}
+		return handled;
+	}
+
+	/**
+	 * Verschickt die Nachrichten eines Dienstes der Reihe nach. Schlägt eine Nachricht fehl oder wartet sie noch auf ihren nächsten Versuch, werden die
+	 * folgenden Nachrichten dieses Dienstes erst beim nächsten Durchlauf verschickt, damit sich die Reihenfolge nicht ändert. Der Status aller Nachrichten wird
+	 * am Ende gesammelt in die Datenbank geschrieben.
+	 * <p>
+	 * Hat der Dienst eine {@link CASServices#getMaxBatchSize()}, werden mehrere Nachrichten gemeinsam verschickt (siehe {@link #createBatch(List, int,
+	 * LocalDateTime)}). Da alle versandten Nachrichten mit einem Statement gelöscht werden, gilt ein Batch entweder vollständig oder gar nicht als versandt.
+	 *
+	 * <p>
+	 * Ist der Dienst gesperrt, bekommen seine übrigen Nachrichten das Ende der Sperre als nächsten Versuch. Dadurch werden sie erst danach wieder zugeteilt.
+	 *
+	 * @param lane
+	 *            Die unversendeten Nachrichten eines Dienstes, sortiert nach ihrem KeyLong.
+	 * @return Die Anzahl der verschickten oder fehlgeschlagenen Nachrichten.
+	 */
+	int processLane(List<ServiceMessage> lane) {
+		final List<Integer> messagesToDelete = new ArrayList<>();
+		final List<ServiceMessage> messagesToUpdate = new ArrayList<>();
+		final LocalDateTime now = LocalDateTime.now();
+		final CASServices service = lane.get(0).getCasService();
+		final ServiceCircuitBreaker circuitBreaker = getCircuitBreaker(service);
+		// Bis zu diesem Zeitpunkt sind alle Nachrichten des Dienstes sicher dieser Instanz zugeteilt.
+		LocalDateTime claimedUntil = lane.stream().map(ServiceMessage::getClaimedUntil).filter(Objects::nonNull).min(Comparator.naturalOrder()).orElse(null);
+		int progress = 0;
+
+		try {
+			int position = 0;
+			while (position < lane.size()) {
+				final ServiceMessage pendingMessage = lane.get(position);
+
+				// Die Nachricht wartet noch auf ihren nächsten Versuch.
+				if (pendingMessage.getNextAttemptDate() != null && pendingMessage.getNextAttemptDate().isAfter(now)) {
+					break;
+				}
+
+				// Ist die Hälfte der Zuteilung abgelaufen, wird sie vor dem Versand verlängert, damit sie bei einem langsamen Dienst nicht abläuft und eine andere
+				// Instanz die Nachrichten übernimmt. Hat eine andere Instanz sie bereits übernommen, werden sie hier nicht mehr verschickt.
+				final List<ServiceMessage> remainingMessages = lane.subList(position, lane.size());
+				if (claimedUntil == null || LocalDateTime.now().plusSeconds(claimLease / 2).isAfter(claimedUntil)) {
+					final LocalDateTime renewedUntil = LocalDateTime.now().plusSeconds(claimLease);
+					if (renewClaim(remainingMessages, renewedUntil) < remainingMessages.size()) {
+						logger.logQueueService(nodeId + " lost its claim on messages for " + service.getKeyText() + ". They will be sent by another instance.");
+						break;
+					}
+					claimedUntil = renewedUntil;
 				}
 
-				// Falls die Nachricht älter ist als das allowedMessageAge muss die Nachricht gelöscht werden.
-				if (pendingMessage.getMessageCreationDate().toInstant(ZoneOffset.UTC).isBefore(Instant.now().minus(allowedMessageAge, ChronoUnit.DAYS))) {
-					deleteMessage(pendingMessage);
-					continue;
+				// Ist der Dienst gesperrt, wird nichts verschickt und auch kein Versuch verbraucht.
+				if (!circuitBreaker.tryAcquire(Instant.now())) {
+					Metrics.counter("cas.queue.delivery.skipped", "service", service.getKeyText()).increment();
+					logger.logQueueService(service.getKeyText() + " is unavailable until " + circuitBreaker.getOpenUntil() + ". Skipping its messages.");
+					postpone(remainingMessages, circuitBreaker.getOpenUntil(), messagesToUpdate);
+					break;
 				}
 
-				// Versuche die Nachricht an den Dienst zu verschicken.
-				boolean sendSuccessfull = sendMessage(pendingMessage);
-				if (sendSuccessfull) {
-					safeAsSent(true, pendingMessage);
+				// Versuche die Nachricht bzw. mehrere Nachrichten gemeinsam an den Dienst zu verschicken.
+				final List<ServiceMessage> batch = createBatch(lane, position, now);
+				long start = System.nanoTime();
+				// Hat der Dienst Batches aktiviert, bekommt er immer ein JSON-Array, auch wenn es nur eine Nachricht enthält.
+				boolean sent = isBatchEnabled(service) ? sendBatch(batch) : sendMessage(pendingMessage);
+				Metrics.timer("cas.queue.delivery", "service", service.getKeyText(), "outcome", sent ? "success" : "failure")
+						.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+				if (sent) {
+					circuitBreaker.recordSuccess();
+					// Alle Nachrichten des Batches werden gemeinsam in saveLaneStatus gelöscht.
+					for (ServiceMessage sentMessage : batch) {
+						messagesToDelete.add(sentMessage.getKeyLong());
+					}
+					position += batch.size();
+					progress += batch.size();
 				} else {
-					safeAsSent(false, pendingMessage);
-					logger.logQueueService(pendingMessage.getCasService().getKeyText() + " is not reachable!");
+					for (ServiceMessage failedMessage : batch) {
+						failedMessage.setNumberOfAttempts(failedMessage.getNumberOfAttempts() + 1);
+						failedMessage.setNextAttemptDate(now.plus(getRetryDelay(failedMessage.getNumberOfAttempts())));
+						messagesToUpdate.add(failedMessage);
+					}
+					progress += batch.size();
+					logger.logQueueService(service.getKeyText() + " is not reachable!");
+					if (circuitBreaker.recordFailure(Instant.now())) {
+						Metrics.counter("cas.queue.circuit.opened", "service", service.getKeyText()).increment();
+						logger.logQueueService(service.getKeyText() + " is unavailable until " + circuitBreaker.getOpenUntil() + ".");
+					}
+					break;
 				}
 			}
+		} finally {
+			// Alle übrigen Nachrichten werden wieder freigegeben, damit sie beim nächsten Durchlauf erneut zugeteilt werden können. Das passiert per SQL nur
+			// für Nachrichten, die noch dieser Instanz zugeteilt sind.
+			Set<Integer> handled = messagesToUpdate.stream().map(ServiceMessage::getKeyLong).collect(Collectors.toSet());
+			handled.addAll(messagesToDelete);
+			final List<ServiceMessage> messagesToRelease = lane.stream().filter(pendingMessage -> !handled.contains(pendingMessage.getKeyLong())).toList();
+			for (ServiceMessage pendingMessage : messagesToUpdate) {
+				pendingMessage.setClaimedBy(null);
+				pendingMessage.setClaimedUntil(null);
+			}
+			saveLaneStatus(messagesToDelete, messagesToUpdate);
+			releaseClaim(messagesToRelease);
 		}
+		return progress;
+	}
 
+	/**
+	 * Verlängert die Zuteilung der Nachrichten, sofern sie noch dieser Instanz zugeteilt sind.
+	 *
+	 * @param messages
+	 *            Die Nachrichten, deren Zuteilung verlängert wird.
+	 * @param claimedUntil
+	 *            Das neue Ende der Zuteilung.
+	 * @return Die Anzahl der Nachrichten, die noch dieser Instanz zugeteilt sind.
+	 */
+	int renewClaim(List<ServiceMessage> messages, LocalDateTime claimedUntil) {
+		return updateClaim("update xtcasServiceMessage set ClaimedUntil = ? where ClaimedBy = ? and KeyLong in ", Timestamp.valueOf(claimedUntil), messages);
+	}
+
+	/**
+	 * Gibt die Nachrichten wieder frei, sofern sie noch dieser Instanz zugeteilt sind.
+	 *
+	 * @param messages
+	 *            Die Nachrichten, die nicht verschickt wurden.
+	 */
+	void releaseClaim(List<ServiceMessage> messages) {
+		updateClaim("update xtcasServiceMessage set ClaimedBy = null, ClaimedUntil = null where ClaimedBy = ? and KeyLong in ", null, messages);
+	}
+
+	/**
+	 * Führt das Statement für die Nachrichten in Teilen von höchstens {@link #CLAIM_CHUNK_SIZE} KeyLongs aus, aber in einer Transaktion. So wird die maximale
+	 * Anzahl an Parametern der Datenbank nicht überschritten.
+	 */
+	private int updateClaim(String statement, Timestamp claimedUntil, List<ServiceMessage> messages) {
+		if (messages.isEmpty()) {
+			return 0;
+		}
+		final Connection connection = systemDatabase.getConnection();
+		try {
+			int updated = 0;
+			for (int start = 0; start < messages.size(); start += CLAIM_CHUNK_SIZE) {
+				final List<ServiceMessage> chunk = messages.subList(start, Math.min(start + CLAIM_CHUNK_SIZE, messages.size()));
+				final String keyLongs = chunk.stream().map(message -> "?").collect(Collectors.joining(", ", "(", ")"));
+				try (PreparedStatement preparedStatement = connection.prepareStatement(statement + keyLongs)) {
+					int i = 1;
+					if (claimedUntil != null) {
+						preparedStatement.setTimestamp(i++, claimedUntil);
+					}
+					preparedStatement.setString(i++, nodeId);
+					for (ServiceMessage message : chunk) {
+						preparedStatement.setInt(i++, message.getKeyLong());
+					}
+					updated += preparedStatement.executeUpdate();
+				}
+			}
+			connection.commit();
+			return updated;
+		} catch (SQLException e) {
+			try {
+				connection.rollback();
+			} catch (SQLException e1) {
+				logger.logError("Could not roll back message claim.", e1);
+			}
+			logger.logError("Could not update the claim of messages " + messages.stream().map(ServiceMessage::getKeyLong).toList() + ".", e);
+			throw new RuntimeException(e);
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+	}
+
+	/**
+	 * Verschiebt den nächsten Versuch der Nachrichten eines gesperrten Dienstes auf das Ende der Sperre, ohne dabei einen Versuch zu verbrauchen.
+	 *
+	 * @param messages
+	 *            Die übrigen Nachrichten des Dienstes.
+	 * @param openUntil
+	 *            Das Ende der Sperre oder null, wenn gerade eine Probe läuft.
+	 * @param messagesToUpdate
+	 *            Die Nachrichten, die am Ende gespeichert werden.
+	 */
+	private void postpone(List<ServiceMessage> messages, Instant openUntil, List<ServiceMessage> messagesToUpdate) {
+		if (openUntil == null) {
+			return;
+		}
+		final LocalDateTime nextAttemptDate = LocalDateTime.ofInstant(openUntil, ZoneId.systemDefault());
+		for (ServiceMessage message : messages) {
+			if (message.getNextAttemptDate() == null || message.getNextAttemptDate().isBefore(nextAttemptDate)) {
+				message.setNextAttemptDate(nextAttemptDate);
+			}
+			messagesToUpdate.add(message);
+		}
 	}
 
 	/**
-	 * Speichert eine Nachricht in der Datenbank, welche beim nächsten Intervall verschickt wird.
+	 * Stellt die Nachrichten zusammen, die gemeinsam verschickt werden. Hat der Dienst keine {@link CASServices#getMaxBatchSize()}, ist das nur die Nachricht an
+	 * der Position. Ansonsten werden die folgenden Nachrichten mit demselben Topic hinzugefügt, bis die maximale Anzahl oder {@link #maxBatchBytes} erreicht
+	 * ist.
+	 *
+	 * @param lane
+	 *            Die Nachrichten eines Dienstes, sortiert nach ihrem KeyLong.
+	 * @param position
+	 *            Die Position der ersten Nachricht, die verschickt werden soll.
+	 * @param now
+	 *            Der Zeitpunkt des Durchlaufs.
+	 * @return Mindestens eine Nachricht.
+	 */
+	List<ServiceMessage> createBatch(List<ServiceMessage> lane, int position, LocalDateTime now) {
+		final ServiceMessage first = lane.get(position);
+		if (!isBatchEnabled(first.getCasService())) {
+			return List.of(first);
+		}
+		final int maxBatchSize = first.getCasService().getMaxBatchSize();
+
+		final List<ServiceMessage> batch = new ArrayList<>();
+		batch.add(first);
+		// Die eckigen Klammern des Arrays
+		long bytes = 2 + getMessageBytes(first);
+		for (int i = position + 1; i < lane.size() && batch.size() < maxBatchSize; i++) {
+			ServiceMessage next = lane.get(i);
+			if (!Objects.equals(first.getTopic(), next.getTopic()) || (next.getNextAttemptDate() != null && next.getNextAttemptDate().isAfter(now))) {
+				break;
+			}
+			// Das Komma zwischen den Nachrichten
+			long nextBytes = 1 + getMessageBytes(next);
+			if (bytes + nextBytes > maxBatchBytes) {
+				break;
+			}
+			bytes += nextBytes;
+			batch.add(next);
+		}
+		return batch;
+	}
+
+	/**
+	 * @return true, wenn dem Dienst laut {@link CASServices#getMaxBatchSize()} mehrere Nachrichten gemeinsam als JSON-Array geschickt werden.
+	 */
+	static boolean isBatchEnabled(CASServices service) {
+		return service.getMaxBatchSize() != null && service.getMaxBatchSize() >= 2;
+	}
+
+	private static long getMessageBytes(ServiceMessage message) {
+		return message.getMessage() == null ? 4 : message.getMessage().getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	/**
+	 * @param service
+	 *            Der Dienst, an den Nachrichten verschickt werden sollen.
+	 * @return Der Zustand der Erreichbarkeit des Dienstes.
+	 */
+	ServiceCircuitBreaker getCircuitBreaker(CASServices service) {
+		return circuitBreakers.computeIfAbsent(service.getKeyLong(),
+				key -> new ServiceCircuitBreaker(circuitFailureThreshold, Duration.ofSeconds(circuitCooldown), Duration.ofSeconds(circuitMaxCooldown)));
+	}
+
+	/**
+	 * Berechnet, wie lange nach einem fehlgeschlagenen Versuch gewartet wird. Die Wartezeit verdoppelt sich mit jedem Versuch, bis sie
+	 * {@link #maxRetryDelay} erreicht.
+	 *
+	 * @param numberOfAttempts
+	 *            Die Anzahl der bisherigen Versuche, mindestens 1.
+	 * @return Die Wartezeit bis zum nächsten Versuch.
+	 */
+	Duration getRetryDelay(int numberOfAttempts) {
+		long factor = 1L << Math.min(Math.max(numberOfAttempts - 1, 0), 30);
+		long delay = retryDelay > maxRetryDelay / factor ? maxRetryDelay : retryDelay * factor;
+		return Duration.ofSeconds(Math.min(delay, maxRetryDelay));
+	}
+
+	/**
+	 * Speichert die Nachrichten für alle Dienste, die auf die von der Prozedur veränderten Topics horchen. Verschickt werden sie nach {@link #wakeUp()}. Die
+	 * betroffenen Dienste werden über einen Index im Speicher ermittelt und alle Nachrichten zusammen gespeichert, damit die Prozedur-Anfrage möglichst wenig
+	 * verzögert wird.
 	 */
 	@Override
 	public void accept(Table t, ResponseEntity<Object> u) {
@@ -209,18 +744,23 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 			if (topicSpecificMessages != null) {
 
 				// Wenn eine Prozedur ausgeführt wurde, müssen Nachrichten für alle betroffenen Dienste generiert werden.
+				List<ServiceMessage> messages = new ArrayList<>();
 				for (Map.Entry<String, BiFunction<Table, ResponseEntity<Object>, String>> entry : topicSpecificMessages.entrySet()) {
-
+					List<CASServices> servicesToBeNotified = serviceNotifierService.findSubscribedServices(entry.getKey());
+					if (servicesToBeNotified.isEmpty()) {
+						continue;
+					}
 					String message = entry.getValue().apply(t, u);
-					saveMessage(message, t.getName(), entry.getKey());
+					messages.addAll(createMessages(message, t.getName(), entry.getKey(), servicesToBeNotified));
 				}
+				saveMessages(messages);
 			}
 
 		}
 	}
 
 	/**
-	 * Speichert eine Nachricht für einen Topic.
+	 * Erstellt die Nachrichten für ein Topic.
 	 * 
 	 * @param message
 	 *            Die Nachricht, die gespeichert werden soll.
@@ -228,46 +768,45 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	 *            Die Prozedur, wegen welcher die Nachricht erstellt wurde.
 	 * @param topic
 	 *            Das Topic, welches verändert wurde.
+	 * @param servicesToBeNotified
+	 *            Die Dienste, die auf das Topic horchen.
+	 * @return Eine Nachricht pro Dienst.
 	 */
-	private void saveMessage(String message, String procedureName, String topic) {
-		List<NewsfeedListener> servicesToBeNotified = serviceNotifierService.findViewEntry(null, topic);
-
-		for (NewsfeedListener services : servicesToBeNotified) {
-			try {
-				CASServices service = casServiceRepo.findByKeyLong(services.getCasService().getKeyLong()).get();
-				ServiceMessage serviceMessage = new ServiceMessage();
+	private List<ServiceMessage> createMessages(String message, String procedureName, String topic, List<CASServices> servicesToBeNotified) {
+		List<ServiceMessage> messages = new ArrayList<>();
+		LocalDateTime now = LocalDateTime.now();
+		for (CASServices service : servicesToBeNotified) {
+			ServiceMessage serviceMessage = new ServiceMessage();
 
-				serviceMessage.setCasService(service);
-				serviceMessage.setMessage(message);
+			serviceMessage.setCasService(service);
+			serviceMessage.setMessage(message);
+			serviceMessage.setTopic(topic);
 
-				serviceMessage.setMessageCreationDate(LocalDateTime.now());
+			serviceMessage.setMessageCreationDate(now);
+			messages.add(serviceMessage);
 
-				serviceMessageRepo.saveAndFlush(serviceMessage);
-
-				logger.logQueueService("Saving message for " + topic + " for service " + services.getCasService().getKeyText() + "  because of " + procedureName
-						+ ": '" + message + "'");
-				logger.logQueueService("Message saved!");
-			} catch (Exception e) {
-				logger.logError("Error while trying to save message " + message, e);
-				throw new RuntimeException(e);
-			}
+			logger.logQueueService(
+					"Saving message for " + topic + " for service " + service.getKeyText() + "  because of " + procedureName + ": '" + message + "'");
 		}
-
+		return messages;
 	}
 
 	/**
-	 * Löscht eine Nachricht aus der Datenbank, damit nicht mehr versucht wird sie zu versenden. NEUERUNG: Wir löschen Nachrichten nicht mehr, sondern setzen
-	 * sie nur noch auf 'Failed'.
+	 * Speichert die Nachrichten gemeinsam in der Datenbank.
 	 * 
-	 * @param pendingMessage
-	 *            Eine ServiceMessage, die es zu 'löschen' gilt.
+	 * @param messages
+	 *            Die Nachrichten, die gespeichert werden sollen.
 	 */
-	private void deleteMessage(ServiceMessage pendingMessage) {
+	private void saveMessages(List<ServiceMessage> messages) {
+		if (messages.isEmpty()) {
+			return;
+		}
 		try {
-			logger.logQueueService("Deleting message with key " + pendingMessage.getKeyLong());
-			serviceMessageRepo.delete(pendingMessage);
+			serviceMessageRepo.saveAllAndFlush(messages);
+			messagesWaiting.set(true);
+			logger.logQueueService(messages.size() + " messages saved!");
 		} catch (Exception e) {
-			logger.logError("The message with key " + pendingMessage.getKeyLong() + " could not be deleted!", e);
+			logger.logError("Error while trying to save messages " + messages.stream().map(ServiceMessage::getMessage).toList(), e);
 			throw new RuntimeException(e);
 		}
 	}
@@ -281,57 +820,76 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	 * @return true, falls der Versandt erfolgreich war. Andernfalls false.
 	 */
 	private boolean sendMessage(ServiceMessage pendingMessage) {
+		return sendMessage(pendingMessage.getCasService(), pendingMessage.getMessage(), null, "message with key " + pendingMessage.getKeyLong());
+	}
+
+	/**
+	 * Versendet mehrere Nachrichten gemeinsam als JSON-Array. Nachrichten, die selbst kein JSON sind, werden als String in das Array übernommen.
+	 *
+	 * @param batch
+	 *            Die Nachrichten eines Dienstes in der Reihenfolge ihrer Erstellung.
+	 * @return true, falls der Versandt erfolgreich war. Andernfalls false.
+	 */
+	private boolean sendBatch(List<ServiceMessage> batch) {
+		JsonArray payload = new JsonArray();
+		for (ServiceMessage pendingMessage : batch) {
+			try {
+				payload.add(JsonParser.parseString(pendingMessage.getMessage()));
+			} catch (JsonSyntaxException e) {
+				payload.add(new JsonPrimitive(pendingMessage.getMessage()));
+			}
+		}
+		return sendMessage(batch.get(0).getCasService(), payload.toString(), MediaType.APPLICATION_JSON,
+				batch.size() + " messages with keys " + batch.stream().map(ServiceMessage::getKeyLong).toList());
+	}
+
+	/**
+	 * Schickt den Inhalt an den Dienst.
+	 *
+	 * @param service
+	 *            Der Dienst, an den verschickt wird.
+	 * @param message
+	 *            Der Inhalt des Requests.
+	 * @param contentType
+	 *            Der Content-Type des Requests oder null.
+	 * @param description
+	 *            Beschreibung der Nachrichten für das Log.
+	 * @return true, falls der Versandt erfolgreich war. Andernfalls false.
+	 */
+	private boolean sendMessage(CASServices service, String message, MediaType contentType, String description) {
 		// URL + : + Port
-		String url = pendingMessage.getCasService().getPort() != 0
-				? pendingMessage.getCasService().getServiceUrl() + ":" + pendingMessage.getCasService().getPort()
-				: pendingMessage.getCasService().getServiceUrl();
-		String message = pendingMessage.getMessage();
+		String url = service.getPort() != 0 ? service.getServiceUrl() + ":" + service.getPort() : service.getServiceUrl();
 
-		int serviceMessageReceiverLoginTypeKey = pendingMessage.getCasService().getReceiverLoginType() != null
-				? pendingMessage.getCasService().getReceiverLoginType().getKeyLong()
-				: 0;
+		int serviceMessageReceiverLoginTypeKey = service.getReceiverLoginType() != null ? service.getReceiverLoginType().getKeyLong() : 0;
 
 		HttpEntity<?> request;
 		try {
+			HttpHeaders headers = new HttpHeaders();
 
 			// Falls BasicAuth:
 			if (serviceMessageReceiverLoginTypeKey == 2) {
 
 				// Username + : + Password
-				String credentials = pendingMessage.getCasService().getUsername() + ":" + pendingMessage.getCasService().getPassword();
+				String credentials = service.getUsername() + ":" + service.getPassword();
 
-				HttpHeaders header = new HttpHeaders();
 				byte[] encodedAuth = Base64.encodeBase64(credentials.getBytes(StandardCharsets.UTF_8), false);
-				header.add("Authorization", "Basic " + encodedAuth);
-
-				request = new HttpEntity<>(message, header);
+				headers.add("Authorization", "Basic " + encodedAuth);
 
 				// Falls OAuth2:
 			} else if (serviceMessageReceiverLoginTypeKey == 3) {
 
-				OAuth2Token oauth2Token;
-				CASServices service = pendingMessage.getCasService();
-
-				if (!oauth2TokenList.containsKey(service)) {
-					oauth2Token = getOAuth2Token(service);
-					oauth2TokenList.put(service, oauth2Token);
-
-				} else if (oauth2TokenList.get(service).getExpiryDate().isBefore(Instant.now())) {
-					oauth2Token = getOAuth2Token(service);
-					oauth2TokenList.replace(service, oauth2Token);
-				}
-				String token = oauth2TokenList.get(service).getToken();
+				String token = oauth2TokenCache.getToken(service);
 
 				// Access Token in eigentlichen Aufruf setzen.
-				HttpHeaders headers1 = new HttpHeaders();
-				headers1.add("Authorization", "Bearer " + token);
-				headers1.setContentType(MediaType.APPLICATION_JSON);
-				request = new HttpEntity<>(message, headers1);
-
-			} else {
-				request = new HttpEntity<>(message);
+				headers.add("Authorization", "Bearer " + token);
+				headers.setContentType(MediaType.APPLICATION_JSON);
+			}
+			if (contentType != null) {
+				headers.setContentType(contentType);
 			}
-			logger.logQueueService("Trying to send message with key " + pendingMessage.getKeyLong() + " to " + url);
+			request = new HttpEntity<>(message, headers);
+
+			logger.logQueueService("Trying to send " + description + " to " + url);
 			restTemplate.exchange(url, HttpMethod.POST, request, Void.class);
 			logger.logQueueService("Sending message: " + message);
 		} catch (Exception e) {
@@ -342,67 +900,66 @@ public class QueueService implements BiConsumer<Table, ResponseEntity<Object>> {
 	}
 
 	/**
-	 * Anfrage an einen im übergebenen Service definierten Server schicken, um einen neuen OAuth2 Token zu erhalten.
-	 * 
-	 * @param service,
-	 *            ein CASServices Objekt.
-	 * @return ein gültiges OAuth2Token Objekt, ansonsten wird eine IllegalArgumentException geworfen.
+	 * Schreibt den Status der Nachrichten eines Dienstes gesammelt in die Datenbank. Versandte Nachrichten werden gelöscht, bei allen anderen werden die
+	 * Versuche gespeichert (siehe {@link #saveAttempts(List)}).
+	 *
+	 * @param messagesToDelete
+	 *            Die KeyLongs der Nachrichten, die gelöscht werden.
+	 * @param messagesToUpdate
+	 *            Die Nachrichten, die aktualisiert werden.
 	 */
-	private OAuth2Token getOAuth2Token(CASServices service) {
+	private void saveLaneStatus(List<Integer> messagesToDelete, List<ServiceMessage> messagesToUpdate) {
 		try {
-			// Zuerst einen Aufruf an die TokenUrl/ an den Token Server machen, um sich einen Token zu holen.
-			String credentials = service.getClientId() + ":" + service.getClientSecret();
-			String encodedAuth = new String(Base64.encodeBase64(credentials.getBytes(StandardCharsets.UTF_8), false));
-			HttpHeaders headers = new HttpHeaders();
-			headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-			headers.add("Authorization", "Basic " + encodedAuth);
-			headers.add("Content-Type", "application/x-www-form-urlencoded");
-
-			MultiValueMap<String, String> map = new LinkedMultiValueMap<>();
-			map.add("grant_type", "password");
-			map.add("username", service.getUsername());
-			map.add("password", service.getPassword());
-			map.add("scope", "test");
-
-			HttpEntity<MultiValueMap<String, String>> tokenRequest = new HttpEntity<>(map, headers);
-			String accessTokenUrl = service.getTokenURL();
-
-			ResponseEntity<String> response = restTemplate.exchange(accessTokenUrl, HttpMethod.POST, tokenRequest, String.class);
-
-			// Access Token aus der JSON response lesen.
-			ObjectMapper mapper = new ObjectMapper();
-			JsonNode node = mapper.readTree(response.getBody());
-			String token = node.path("access_token").asText();
-
-			String expiryDate = response.getHeaders().getValuesAsList("Expires").get(1);
-
-			return new OAuth2Token(token, expiryDate);
+			if (!messagesToDelete.isEmpty()) {
+				serviceMessageRepo.deleteAllByIdInBatch(messagesToDelete);
+			}
+			if (!messagesToUpdate.isEmpty()) {
+				saveAttempts(messagesToUpdate);
+			}
 		} catch (Exception e) {
-			throw new IllegalArgumentException("QueueService was not able to read the access token from tokenurl " + service.getTokenURL());
+			logger.logError("Could not update messages with keys " + messagesToDelete + " and "
+					+ messagesToUpdate.stream().map(ServiceMessage::getKeyLong).toList() + ".", e);
+			throw new RuntimeException(e);
 		}
 	}
 
 	/**
-	 * Speichert den Status einer Nachricht als 'isSent' in der Datenbank. Erhöht gleichzeitig auch die NumberOfAttempts.
-	 * 
-	 * @param isSent
-	 *            True, falls die Nachricht erfolgreich versandt wurde. False, wenn nicht.
-	 * @param nextMessage
-	 *            Eine ServiceMessage.
+	 * Speichert Anzahl und nächsten Zeitpunkt der Versuche und gibt die Nachrichten dabei frei. Wie bei {@link #releaseClaim(List)} passiert das nur für
+	 * Nachrichten, die noch dieser Instanz zugeteilt sind. So überschreibt eine Instanz, deren Zuteilung abgelaufen ist, nicht die Zuteilung einer anderen.
+	 *
+	 * @param messages
+	 *            Die Nachrichten, deren Versuche gespeichert werden.
+	 * @return Die Anzahl der gespeicherten Nachrichten.
 	 */
-	private void safeAsSent(boolean isSent, ServiceMessage nextMessage) {
-		try {
-			if (isSent) {
-				serviceMessageRepo.delete(nextMessage);
-			} else {
-				nextMessage.setSent(isSent);
-				nextMessage.setNumberOfAttempts(nextMessage.getNumberOfAttempts() + 1);
-
-				serviceMessageRepo.saveAndFlush(nextMessage);
+	int saveAttempts(List<ServiceMessage> messages) {
+		final Connection connection = systemDatabase.getConnection();
+		try (PreparedStatement preparedStatement = connection.prepareStatement("update xtcasServiceMessage set NumberOfAttempts = ?, NextAttemptDate = ?, "
+				+ "ClaimedBy = null, ClaimedUntil = null where KeyLong = ? and ClaimedBy = ?")) {
+			for (ServiceMessage message : messages) {
+				preparedStatement.setInt(1, message.getNumberOfAttempts());
+				preparedStatement.setTimestamp(2, message.getNextAttemptDate() == null ? null : Timestamp.valueOf(message.getNextAttemptDate()));
+				preparedStatement.setInt(3, message.getKeyLong());
+				preparedStatement.setString(4, nodeId);
+				preparedStatement.addBatch();
+			}
+			int saved = 0;
+			for (int updated : preparedStatement.executeBatch()) {
+				saved += Math.max(updated, 0);
+			}
+			connection.commit();
+			if (saved < messages.size()) {
+				logger.logQueueService(nodeId + " lost its claim on " + (messages.size() - saved) + " messages. Their attempts were not saved.");
+			}
+			return saved;
+		} catch (SQLException e) {
+			try {
+				connection.rollback();
+			} catch (SQLException e1) {
+				logger.logError("Could not roll back message attempts.", e1);
 			}
-		} catch (Exception e) {
-			logger.logError("Could not update message with key " + nextMessage.getKeyLong() + ".", e);
 			throw new RuntimeException(e);
+		} finally {
+			systemDatabase.closeConnection(connection);
 		}
 	}
-}
\ No newline at end of file
+}
@@ -5,7 +5,10 @@ import static java.util.Arrays.asList;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -74,6 +77,27 @@ public class SecurityService {
 	 * @return Enthält alle Gruppen, die ein Recht auf das Privileg haben.
 	 **/
 	public List<Row> getPrivilegePermissions(String privilegeName) {
+		return getPrivilegePermissions(List.of(privilegeName)).get(privilegeName);
+	}
+
+	/**
+	 * Wie {@link #getPrivilegePermissions(String)}, nur für mehrere Privilegien auf einmal. Die Privilegien aller Namen werden mit einer einzigen Abfrage auf
+	 * die xvcasUserSecurity ermittelt.
+	 *
+	 * @param privilegeNames
+	 *            Die Privilegien, für die ein Recht eingefordert wird.
+	 * @return Enthält für jeden übergebenen Namen (case insensitive) die Gruppen, die ein Recht auf das Privileg haben. Hat keine Gruppe das Recht, ist die
+	 *         Liste leer.
+	 */
+	public Map<String, List<Row>> getPrivilegePermissions(Collection<String> privilegeNames) {
+		Map<String, List<Row>> permissions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (String privilegeName : privilegeNames) {
+			permissions.put(privilegeName, new ArrayList<>());
+		}
+		if (permissions.isEmpty()) {
+			return permissions;
+		}
+
 		loadAllPrivileges();
 		@SuppressWarnings("unchecked")
 		List<GrantedAuthority> allUserAuthorities = (List<GrantedAuthority>) SecurityContextHolder.getContext().getAuthentication().getAuthorities();
@@ -86,26 +110,44 @@ public class SecurityService {
 		columns.add(Column.AND_FIELD);
 		userPrivileges.setColumns(columns);
 
-		for (GrantedAuthority ga : allUserAuthorities) {
+		for (String privilegeName : permissions.keySet()) {
+			for (GrantedAuthority ga : allUserAuthorities) {
+
+				// Überprüfen, ob der SecurityToken an irgendeiner Position in der SecurityToken-Spalte auftaucht.
+				Row tableNameAndUserToken = new Row();
 
-			// Überprüfen, ob der SecurityToken an irgendeiner Position in der SecurityToken-Spalte auftaucht.
-			Row tableNameAndUserToken = new Row();
+				// Token ist in der Mitte des Strings.
+				tableNameAndUserToken.setValues(
+						asList(new Value(privilegeName, null), new Value("%#" + ga.getAuthority() + "#%", null), new Value("", null), new Value(false, null)));
+				// Token ist am Ende des Strings
+				tableNameAndUserToken.setValues(
+						asList(new Value(privilegeName, null), new Value("%#" + ga.getAuthority(), null), new Value("", null), new Value(false, null)));
+				userPrivileges.addRow(tableNameAndUserToken);
+			}
+		}
 
-			// Token ist in der Mitte des Strings.
-			tableNameAndUserToken.setValues(
-					asList(new Value(privilegeName, null), new Value("%#" + ga.getAuthority() + "#%", null), new Value("", null), new Value(false, null)));
-			// Token ist am Ende des Strings
-			tableNameAndUserToken
-					.setValues(asList(new Value(privilegeName, null), new Value("%#" + ga.getAuthority(), null), new Value("", null), new Value(false, null)));
-			userPrivileges.addRow(tableNameAndUserToken);
+		// Ohne Rollen gibt es auch keine Rechte, dann muss die Datenbank gar nicht erst gefragt werden.
+		if (userPrivileges.getRows().isEmpty()) {
+			return permissions;
 		}
 
 		// Hier bekommen wir Rows zurück, die in irgendeiner Weise unsere Tokens enthalten.
 		List<Row> queryResult = unsecurelyGetIndexView(userPrivileges).getRows();
 
 		// Hier filtern wir noch alle SecurityToken raus, die nicht unserem Benutzer gehören.
-		List<Row> returnRows = new ArrayList<>();
 		for (Row r : queryResult) {
+			// Bei nur einem Privileg gehören alle Zeilen dazu, ansonsten wird über den PrivilegeKeyText zugeordnet.
+			final List<Row> returnRows;
+			if (permissions.size() == 1) {
+				returnRows = permissions.values().iterator().next();
+			} else {
+				Value privilegeKeyText = r.getValues().get(0);
+				returnRows = privilegeKeyText == null || privilegeKeyText.getStringValue() == null ? null
+						: permissions.get(privilegeKeyText.getStringValue());
+			}
+			if (returnRows == null) {
+				continue;
+			}
 			List<String> resultAuthorities = Stream.of(r.getValues().get(1).getStringValue().split("#"))//
 					.map(String::new)//
 					.collect(Collectors.toList());
@@ -121,7 +163,7 @@ public class SecurityService {
 
 		}
 
-		return returnRows;
+		return permissions;
 	}
 
 	/**
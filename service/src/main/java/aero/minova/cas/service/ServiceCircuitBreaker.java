@@ -0,0 +1,116 @@
+package aero.minova.cas.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Merkt sich für einen Dienst, ob er erreichbar ist. Nach {@link #failureThreshold} aufeinanderfolgenden Fehlversuchen wird der Dienst für eine Wartezeit
+ * gesperrt (OPEN) und ihm werden keine Nachrichten mehr geschickt. Danach darf genau eine Nachricht als Probe verschickt werden (HALF_OPEN). Ist sie
+ * erfolgreich, wird der Dienst wieder normal beliefert (CLOSED). Schlägt sie fehl, wird der Dienst erneut gesperrt und die Wartezeit verdoppelt sich, bis sie
+ * {@link #maxCooldown} erreicht.
+ */
+class ServiceCircuitBreaker {
+
+	enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+
+	private final Duration cooldown;
+
+	private final Duration maxCooldown;
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	/**
+	 * Wie oft der Dienst seit dem letzten erfolgreichen Versand gesperrt wurde. Bestimmt die Länge der Wartezeit.
+	 */
+	private int openings;
+
+	private Instant openUntil;
+
+	/**
+	 * @param failureThreshold
+	 *            Anzahl der aufeinanderfolgenden Fehlversuche, nach denen der Dienst gesperrt wird.
+	 * @param cooldown
+	 *            Wartezeit nach der ersten Sperre.
+	 * @param maxCooldown
+	 *            Maximale Wartezeit.
+	 */
+	ServiceCircuitBreaker(int failureThreshold, Duration cooldown, Duration maxCooldown) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.cooldown = cooldown;
+		this.maxCooldown = maxCooldown;
+	}
+
+	/**
+	 * Prüft, ob dem Dienst eine Nachricht geschickt werden darf. Ist die Wartezeit einer Sperre abgelaufen, wird der Aufrufer zur Probe zugelassen.
+	 *
+	 * @param now
+	 *            Der aktuelle Zeitpunkt.
+	 * @return true, wenn die Nachricht verschickt werden darf.
+	 */
+	synchronized boolean tryAcquire(Instant now) {
+		switch (state) {
+		case CLOSED:
+			return true;
+		case OPEN:
+			if (now.isBefore(openUntil)) {
+				return false;
+			}
+			state = State.HALF_OPEN;
+			return true;
+		default:
+			// Es läuft bereits eine Probe.
+			return false;
+		}
+	}
+
+	/**
+	 * Die Nachricht wurde erfolgreich verschickt.
+	 */
+	synchronized void recordSuccess() {
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		openings = 0;
+		openUntil = null;
+	}
+
+	/**
+	 * Die Nachricht konnte nicht verschickt werden.
+	 *
+	 * @param now
+	 *            Der aktuelle Zeitpunkt.
+	 * @return true, wenn der Dienst dadurch gesperrt wurde.
+	 */
+	synchronized boolean recordFailure(Instant now) {
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+			openings++;
+			state = State.OPEN;
+			openUntil = now.plus(getCooldown(openings));
+			return true;
+		}
+		return false;
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+
+	synchronized Instant getOpenUntil() {
+		return openUntil;
+	}
+
+	private Duration getCooldown(int openings) {
+		long factor = 1L << Math.min(openings - 1, 30);
+		if (cooldown.getSeconds() > maxCooldown.getSeconds() / factor) {
+			return maxCooldown;
+		}
+		Duration delay = cooldown.multipliedBy(factor);
+		return delay.compareTo(maxCooldown) > 0 ? maxCooldown : delay;
+	}
+}
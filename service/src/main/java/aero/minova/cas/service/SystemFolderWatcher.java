@@ -0,0 +1,221 @@
+package aero.minova.cas.service;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import aero.minova.cas.CustomLogger;
+import aero.minova.cas.controller.FilesController;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Überwacht den System-Ordner mit einem {@link WatchService}. Ändern sich Dateien, werden nach einer Ruhezeit von {@link #debounce} Sekunden nur die
+ * betroffenen Dateien neu gehasht und die Zips der Ordner, in denen sie liegen, neu erstellt. So passen die ausgelieferten MD5-Werte und Zips nach einem
+ * Deployment wieder zum Dateisystem, ohne dass files/hashAll und files/zipAll aufgerufen oder das CAS neu gestartet werden muss.
+ * <p>
+ * Der Internal-Ordner wird nicht überwacht, da dort die MD5-Dateien und Zips geschrieben werden.
+ */
+@Service
+@ConditionalOnProperty(prefix = "files.watch", value = "enabled", havingValue = "true")
+public class SystemFolderWatcher {
+
+	@Autowired
+	FilesService fileService;
+
+	@Autowired
+	FilesController filesController;
+
+	@Autowired
+	CustomLogger customLogger;
+
+	@org.springframework.beans.factory.annotation.Value("${fat.jar.mode:false}")
+	boolean isFatJarMode;
+
+	// Hierbei handelt es sich um Sekunden
+	@org.springframework.beans.factory.annotation.Value("${files.watch.debounce:2}")
+	long debounce;
+
+	private final Map<WatchKey, Path> watchedFolders = new ConcurrentHashMap<>();
+
+	private WatchService watchService;
+
+	private Thread watchThread;
+
+	/**
+	 * Startet die Überwachung, nachdem hashAll und zipAll beim Start durchgelaufen sind.
+	 *
+	 * @throws IOException
+	 *             Falls der System-Ordner nicht überwacht werden kann.
+	 */
+	// je höher die Zahl bei @Order, desto später wird die Methode ausgeführt
+	@EventListener(ApplicationReadyEvent.class)
+	@Order(3)
+	public synchronized void start() throws IOException {
+		if (isFatJarMode || watchService != null) {
+			return;
+		}
+		watchService = fileService.getSystemFolder().getFileSystem().newWatchService();
+		register(fileService.getSystemFolder());
+		customLogger.logFiles("Watching " + watchedFolders.size() + " folders in " + fileService.getSystemFolder() + " for changes.");
+
+		watchThread = new CustomizableThreadFactory("cas-files-watch-").newThread(this::watch);
+		watchThread.setDaemon(true);
+		watchThread.start();
+	}
+
+	@PreDestroy
+	public synchronized void stop() throws IOException {
+		if (watchService != null) {
+			watchService.close();
+			watchThread.interrupt();
+		}
+	}
+
+	private void watch() {
+		try {
+			while (true) {
+				final Set<Path> changedPaths = new HashSet<>();
+				// Auf die erste Änderung warten und danach so lange sammeln, bis debounce Sekunden lang nichts mehr passiert ist.
+				boolean overflow = collect(watchService.take(), changedPaths);
+				WatchKey key;
+				while ((key = watchService.poll(debounce, TimeUnit.SECONDS)) != null) {
+					overflow |= collect(key, changedPaths);
+				}
+				process(changedPaths, overflow);
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// Das CAS wird heruntergefahren.
+		}
+	}
+
+	/**
+	 * Sammelt die geänderten Pfade eines WatchKeys. Neue Ordner werden ebenfalls überwacht und alle Dateien darin als geändert betrachtet, da sie vor der
+	 * Registrierung angelegt worden sein können.
+	 *
+	 * @return true, wenn Ereignisse verloren gegangen sind.
+	 */
+	private boolean collect(WatchKey key, Set<Path> changedPaths) {
+		boolean overflow = false;
+		final Path folder = watchedFolders.get(key);
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == OVERFLOW || folder == null) {
+				overflow = true;
+				continue;
+			}
+			final Path path = folder.resolve((Path) event.context());
+			if (isExcluded(path)) {
+				continue;
+			}
+			changedPaths.add(path);
+			if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+				try {
+					changedPaths.addAll(register(path));
+				} catch (IOException e) {
+					customLogger.logError("Could not watch folder " + path + ".", e);
+					overflow = true;
+				}
+			}
+		}
+		if (!key.reset()) {
+			// Der Ordner existiert nicht mehr.
+			watchedFolders.remove(key);
+		}
+		return overflow;
+	}
+
+	/**
+	 * Hasht die geänderten Dateien neu und zippt alle Ordner neu, in denen sie liegen. Sind Ereignisse verloren gegangen, werden hashAll und zipAll
+	 * aufgerufen, die nur veränderte Dateien und Ordner verarbeiten.
+	 */
+	private void process(Set<Path> changedPaths, boolean overflow) {
+		try {
+			if (overflow) {
+				customLogger.logFiles("Lost file system events, checking the whole system folder.");
+				filesController.zipAll();
+				filesController.hashAll();
+				return;
+			}
+
+			final Path systemFolder = fileService.getSystemFolder();
+			final List<Path> files = new ArrayList<>();
+			final Set<Path> folders = new HashSet<>();
+			for (Path path : changedPaths) {
+				if (Files.isDirectory(path)) {
+					folders.add(systemFolder.relativize(path));
+				} else {
+					files.add(systemFolder.relativize(path));
+					if (!Files.exists(path)) {
+						// Es kann sich um einen gelöschten Ordner handeln.
+						folders.add(systemFolder.relativize(path));
+					}
+				}
+				for (Path folder = path.getParent(); folder != null && !folder.equals(systemFolder); folder = folder.getParent()) {
+					folders.add(systemFolder.relativize(folder));
+				}
+			}
+			customLogger.logFiles("Updating " + files.size() + " changed files and " + folders.size() + " folders.");
+
+			files.addAll(filesController.zipFolders(folders));
+			filesController.hashFiles(files);
+		} catch (Exception e) {
+			customLogger.logError("Could not update hashes and zips of changed files.", e);
+		}
+	}
+
+	/**
+	 * Überwacht einen Ordner samt Unterordnern.
+	 *
+	 * @return Alle Dateien in den Ordnern.
+	 */
+	private List<Path> register(Path folder) throws IOException {
+		final List<Path> files = new ArrayList<>();
+		Files.walkFileTree(folder, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (isExcluded(dir)) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				watchedFolders.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				files.add(file);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return files;
+	}
+
+	private boolean isExcluded(Path path) {
+		return path.startsWith(fileService.getZipsFolder().getParent());
+	}
+}
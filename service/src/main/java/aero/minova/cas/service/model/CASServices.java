@@ -50,4 +50,11 @@ public class CASServices extends DataEntity {
 	@Size(max = 50)
 	@Column(name = "TokenURL", length = 50)
 	private String tokenURL;
+
+	/**
+	 * Maximale Anzahl der Nachrichten, die dem Dienst gemeinsam als JSON-Array geschickt werden. Ist null oder kleiner als 2, wird jede Nachricht einzeln
+	 * verschickt.
+	 */
+	@Column(name = "MaxBatchSize")
+	private Integer maxBatchSize;
 }
\ No newline at end of file
@@ -30,6 +30,12 @@ public class ServiceMessage extends DataEntity {
 	@Column(name = "Message")
 	private String message;
 
+	/**
+	 * Das Topic, wegen dem die Nachricht erstellt wurde. Nur Nachrichten mit demselben Topic werden gemeinsam verschickt.
+	 */
+	@Column(name = "Topic")
+	private String topic;
+
 	@NotNull
 	@Column(name = "IsSent")
 	private boolean isSent = false;
@@ -45,4 +51,22 @@ public class ServiceMessage extends DataEntity {
 	@NotNull
 	@Column(name = "Failed")
 	private boolean failed = false;
+
+	/**
+	 * Frühester Zeitpunkt für den nächsten Versuch, die Nachricht zu verschicken. Ist null, wenn die Nachricht noch nicht fehlgeschlagen ist.
+	 */
+	@Column(name = "NextAttemptDate")
+	private LocalDateTime nextAttemptDate;
+
+	/**
+	 * Die CAS-Instanz, welche die Nachricht gerade verschickt. Ist null, wenn die Nachricht keiner Instanz zugeteilt ist.
+	 */
+	@Column(name = "ClaimedBy")
+	private String claimedBy;
+
+	/**
+	 * Bis zu diesem Zeitpunkt ist die Nachricht der Instanz in {@link #claimedBy} zugeteilt. Danach darf eine andere Instanz sie übernehmen.
+	 */
+	@Column(name = "ClaimedUntil")
+	private LocalDateTime claimedUntil;
 }
\ No newline at end of file
@@ -10,4 +10,6 @@ import aero.minova.cas.service.model.ServiceMessage;
 public interface ServiceMessageRepository extends DataEntityRepository<ServiceMessage> {
 
 	public List<ServiceMessage> findAllByIsSentFalseAndFailedFalseAndLastActionGreaterThan(int lastAction);
+
+	public List<ServiceMessage> findAllByClaimedByAndIsSentFalseAndFailedFalseOrderByKeyLongAsc(String claimedBy);
 }
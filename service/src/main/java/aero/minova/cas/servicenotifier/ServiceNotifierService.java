@@ -1,5 +1,6 @@
 package aero.minova.cas.servicenotifier;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -16,7 +17,9 @@ import aero.minova.cas.api.domain.DataType;
 import aero.minova.cas.api.domain.Row;
 import aero.minova.cas.api.domain.Table;
 import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.controller.ExtensionConcurrency;
 import aero.minova.cas.controller.SqlProcedureController;
+import aero.minova.cas.service.OAuth2TokenCache;
 import aero.minova.cas.service.SecurityService;
 import aero.minova.cas.service.model.CASServices;
 import aero.minova.cas.service.model.NewsfeedListener;
@@ -52,6 +55,9 @@ public class ServiceNotifierService {
 	@Autowired
 	ProcedureNewsfeedRepository procedureNewsfeedRepo;
 
+	@Autowired
+	OAuth2TokenCache oauth2TokenCache;
+
 	/**
 	 * Enthält Tupel aus Prozedurenamen und Tabellennamen. Wird eine der enthaltenen Prozeduren ausgeführt, muss der dazugehörige Dienst angetriggert werden.
 	 */
@@ -62,9 +68,20 @@ public class ServiceNotifierService {
 	 */
 	protected Map<String, List<String>> newsfeeds = new HashMap<>();
 
+	// Hierbei handelt es sich um Sekunden
+	@org.springframework.beans.factory.annotation.Value("${aero.minova.queue.routing.cache.ttl:60}")
+	long routingCacheTtl;
+
+	/**
+	 * Welche Dienste auf welches Topic horchen. Wird vom QueueService bei jeder Prozedur abgefragt und deshalb im Speicher gehalten.
+	 */
+	private ServiceSubscriptionIndex subscriptionIndex;
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@PostConstruct
 	private void setup() {
+		subscriptionIndex = new ServiceSubscriptionIndex(() -> newsfeedListenerRepo.findAllByLastActionGreaterThan(0), Duration.ofSeconds(routingCacheTtl));
+
 
 		try {
 			findOrCreateServiceMessageReceiverLoginType("None");
@@ -81,7 +98,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, ExtensionConcurrency.SERIALIZED);
 		spc.registerExtension("xpcasUnregisterService", inputTable -> {
 			try {
 				unregisterService(inputTable);
@@ -89,7 +106,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, ExtensionConcurrency.SERIALIZED);
 		spc.registerExtension("xpcasRegisterProcedureNewsfeed", inputTable -> {
 			try {
 				registerProcedureNewsfeed(inputTable);
@@ -97,7 +114,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, ExtensionConcurrency.SERIALIZED);
 		spc.registerExtension("xpcasUnregisterProcedureNewsfeed", inputTable -> {
 			try {
 				unregisterProcedureNewsfeed(inputTable);
@@ -105,7 +122,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, ExtensionConcurrency.SERIALIZED);
 		spc.registerExtension("xpcasUnregisterProcedureNewsfeedCompletely", inputTable -> {
 			try {
 				unregisterProcedureNewsfeedCompletely(inputTable);
@@ -113,7 +130,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, ExtensionConcurrency.SERIALIZED);
 		spc.registerExtension("xpcasRegisterNewsfeedListener", inputTable -> {
 			try {
 				registerNewsfeedListener(inputTable);
@@ -121,7 +138,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, ExtensionConcurrency.SERIALIZED);
 		spc.registerExtension("xpcasUnregisterNewsfeedListener", inputTable -> {
 			try {
 				unregisterNewsfeedListener(inputTable);
@@ -129,7 +146,7 @@ public class ServiceNotifierService {
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-		});
+		}, ExtensionConcurrency.SERIALIZED);
 	}
 
 	/**
@@ -179,7 +196,14 @@ public class ServiceNotifierService {
 			newService.setClientSecret(inputTable.getRows().get(0).getValues().get(inputTable.findColumnPosition("ClientSecret")).getStringValue());
 			newService.setTokenURL(inputTable.getRows().get(0).getValues().get(inputTable.findColumnPosition("TokenURL")).getStringValue());
 
+			// Die Spalte ist optional, da ältere Dienste sie nicht mitschicken.
+			int maxBatchSizePosition = inputTable.findColumnPosition("MaxBatchSize");
+			if (maxBatchSizePosition >= 0 && inputTable.getRows().get(0).getValues().get(maxBatchSizePosition) != null) {
+				newService.setMaxBatchSize(inputTable.getRows().get(0).getValues().get(maxBatchSizePosition).getIntegerValue());
+			}
+
 			casServiceRepo.saveAndFlush(newService);
+			subscriptionIndex.invalidate();
 
 			return newService.getKeyLong();
 
@@ -205,6 +229,8 @@ public class ServiceNotifierService {
 
 			toDelete.setLastAction(-1);
 			casServiceRepo.saveAndFlush(toDelete);
+			subscriptionIndex.invalidate();
+			oauth2TokenCache.evict(toDelete.getKeyLong());
 
 			// Hier wird der Eintrag aus der Datenbank-Tabelle gelöscht.
 		} catch (Exception e) {
@@ -354,6 +380,7 @@ public class ServiceNotifierService {
 				newListener.setTopic(topic);
 
 				newsfeedListenerRepo.saveAndFlush(newListener);
+				subscriptionIndex.invalidate();
 			}
 		} catch (Exception e) {
 			logger.logError("Error while trying to register a new newsfeed: ", e);
@@ -392,6 +419,7 @@ public class ServiceNotifierService {
 			throw new RuntimeException(e);
 		}
 		// Nach erfolgreichem Löschen der Einträge in der Datenbank werden diese auch in der Map gelöscht.
+		subscriptionIndex.invalidate();
 		for (Row row : inputTable.getRows()) {
 			unregisterNewsfeed(row.getValues().get(0).getStringValue(), row.getValues().get(1).getStringValue());
 		}
@@ -456,6 +484,23 @@ public class ServiceNotifierService {
 		}
 	}
 
+	/**
+	 * Findet die Dienste, die auf ein Topic horchen. Im Gegensatz zu {@link #findViewEntry(String, String)} wird dafür nicht die Datenbank abgefragt, sondern
+	 * ein Index im Speicher, der bei jeder Registrierung und Abmeldung neu aufgebaut wird.
+	 *
+	 * @param topic
+	 *            Das Topic, welches verändert wurde.
+	 * @return Die Dienste, die auf das Topic horchen. Die Liste darf nicht verändert werden.
+	 */
+	public List<CASServices> findSubscribedServices(String topic) {
+		try {
+			return subscriptionIndex.getServices(topic);
+		} catch (Exception e) {
+			logger.logError("Error while trying to access view xtcasNewsfeedListener!", e);
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Sucht in der xtcasProcedureNewsfeed die Einträge anhand der übergebenen Values heraus. Die Values müssen hierfür String-Values sein. Wichtig hierbei ist,
 	 * dass nicht jeder Value übergeben werden muss. Falls man die gesamte Tabelle haben möchte, kann man auch einfach 'null' in allen Übergabeparametern
@@ -0,0 +1,99 @@
+package aero.minova.cas.servicenotifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import aero.minova.cas.service.model.CASServices;
+import aero.minova.cas.service.model.NewsfeedListener;
+
+/**
+ * Hält im Speicher, welche Dienste auf welches Topic horchen. Greift die Idee des {@link ServiceNotifierCache} wieder auf, ohne dessen Probleme beim Starten:
+ * Der Index wird erst bei der ersten Anfrage aus der xtcasNewsfeedListener geladen.
+ * <p>
+ * Der Index wird nie verändert, sondern bei Bedarf komplett neu aufgebaut und ausgetauscht (copy-on-write). Lesende Zugriffe kommen daher ohne Sperre aus. Nach
+ * jeder Registrierung oder Abmeldung muss {@link #invalidate()} aufgerufen werden. Damit Änderungen anderer CAS-Instanzen ebenfalls ankommen, wird der Index
+ * außerdem nach einer festen Zeit neu geladen.
+ */
+class ServiceSubscriptionIndex {
+
+	private static final class Snapshot {
+		private final Map<String, List<CASServices>> servicesByTopic;
+		private final long loadedAt;
+
+		private Snapshot(Map<String, List<CASServices>> servicesByTopic, long loadedAt) {
+			this.servicesByTopic = servicesByTopic;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private final Supplier<List<NewsfeedListener>> loader;
+
+	private final long maxAgeNanos;
+
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Wird bei jedem {@link #invalidate()} erhöht. Ein Index, der während des Ladens ungültig wurde, wird nicht übernommen.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * @param loader
+	 *            Lädt alle gültigen NewsfeedListener.
+	 * @param maxAge
+	 *            Nach dieser Zeit wird der Index neu geladen.
+	 */
+	ServiceSubscriptionIndex(Supplier<List<NewsfeedListener>> loader, Duration maxAge) {
+		this.loader = loader;
+		this.maxAgeNanos = maxAge.toNanos();
+	}
+
+	/**
+	 * @param topic
+	 *            Das Topic, welches verändert wurde.
+	 * @return Die Dienste, die auf das Topic horchen. Die Liste darf nicht verändert werden.
+	 */
+	List<CASServices> getServices(String topic) {
+		Snapshot current = snapshot;
+		if (current == null || System.nanoTime() - current.loadedAt > maxAgeNanos) {
+			current = reload();
+		}
+		return current.servicesByTopic.getOrDefault(topic, Collections.emptyList());
+	}
+
+	/**
+	 * Verwirft den Index. Er wird bei der nächsten Anfrage neu geladen.
+	 */
+	void invalidate() {
+		generation.incrementAndGet();
+		snapshot = null;
+	}
+
+	private synchronized Snapshot reload() {
+		// Ein anderer Thread könnte den Index in der Zwischenzeit geladen haben.
+		Snapshot current = snapshot;
+		if (current != null && System.nanoTime() - current.loadedAt <= maxAgeNanos) {
+			return current;
+		}
+
+		long loadedGeneration = generation.get();
+		long loadedAt = System.nanoTime();
+		Map<String, List<CASServices>> servicesByTopic = new HashMap<>();
+		for (NewsfeedListener listener : loader.get()) {
+			servicesByTopic.computeIfAbsent(listener.getTopic(), topic -> new ArrayList<>()).add(listener.getCasService());
+		}
+		servicesByTopic.replaceAll((topic, services) -> Collections.unmodifiableList(services));
+
+		Snapshot loaded = new Snapshot(Collections.unmodifiableMap(servicesByTopic), loadedAt);
+		if (generation.get() == loadedGeneration) {
+			snapshot = loaded;
+		}
+		return loaded;
+	}
+}
@@ -21,6 +21,9 @@ public class SystemDatabase {
 	private final EntityManager entityManager;
 	private final CustomLogger customLogger;
 	private static final String MSSQLDIALECT = "SQLServer";
+	private static final String POSTGRESQLDIALECT = "PostgreSQLDialect";
+	private static final String MYSQLDIALECT = "MySQL";
+	private static final String MARIADBDIALECT = "MariaDB";
 
 	public Connection getConnection() {
 		try {
@@ -46,10 +49,21 @@ public class SystemDatabase {
 	}
 
 	public boolean isSQLDatabase() {
+		return getDialect().contains(MSSQLDIALECT);
+	}
+
+	public boolean isPostgreSQLDatabase() {
+		return getDialect().contains(POSTGRESQLDIALECT);
+	}
+
+	public boolean isMySQLDatabase() {
+		final String dialect = getDialect();
+		return dialect.contains(MYSQLDIALECT) || dialect.contains(MARIADBDIALECT);
+	}
+
+	private String getDialect() {
 		final Session session = (Session) entityManager.getDelegate();
 		final SessionFactoryImpl sessionFactory = (SessionFactoryImpl) session.getSessionFactory();
-		final String dialect = sessionFactory.getJdbcServices().getDialect().toString();
-
-		return dialect.contains(MSSQLDIALECT);
+		return sessionFactory.getJdbcServices().getDialect().toString();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,190 @@
+package aero.minova.cas.api.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+class TableJacksonTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TableJacksonTest.class);
+
+	private static final Gson GSON = new GsonBuilder() //
+			.registerTypeAdapter(Value.class, new ValueSerializer()) //
+			.registerTypeAdapter(Value.class, new ValueDeserializer()) //
+			.create();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	void testValuesAreWrittenLikeGson() throws Exception {
+		List<Value> values = List.of(new Value(42), //
+				new Value(3.5, ">"), //
+				new Value("Test%", "like"), //
+				new Value("Test", "not like"), //
+				new Value(Instant.parse("2024-01-01T12:00:00Z"), "<="), //
+				new Value(ZonedDateTime.parse("2024-01-01T12:00:00+01:00[Europe/Berlin]")), //
+				new Value(true), //
+				new Value(new BigDecimal("1.25")), //
+				new Value(7L), //
+				new Value("", "!null"));
+
+		for (Value value : values) {
+			String json = mapper.writeValueAsString(value);
+			assertEquals(GSON.toJson(value), json);
+			assertEquals(GSON.fromJson(json, Value.class).toString(), mapper.readValue(json, Value.class).toString());
+		}
+		assertEquals("\"f-~-s-Test%\"", mapper.writeValueAsString(new Value("Test%", "like")));
+		assertEquals("null", mapper.writeValueAsString(new Value((String) null)));
+	}
+
+	@Test
+	void testTableRoundTrip() throws Exception {
+		Table table = createTable(3);
+		table.setName("xpcasTest");
+		assertEquals(GSON.toJson(table), mapper.writeValueAsString(table));
+
+		TableMetaData metaData = new TableMetaData();
+		metaData.setTotalResults(3);
+		table.setMetaData(metaData);
+		String json = mapper.writeValueAsString(table);
+
+		Table read = mapper.readValue(json, Table.class);
+		assertEquals(table.toString(), read.toString());
+		assertEquals(3, read.getMetaData().getTotalResults());
+		assertEquals(DataType.INSTANT, read.getColumns().get(2).getType());
+		assertEquals(OutputType.OUTPUT, read.getColumns().get(1).getOutputType());
+		assertNull(read.getRows().get(0).getValues().get(3));
+		assertNull(read.getReturnErrorMessage());
+
+		// Von Gson geschriebene Tabellen können mit Jackson gelesen werden und umgekehrt.
+		assertEquals(table.toString(), mapper.readValue(GSON.toJson(table), Table.class).toString());
+		assertEquals(table.toString(), GSON.fromJson(json, Table.class).toString());
+	}
+
+	/**
+	 * Die Streaming-(De-)Serializer schreiben und lesen dasselbe wie der vorherige Weg über Gson. Dabei wurde jeder Value einzeln mit Gson geschrieben bzw.
+	 * aus einem Jackson-Baum über einen JSON-String mit Gson gelesen.
+	 */
+	@Test
+	void testStreamingMatchesGsonDelegation() throws Exception {
+		Table table = createTable(100);
+		ObjectMapper legacyMapper = createLegacyMapper();
+
+		String json = mapper.writeValueAsString(table);
+		assertEquals(table.toString(), mapper.readValue(json, Table.class).toString());
+		assertEquals(table.toString(), legacyMapper.readValue(json, Table.class).toString());
+	}
+
+	/**
+	 * Misst die Streaming-(De-)Serializer gegen den vorherigen Weg über Gson. Die Zeiten hängen von der Maschine ab. Deshalb läuft der Benchmark nicht mit
+	 * den Tests und prüft nichts, sondern loggt nur die Zeiten.
+	 */
+	@Test
+	@Disabled("Benchmark, wird nur bei Bedarf manuell gestartet")
+	void benchmarkStreamingAgainstGsonDelegation() throws Exception {
+		Table table = createTable(10_000);
+		ObjectMapper legacyMapper = createLegacyMapper();
+
+		// Aufwärmen, damit der JIT beide Wege kompiliert hat.
+		for (int i = 0; i < 20; i++) {
+			mapper.readValue(mapper.writeValueAsString(table), Table.class);
+			legacyMapper.readValue(legacyMapper.writeValueAsString(table), Table.class);
+		}
+
+		long streaming = Long.MAX_VALUE;
+		long legacy = Long.MAX_VALUE;
+		for (int i = 0; i < 20; i++) {
+			long start = System.nanoTime();
+			mapper.readValue(mapper.writeValueAsString(table), Table.class);
+			streaming = Math.min(streaming, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			legacyMapper.readValue(legacyMapper.writeValueAsString(table), Table.class);
+			legacy = Math.min(legacy, System.nanoTime() - start);
+		}
+		LOG.info("Streaming: {} ms, Gson: {} ms for {} values", streaming / 1_000_000, legacy / 1_000_000, table.getRows().size() * 10);
+	}
+
+	private ObjectMapper createLegacyMapper() {
+		return new ObjectMapper() //
+				.addMixIn(Value.class, LegacyValue.class) //
+				.addMixIn(Table.class, LegacyTable.class);
+	}
+
+	private Table createTable(int rowCount) {
+		Table table = new Table();
+		table.addColumn(new Column("KeyLong", DataType.INTEGER));
+		table.addColumn(new Column("Description", DataType.STRING, OutputType.OUTPUT));
+		table.addColumn(new Column("LastDate", DataType.INSTANT));
+		table.addColumn(new Column("Comment", DataType.STRING));
+		table.addColumn(new Column("Amount", DataType.DOUBLE));
+		table.addColumn(new Column("Price", DataType.BIGDECIMAL));
+		table.addColumn(new Column("Valid", DataType.BOOLEAN));
+		table.addColumn(new Column("Counter", DataType.LONG));
+		table.addColumn(new Column("Created", DataType.ZONED));
+		table.addColumn(new Column("Filter", DataType.STRING));
+		for (int i = 0; i < rowCount; i++) {
+			Row row = new Row();
+			row.addValue(new Value(i));
+			row.addValue(new Value("Description " + i));
+			row.addValue(new Value(Instant.parse("2024-01-01T12:00:00Z").plusSeconds(i)));
+			row.addValue(null);
+			row.addValue(new Value(i / 4.0));
+			row.addValue(new Value(BigDecimal.valueOf(i, 2)));
+			row.addValue(new Value(i % 2 == 0));
+			row.addValue(new Value((long) i * 1000));
+			row.addValue(new Value(ZonedDateTime.parse("2024-01-01T12:00:00+01:00[Europe/Berlin]")));
+			row.addValue(new Value("Desc%", "like"));
+			table.addRow(row);
+		}
+		return table;
+	}
+
+	@JsonSerialize(using = LegacyValueSerializer.class)
+	@JsonDeserialize(using = LegacyValueDeserializer.class)
+	abstract static class LegacyValue {
+	}
+
+	@JsonSerialize(using = JsonSerializer.None.class)
+	@JsonDeserialize(using = JsonDeserializer.None.class)
+	abstract static class LegacyTable {
+	}
+
+	static class LegacyValueSerializer extends JsonSerializer<Value> {
+		@Override
+		public void serialize(Value value, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
+			jsonGenerator.writeRawValue(GSON.toJson(value));
+		}
+	}
+
+	static class LegacyValueDeserializer extends JsonDeserializer<Value> {
+		private final ObjectMapper jacksonMapper = new ObjectMapper();
+
+		@Override
+		public Value deserialize(JsonParser jsonParser, DeserializationContext deserializationContext) throws IOException {
+			return GSON.fromJson(jacksonMapper.writeValueAsString(jsonParser.getCodec().readTree(jsonParser)), Value.class);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package aero.minova.cas.api.restapi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import aero.minova.cas.api.domain.Column;
+import aero.minova.cas.api.domain.DataType;
+import aero.minova.cas.api.domain.OutputType;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.TableMetaData;
+import aero.minova.cas.api.domain.Value;
+
+class ColumnarTableHttpMessageConverterTest {
+
+	private static final String[] PRICES = { "1.10", "1E+3", "0.000" };
+
+	private final ColumnarTableHttpMessageConverter converter = new ColumnarTableHttpMessageConverter();
+
+	private final Gson gson = new ClientRestAPIConfiguration().gson();
+
+	@Test
+	void testRoundTrip() throws Exception {
+		Table table = createTable(3);
+		table.setName("xvcasTest");
+		TableMetaData metaData = new TableMetaData();
+		metaData.setTotalResults(3);
+		table.setMetaData(metaData);
+
+		String json = write(table);
+		JsonObject columns = JsonParser.parseString(json).getAsJsonObject();
+		assertEquals(3, columns.get("rowCount").getAsInt());
+		assertEquals("{\"name\":\"KeyLong\",\"type\":\"INTEGER\",\"values\":[0,1,2]}", columns.getAsJsonArray("columns").get(0).toString());
+		assertEquals("[null,null,null]", columns.getAsJsonArray("columns").get(3).getAsJsonObject().get("values").toString());
+
+		JsonObject counter = columns.getAsJsonArray("columns").get(4).getAsJsonObject();
+		assertEquals("[9223372036854775807,9223372036854775806,9223372036854775805]", counter.get("values").toString());
+		JsonObject price = columns.getAsJsonArray("columns").get(5).getAsJsonObject();
+		assertEquals("[1.10,1E+3,0.000]", price.get("values").toString());
+		JsonObject mixed = columns.getAsJsonArray("columns").get(7).getAsJsonObject();
+		assertTrue(mixed.get("prefixed").getAsBoolean());
+
+		Table read = read(json);
+		assertEquals(table.toString(), read.toString());
+		assertEquals(Long.MAX_VALUE, read.getValue("Counter", 0).getLongValue());
+		assertEquals(new BigDecimal("1.10"), read.getValue("Price", 0).getBigDecimalValue());
+		assertEquals(new BigDecimal("1E+3"), read.getValue("Price", 1).getBigDecimalValue());
+		assertEquals(3, read.getValue("Price", 2).getBigDecimalValue().scale());
+		assertEquals(DataType.INTEGER, read.getValue("Mixed", 0).getType());
+		assertEquals(DataType.LONG, read.getValue("Mixed", 1).getType());
+		assertEquals(DataType.STRING, read.getValue("Mixed", 2).getType());
+		assertEquals(3, read.getMetaData().getTotalResults());
+		assertEquals(OutputType.OUTPUT, read.getColumns().get(1).getOutputType());
+		assertEquals(DataType.BIGDECIMAL, read.getValue("Price", 2).getType());
+		assertNull(read.getValue("Comment", 0));
+	}
+
+	@Test
+	void testValuesWithRulesOrOtherTypesArePrefixed() throws Exception {
+		Table table = new Table();
+		table.addColumn(new Column("Filter", DataType.STRING));
+		table.addColumn(new Column("Amount", DataType.DOUBLE));
+		table.addColumn(new Column("Untyped", null));
+		Row row = new Row();
+		row.addValue(new Value("A%", "like"));
+		row.addValue(new Value(Double.NaN));
+		row.addValue(new Value(42));
+		table.addRow(row);
+		row = new Row();
+		row.addValue(new Value("B"));
+		row.addValue(new Value(7L));
+		row.addValue(null);
+		table.addRow(row);
+
+		String json = write(table);
+		JsonObject filter = JsonParser.parseString(json).getAsJsonObject().getAsJsonArray("columns").get(0).getAsJsonObject();
+		assertTrue(filter.get("prefixed").getAsBoolean());
+		assertEquals("[\"f-~-s-A%\",\"s-B\"]", filter.get("values").toString());
+
+		assertEquals(table.toString(), read(json).toString());
+		assertEquals(DataType.LONG, read(json).getValue("Amount", 1).getType());
+	}
+
+	@Test
+	void testOnlyWrittenWhenRequested() {
+		assertTrue(converter.canWrite(Table.class, ColumnarTableHttpMessageConverter.MEDIA_TYPE));
+		assertFalse(converter.canWrite(Table.class, null));
+		assertFalse(converter.canWrite(Table.class, MediaType.ALL));
+		assertFalse(converter.canWrite(Table.class, MediaType.APPLICATION_JSON));
+		assertFalse(converter.canRead(Table.class, MediaType.APPLICATION_JSON));
+		assertFalse(converter.canWrite(String.class, ColumnarTableHttpMessageConverter.MEDIA_TYPE));
+	}
+
+	@Test
+	void testColumnarTableIsSmaller() throws Exception {
+		Table table = createTable(1_000);
+
+		String columnar = write(table);
+		String rows = gson.toJson(table);
+		assertTrue(columnar.length() * 10 < rows.length() * 8, "Columnar: " + columnar.length() + " characters, rows: " + rows.length() + " characters");
+		assertEquals(table.toString(), read(columnar).toString());
+	}
+
+	private String write(Table table) throws Exception {
+		MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+		converter.write(table, ColumnarTableHttpMessageConverter.MEDIA_TYPE, outputMessage);
+		assertEquals(ColumnarTableHttpMessageConverter.MEDIA_TYPE_VALUE, outputMessage.getHeaders().getContentType().getType() + "/"
+				+ outputMessage.getHeaders().getContentType().getSubtype());
+		return outputMessage.getBodyAsString(StandardCharsets.UTF_8);
+	}
+
+	private Table read(String json) throws Exception {
+		MockHttpInputMessage inputMessage = new MockHttpInputMessage(json.getBytes(StandardCharsets.UTF_8));
+		inputMessage.getHeaders().setContentType(ColumnarTableHttpMessageConverter.MEDIA_TYPE);
+		return converter.read(Table.class, inputMessage);
+	}
+
+	/**
+	 * Erstellt eine Tabelle mit den Fällen, die spaltenweise schiefgehen können: Longs, die nicht in ein Integer oder verlustfrei in ein Double passen,
+	 * BigDecimals, deren Scale erhalten bleiben muss, eine leere Spalte und eine Spalte mit Werten verschiedener Typen.
+	 */
+	private Table createTable(int rowCount) {
+		Table table = new Table();
+		table.addColumn(new Column("KeyLong", DataType.INTEGER));
+		table.addColumn(new Column("Description", DataType.STRING, OutputType.OUTPUT));
+		table.addColumn(new Column("LastDate", DataType.INSTANT));
+		table.addColumn(new Column("Comment", DataType.STRING));
+		table.addColumn(new Column("Counter", DataType.LONG));
+		table.addColumn(new Column("Price", DataType.BIGDECIMAL));
+		table.addColumn(new Column("Valid", DataType.BOOLEAN));
+		table.addColumn(new Column("Mixed", DataType.INTEGER));
+		for (int i = 0; i < rowCount; i++) {
+			Row row = new Row();
+			row.addValue(new Value(i));
+			row.addValue(new Value("Description " + i));
+			row.addValue(new Value(Instant.parse("2024-01-01T12:00:00Z").plusSeconds(i)));
+			row.addValue(null);
+			row.addValue(new Value(Long.MAX_VALUE - i));
+			row.addValue(new Value(new BigDecimal(PRICES[i % PRICES.length])));
+			row.addValue(new Value(i % 2 == 0));
+			row.addValue(i % 3 == 0 ? new Value(i) : i % 3 == 1 ? new Value((long) i) : new Value("Text " + i));
+			table.addRow(row);
+		}
+		return table;
+	}
+}
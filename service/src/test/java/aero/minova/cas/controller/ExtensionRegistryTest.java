@@ -0,0 +1,95 @@
+package aero.minova.cas.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import aero.minova.cas.api.domain.Table;
+
+class ExtensionRegistryTest {
+
+	@DisplayName("Namen sind case insensitive und können nur einmal registriert werden.")
+	@Test
+	void testRegisterCaseInsensitive() {
+		ExtensionRegistry<String> registry = new ExtensionRegistry<>("test");
+
+		assertTrue(registry.register("xpcasTest", t -> "a", ExtensionConcurrency.THREAD_SAFE));
+		assertFalse(registry.register("XPCASTEST", t -> "b", ExtensionConcurrency.SERIALIZED));
+
+		Table input = new Table();
+		input.setName("xpCasTest");
+		assertThat(registry.find(input.getName()).get().apply(input)).isEqualTo("a");
+		assertThat(registry.find("unknown")).isEmpty();
+		assertThat(registry.find(null)).isEmpty();
+	}
+
+	@DisplayName("Verschiedene Erweiterungen blockieren sich nicht gegenseitig.")
+	@Test
+	void testDifferentExtensionsRunInParallel() throws Exception {
+		ExtensionRegistry<String> registry = new ExtensionRegistry<>("test");
+		CountDownLatch bothStarted = new CountDownLatch(2);
+
+		registry.register("first", t -> await(bothStarted), ExtensionConcurrency.SERIALIZED);
+		registry.register("second", t -> await(bothStarted), ExtensionConcurrency.SERIALIZED);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<String> first = executor.submit(() -> registry.find("first").get().apply(new Table()));
+			Future<String> second = executor.submit(() -> registry.find("second").get().apply(new Table()));
+			assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+			assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@DisplayName("Eine serialisierte Erweiterung wird nie gleichzeitig ausgeführt.")
+	@Test
+	void testSerializedExtension() throws Exception {
+		ExtensionRegistry<Integer> registry = new ExtensionRegistry<>("test");
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+
+		registry.register("serialized", t -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return running.decrementAndGet();
+		}, ExtensionConcurrency.SERIALIZED);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int i = 0; i < 20; i++) {
+				executor.submit(() -> registry.find("serialized").get().apply(new Table()));
+			}
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(maxRunning.get()).isEqualTo(1);
+	}
+
+	private static String await(CountDownLatch latch) {
+		latch.countDown();
+		try {
+			return latch.await(5, TimeUnit.SECONDS) ? "ok" : "blocked";
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return "interrupted";
+		}
+	}
+}
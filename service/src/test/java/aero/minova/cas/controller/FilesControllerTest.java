@@ -2,16 +2,36 @@ package aero.minova.cas.controller;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -20,10 +40,22 @@ import org.junit.rules.TemporaryFolder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 import aero.minova.cas.BaseTest;
 import aero.minova.cas.CustomLogger;
+import aero.minova.cas.api.domain.Row;
 import aero.minova.cas.service.FilesService;
+import aero.minova.cas.service.SecurityService;
 import lombok.val;
 
 @Slf4j
@@ -68,10 +100,15 @@ class FilesControllerTest extends BaseTest {
 		filesController.fileService.setUp();
 	}
 
+	@AfterEach
+	void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
 	@Test
 	void testLegal() throws Exception {
 		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
-		assertThat(filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs")).isEqualTo(
+		assertThat(body(filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs"))).isEqualTo(
 				"<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
 	}
 
@@ -79,7 +116,7 @@ class FilesControllerTest extends BaseTest {
 	void testLegalHash() throws Exception {
 		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
 		filesController.hashFile(Paths.get("Shared Data/Program Files/AFIS/AFIS.xbs"));
-		assertThat(filesController.getHash("Shared Data/Program Files/AFIS/AFIS.xbs"))
+		assertThat(body(filesController.getHash("Shared Data/Program Files/AFIS/AFIS.xbs")))
 				.isEqualTo("093544245ba5b8739014ac4e5a273520".getBytes(StandardCharsets.UTF_8));
 	}
 
@@ -92,8 +129,12 @@ class FilesControllerTest extends BaseTest {
 				"<text>Oh nein!Ein Fehler in der Anwendung!</text>".getBytes(StandardCharsets.UTF_8));
 		filesController.createZip(Paths.get("Shared Data/Program Files/.metadata"));
 
+		filesController.maxLogEntrySize = 1;
+		filesController.maxLogSize = 1;
 		// dabei wird der Logs Ordner erzeugt
-		filesController.getLogs(Files.readAllBytes(zipsFolder.resolve("Shared Data").resolve("Program Files").toFile().listFiles()[0].toPath()));
+		try (InputStream in = Files.newInputStream(zipsFolder.resolve("Shared Data").resolve("Program Files").toFile().listFiles()[0].toPath())) {
+			filesController.getLogs(in);
+		}
 
 		File found = findFile("beispielLog.log", internalFolder.resolve("UserLogs").toFile());
 		assertThat(found).isNotNull();
@@ -101,6 +142,40 @@ class FilesControllerTest extends BaseTest {
 				.isEqualTo("<text>Oh nein!Ein Fehler in der Anwendung!</text>".getBytes(StandardCharsets.UTF_8));
 	}
 
+	@Test
+	void testLogUploadLimits() throws Exception {
+		filesController.maxLogEntrySize = 1;
+		filesController.maxLogSize = 2;
+
+		// Eine Datei über 1 MB wird abgelehnt und nichts bleibt liegen.
+		byte[] tooLarge = zip(Map.of("a.log", new byte[1024 * 1024 + 1]));
+		assertThrows(IllegalArgumentException.class, () -> filesController.getLogs(new ByteArrayInputStream(tooLarge)));
+		assertThat(logsFolder.toFile().list()).isEmpty();
+
+		// Ebenso, wenn alle Dateien zusammen größer als 2 MB sind.
+		byte[] tooLargeInTotal = zip(Map.of("a.log", new byte[1024 * 1024], "b.log", new byte[1024 * 1024], "c.log", new byte[1]));
+		assertThrows(IllegalArgumentException.class, () -> filesController.getLogs(new ByteArrayInputStream(tooLargeInTotal)));
+		assertThat(logsFolder.toFile().list()).isEmpty();
+
+		// Einträge außerhalb des Log-Ordners werden nicht geschrieben.
+		byte[] zipSlip = zip(Map.of("../../evil.log", new byte[1]));
+		assertThrows(IllegalArgumentException.class, () -> filesController.getLogs(new ByteArrayInputStream(zipSlip)));
+		assertThat(Files.exists(internalFolder.resolve("evil.log"))).isFalse();
+		assertThat(logsFolder.toFile().list()).isEmpty();
+	}
+
+	private byte[] zip(Map<String, byte[]> entries) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ZipOutputStream zos = new ZipOutputStream(out)) {
+			for (Map.Entry<String, byte[]> entry : new TreeMap<>(entries).entrySet()) {
+				zos.putNextEntry(new ZipEntry(entry.getKey()));
+				zos.write(entry.getValue());
+				zos.closeEntry();
+			}
+		}
+		return out.toByteArray();
+	}
+
 	@Test
 	void testIllegal() {
 		Assertions.assertThrows(IllegalAccessException.class, () -> filesController.getFile("../Shared Data/Program Files/AFIS/AFIS.xbs"));
@@ -121,7 +196,7 @@ class FilesControllerTest extends BaseTest {
 		assertThat(Files.exists(tempFolder.resolve("AFIS"))).isFalse();
 
 		File tempFile = tempFolder.resolve("tempZipFile.zip").toFile();
-		Files.write(tempFile.toPath(), filesController.getZip("Shared Data/Program Files/AFIS.zip"));
+		Files.write(tempFile.toPath(), body(filesController.getZip("Shared Data/Program Files/AFIS.zip")));
 		filesController.fileService.unzipFile(tempFile, tempFolder);
 
 		assertThat(Files.exists(tempFolder.resolve("Shared Data").resolve("Program Files").resolve("AFIS"))).isTrue();
@@ -141,7 +216,7 @@ class FilesControllerTest extends BaseTest {
 		Files.createDirectories(tempFolder);
 
 		File tempFile = tempFolder.resolve("tempZipFile.zip").toFile();
-		Files.write(tempFile.toPath(), filesController.getZip("Shared Data/Program Files/AFIS.zip"));
+		Files.write(tempFile.toPath(), body(filesController.getZip("Shared Data/Program Files/AFIS.zip")));
 		filesController.fileService.unzipFile(tempFile, tempFolder);
 
 		assertThat(tempFolder.resolve("Shared Data").resolve("Program Files").resolve("AFIS").toFile().exists()).isTrue();
@@ -153,6 +228,25 @@ class FilesControllerTest extends BaseTest {
 		assertThat(unzipped).isEqualTo("<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
 	}
 
+	@Test
+	void testFailedUnzipKeepsExistingFiles() throws Exception {
+		val tempFolder = programFilesFolder.resolve("temp");
+		Files.createDirectories(tempFolder.resolve("existing"));
+		Files.write(tempFolder.resolve("existing").resolve("old.txt"), "old".getBytes(StandardCharsets.UTF_8));
+
+		// Der zweite Eintrag liegt außerhalb des Ziel-Ordners, nachdem der erste schon entpackt wurde.
+		File tempFile = tempFolder.resolve("tempZipFile.zip").toFile();
+		Files.write(tempFile.toPath(), zip(Map.of("existing/new.txt", new byte[1], "new/new.txt", new byte[1], "x/../../evil.txt", new byte[1])));
+		assertThrows(RuntimeException.class, () -> filesController.fileService.unzipFile(tempFile, tempFolder));
+
+		// Nur was das Entpacken angelegt hat, wird wieder gelöscht.
+		assertThat(Files.exists(tempFile.toPath())).isTrue();
+		assertThat(Files.readString(tempFolder.resolve("existing").resolve("old.txt"))).isEqualTo("old");
+		assertThat(Files.exists(tempFolder.resolve("existing").resolve("new.txt"))).isFalse();
+		assertThat(Files.exists(tempFolder.resolve("new"))).isFalse();
+		assertThat(Files.exists(programFilesFolder.resolve("evil.txt"))).isFalse();
+	}
+
 	@Test
 	void testIllegalZip() {
 		assertThrows(java.io.FileNotFoundException.class, () -> filesController.createZip(serviceFolder.resolve("AFIS.xbs")));
@@ -189,7 +283,7 @@ class FilesControllerTest extends BaseTest {
 		assertThat(Files.readAllBytes(md5Folder.resolve("Internal").resolve("Zips").resolve("Shared Data").resolve("Program Files").resolve("AFIS.zip.md5")))
 				.isNotEmpty();
 		assertThat(Files.readAllBytes(md5Folder.resolve("Internal").resolve("Zips").resolve("Shared Data").resolve("Program Files").resolve("AFIS.zip.md5")))
-				.isEqualTo(filesController.getHash("Shared Data/Program Files/AFIS.zip"));
+				.isEqualTo(body(filesController.getHash("Shared Data/Program Files/AFIS.zip")));
 
 		// das zippen ist nicht deterministisch und würde auf github dazu führen, dass der Test abbricht, obwohl er local funktioniert
 		// assertThat(readAllBytes(programFilesFolder.resolve("AFIS.zip.md5"))).isEqualTo("51a1713197b136586344905c9847daff".getBytes(StandardCharsets.UTF_8));
@@ -199,15 +293,324 @@ class FilesControllerTest extends BaseTest {
 		filesController.hashAll();
 	}
 
+	@Test
+	void testIncrementalHashAll() throws Exception {
+		filesController.incrementalFiles = true;
+		Path file = programFilesFolder.resolve("AFIS").resolve("AFIS.xbs");
+		Path md5File = md5Folder.resolve("Shared Data").resolve("Program Files").resolve("AFIS").resolve("AFIS.xbs.md5");
+		Files.write(file, "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+
+		filesController.hashAll();
+		assertThat(Files.readAllLines(internalFolder.resolve("files.manifest"))).anyMatch(line -> line.startsWith("Shared Data/Program Files/AFIS/AFIS.xbs\t27\t")
+				&& line.endsWith("\t093544245ba5b8739014ac4e5a273520"));
+
+		// Unveränderte Dateien werden nicht erneut gehasht.
+		Files.write(md5File, "unverändert".getBytes(StandardCharsets.UTF_8));
+		filesController.hashAll();
+		assertThat(Files.readString(md5File)).isEqualTo("unverändert");
+
+		// Veränderte Dateien werden erneut gehasht.
+		Files.write(file, "<preferences/>".getBytes(StandardCharsets.UTF_8));
+		filesController.hashAll();
+		assertThat(Files.readString(md5File)).isNotEqualTo("unverändert").hasSize(32);
+
+		// Fehlt die MD5-Datei, wird die Datei ebenfalls erneut gehasht.
+		Files.delete(md5File);
+		filesController.hashAll();
+		assertThat(Files.exists(md5File)).isTrue();
+	}
+
+	@Test
+	void testIncrementalZipAll() throws Exception {
+		filesController.incrementalFiles = true;
+		Path zipFile = zipsFolder.resolve("Shared Data").resolve("Program Files").resolve("AFIS.zip");
+		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+
+		filesController.zipAll();
+		assertThat(Files.size(zipFile)).isPositive();
+
+		// Ordner ohne Änderungen werden nicht erneut gezippt.
+		Files.write(zipFile, new byte[0]);
+		filesController.zipAll();
+		assertThat(Files.size(zipFile)).isZero();
+
+		// Eine neue Datei im Ordner oder einem Unterordner führt zu einem neuen Zip.
+		Files.createDirectories(serviceFolder.resolve("i18n"));
+		Files.write(serviceFolder.resolve("i18n").resolve("messages.properties"), "a=b".getBytes(StandardCharsets.UTF_8));
+		filesController.zipAll();
+		assertThat(Files.size(zipFile)).isPositive();
+		assertThat(Files.exists(zipsFolder.resolve("Shared Data").resolve("Program Files").resolve("AFIS").resolve("i18n.zip"))).isTrue();
+	}
+
+	@Test
+	void testHashFilesAndZipFolders() throws Exception {
+		Path file = programFilesFolder.resolve("AFIS").resolve("AFIS.xbs");
+		Path md5File = md5Folder.resolve("Shared Data").resolve("Program Files").resolve("AFIS").resolve("AFIS.xbs.md5");
+		Path zipFile = zipsFolder.resolve("Shared Data").resolve("Program Files").resolve("AFIS.zip");
+		Files.write(file, "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		filesController.zipAll();
+		filesController.hashAll();
+		Path otherZip = zipsFolder.resolve("Shared Data").resolve("Program Files.zip");
+		Files.write(otherZip, new byte[0]);
+
+		// Nur die übergebenen Ordner werden neu gezippt.
+		Files.write(file, "<preferences/>".getBytes(StandardCharsets.UTF_8));
+		List<Path> zips = filesController.zipFolders(List.of(Paths.get("Shared Data/Program Files/AFIS")));
+		assertThat(zips).containsExactly(Paths.get("Internal/Zips/Shared Data/Program Files/AFIS.zip"));
+		assertThat(Files.size(zipFile)).isPositive();
+		assertThat(Files.size(otherZip)).isZero();
+
+		filesController.hashFiles(List.of(Paths.get("Shared Data/Program Files/AFIS/AFIS.xbs")));
+		assertThat(Files.readString(md5File)).isNotEqualTo("093544245ba5b8739014ac4e5a273520").hasSize(32);
+
+		// Gelöschte Dateien und Ordner werden aus MD5-Ordner, Zips und Manifest entfernt.
+		Files.delete(file);
+		Files.delete(serviceFolder);
+		zips = filesController.zipFolders(List.of(Paths.get("Shared Data/Program Files/AFIS")));
+		filesController.hashFiles(List.of(Paths.get("Shared Data/Program Files/AFIS/AFIS.xbs"), zips.get(0)));
+		assertThat(Files.exists(zipFile)).isFalse();
+		assertThat(Files.exists(md5File)).isFalse();
+		assertThat(Files.readString(internalFolder.resolve("files.manifest"))).doesNotContain("AFIS.xbs").doesNotContain("AFIS.zip");
+		assertThat(Files.readString(internalFolder.resolve("zips.manifest"))).doesNotContain("Shared Data/Program Files/AFIS\t");
+	}
+
+	@Test
+	void testManifest() throws Exception {
+		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		Files.write(logsFolder.resolve("client.log"), "log".getBytes(StandardCharsets.UTF_8));
+		assertThrows(NoSuchFileException.class, () -> filesController.getManifest(null));
+
+		filesController.zipAll();
+		filesController.hashAll();
+
+		val response = filesController.getManifest(null);
+		String manifest = new String(body(response), StandardCharsets.UTF_8);
+		assertThat(manifest).contains("Shared Data/Program Files/AFIS/AFIS.xbs\t27\t093544245ba5b8739014ac4e5a273520\n")
+				.contains("Internal/Zips/Shared Data/Program Files/AFIS.zip\t")
+				// Die hochgeladenen Logs gehören nicht ins Manifest.
+				.doesNotContain("client.log");
+		assertThat(response.getHeaders().getETag()).isNotNull();
+
+		val gzipResponse = filesController.getManifest("gzip, deflate");
+		assertThat(gzipResponse.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(gzipResponse.getHeaders().getETag()).isNotEqualTo(response.getHeaders().getETag());
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body(gzipResponse)))) {
+			assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(manifest);
+		}
+
+		// Abgelehntes gzip wird nicht geschickt.
+		assertThat(filesController.getManifest("gzip;q=0").getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+
+		MockHttpServletRequest request = setRequest();
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, response.getHeaders().getETag());
+		assertThat(filesController.getManifest(null).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+	}
+
+	@Test
+	void testAcceptsGzip() {
+		assertThat(FilesController.acceptsGzip(List.of("gzip, deflate"))).isTrue();
+		assertThat(FilesController.acceptsGzip(List.of("deflate", "x-gzip;q=0.5"))).isTrue();
+		assertThat(FilesController.acceptsGzip(List.of("br;q=1.0, *;q=0.1"))).isTrue();
+		assertThat(FilesController.acceptsGzip(List.of("gzip;q=0"))).isFalse();
+		assertThat(FilesController.acceptsGzip(List.of("identity, x-gzip;q=0"))).isFalse();
+		assertThat(FilesController.acceptsGzip(List.of("*, gzip;q=0.000"))).isFalse();
+		assertThat(FilesController.acceptsGzip(List.of("deflate, br"))).isFalse();
+		assertThat(FilesController.acceptsGzip(List.of())).isFalse();
+	}
+
+	@Test
+	void testBulkDownload() throws Exception {
+		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		Files.write(programFilesFolder.resolve("AFIS").resolve("plugin.jar"), "jar".getBytes(StandardCharsets.UTF_8));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		filesController.getFiles(List.of("Shared Data/Program Files/AFIS/AFIS.xbs", "Shared Data\\Program Files\\AFIS\\plugin.jar",
+				"Shared Data/Program Files/AFIS/AFIS.xbs"), response);
+
+		assertThat(response.getContentType()).isEqualTo("application/zip");
+		try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+			ZipEntry entry = in.getNextEntry();
+			assertThat(entry.getName()).isEqualTo("Shared Data/Program Files/AFIS/AFIS.xbs");
+			assertThat(entry.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+			assertThat(in.readAllBytes()).isEqualTo("<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+
+			// Bereits komprimierte Dateien werden nicht erneut komprimiert.
+			entry = in.getNextEntry();
+			assertThat(entry.getName()).isEqualTo("Shared Data/Program Files/AFIS/plugin.jar");
+			assertThat(entry.getMethod()).isEqualTo(ZipEntry.STORED);
+			assertThat(in.readAllBytes()).isEqualTo("jar".getBytes(StandardCharsets.UTF_8));
+
+			// Doppelte Pfade werden nur einmal eingefügt.
+			assertThat(in.getNextEntry()).isNull();
+		}
+	}
+
+	@Test
+	void testBulkDownloadChecksAllPathsFirst() throws Exception {
+		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		assertThrows(IllegalAccessException.class, () -> filesController
+				.getFiles(List.of("Shared Data/Program Files/AFIS/AFIS.xbs", "../Shared Data/Program Files/AFIS/AFIS.xbs"), response));
+		assertThrows(IllegalArgumentException.class, () -> filesController.getFiles(List.of("Shared Data/Program Files/AFIS"), response));
+		assertThat(response.getContentAsByteArray()).isEmpty();
+	}
+
+	@Test
+	void testBulkDownloadChecksPrivilegesTogether() throws Exception {
+		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		Files.write(programFilesFolder.resolve("AFIS").resolve("plugin.jar"), "jar".getBytes(StandardCharsets.UTF_8));
+		SecurityService securityMock = mock(SecurityService.class);
+		filesController.fileService.setSecurityUtils(securityMock);
+		filesController.fileService.setPermissionCheck(true);
+		Row privilege = new Row();
+		when(securityMock.getPrivilegePermissions(anyCollection())).thenAnswer(invocation -> {
+			Map<String, List<Row>> privileges = new TreeMap<>();
+			for (Object privilegeName : invocation.getArgument(0, Collection.class)) {
+				privileges.put((String) privilegeName, privilegeName.toString().endsWith(".jar") ? List.of() : List.of(privilege));
+			}
+			return privileges;
+		});
+
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filesController.getFiles(List.of("Shared Data/Program Files/AFIS/AFIS.xbs"), response);
+		assertThat(response.getContentAsByteArray()).isNotEmpty();
+
+		// Ohne Privileg für eine der Dateien wird nichts geschickt.
+		MockHttpServletResponse deniedResponse = new MockHttpServletResponse();
+		assertThrows(RuntimeException.class, () -> filesController
+				.getFiles(List.of("Shared Data/Program Files/AFIS/AFIS.xbs", "Shared Data/Program Files/AFIS/plugin.jar"), deniedResponse));
+		assertThat(deniedResponse.getContentAsByteArray()).isEmpty();
+
+		// Pro Anfrage wird nur eine Abfrage gestellt und nicht eine pro Datei.
+		verify(securityMock, times(2)).getPrivilegePermissions(anyCollection());
+		verify(securityMock, never()).getPrivilegePermissions(anyString());
+	}
+
 	@Test
 	void getZipBackCompatability() throws Exception {
 		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
 		filesController.createZip(Paths.get("Shared Data/Program Files/AFIS"));
 
-		assertThat(filesController.getFile("Shared Data/Program Files/AFIS.zip")).isEqualTo(filesController.getZip("Shared Data/Program Files/AFIS"));
+		assertThat(body(filesController.getFile("Shared Data/Program Files/AFIS.zip"))).isEqualTo(body(filesController.getZip("Shared Data/Program Files/AFIS")));
+	}
+
+	@Test
+	void testReadStreamsFile() throws Exception {
+		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		val response = filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs");
+
+		// Content-Length wird von Spring aus der Resource gesetzt.
+		assertThat(response.getBody()).isInstanceOf(FileSystemResource.class);
+		assertThat(response.getBody().contentLength()).isEqualTo("<preferences></preferences>".length());
+	}
+
+	@Test
+	void testReadSetsETagAndLastModified() throws Exception {
+		Path file = programFilesFolder.resolve("AFIS").resolve("AFIS.xbs");
+		Files.write(file, "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		// Ohne MD5-Datei gibt es keinen ETag.
+		assertThat(filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs").getHeaders().getETag()).isNull();
+
+		filesController.hashFile(Paths.get("Shared Data/Program Files/AFIS/AFIS.xbs"));
+		val response = filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs");
+
+		assertThat(response.getHeaders().getETag()).isEqualTo("\"093544245ba5b8739014ac4e5a273520\"");
+		assertThat(response.getHeaders().getLastModified() / 1000).isEqualTo(Files.getLastModifiedTime(file).toMillis() / 1000);
+	}
+
+	@Test
+	void testReadNotModified() throws Exception {
+		Path file = programFilesFolder.resolve("AFIS").resolve("AFIS.xbs");
+		Files.write(file, "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		filesController.hashFile(Paths.get("Shared Data/Program Files/AFIS/AFIS.xbs"));
+
+		MockHttpServletRequest request = setRequest();
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"093544245ba5b8739014ac4e5a273520\"");
+		val response = filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs");
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(response.getBody()).isNull();
+
+		request = setRequest();
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"anders\"");
+		assertThat(filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs").getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		HttpHeaders ifModifiedSince = new HttpHeaders();
+		ifModifiedSince.setIfModifiedSince(Files.getLastModifiedTime(md5Folder.resolve("Shared Data/Program Files/AFIS/AFIS.xbs.md5")).toMillis());
+		request = setRequest();
+		request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince.getFirst(HttpHeaders.IF_MODIFIED_SINCE));
+		assertThat(filesController.getHash("Shared Data/Program Files/AFIS/AFIS.xbs").getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+	}
+
+	@Test
+	void testReadPrecompressedFile() throws Exception {
+		filesController.precompressFiles = true;
+		byte[] content = "<preferences></preferences>\n".repeat(100).getBytes(StandardCharsets.UTF_8);
+		Files.write(serviceFolder.resolve("AFIS.xbs"), content);
+		Files.write(serviceFolder.resolve("small.xbs"), "<preferences/>".getBytes(StandardCharsets.UTF_8));
+		filesController.hashAll();
+
+		Path gzipFile = internalFolder.resolve("Gzip").resolve("Shared Data").resolve("Program Files").resolve("AFIS").resolve("AFIS.xbs.gz");
+		assertThat(Files.size(gzipFile)).isLessThan(content.length);
+		// Kleine Dateien werden nicht komprimiert.
+		assertThat(Files.exists(gzipFile.resolveSibling("small.xbs.gz"))).isFalse();
+
+		// Ohne Accept-Encoding wird die Datei unkomprimiert geschickt.
+		val response = filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs");
+		assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+		assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+		assertThat(body(response)).isEqualTo(content);
+
+		setRequest().addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+		val gzipResponse = filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs");
+		assertThat(gzipResponse.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+		assertThat(gzipResponse.getHeaders().getETag()).isEqualTo("\"" + Files.readString(md5Folder.resolve("Shared Data/Program Files/AFIS/AFIS.xbs.md5")) + "-gzip\"");
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body(gzipResponse)))) {
+			assertThat(in.readAllBytes()).isEqualTo(content);
+		}
+
+		// Eine veraltete gzip-Variante wird nicht verwendet.
+		Files.write(serviceFolder.resolve("AFIS.xbs"), "<preferences/>".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(gzipFile, FileTime.fromMillis(Files.getLastModifiedTime(serviceFolder.resolve("AFIS.xbs")).toMillis() - 10000));
+		assertThat(body(filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs"))).isEqualTo("<preferences/>".getBytes(StandardCharsets.UTF_8));
+
+		// Mit der geänderten Datei wird auch die gzip-Variante entfernt.
+		filesController.hashFiles(List.of(Paths.get("Shared Data/Program Files/AFIS/AFIS.xbs")));
+		assertThat(Files.exists(gzipFile)).isFalse();
+	}
+
+	@Test
+	void testRangeOfChangedFile() throws Exception {
+		Files.write(programFilesFolder.resolve("AFIS").resolve("AFIS.xbs"), "<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+		filesController.hashFile(Paths.get("Shared Data/Program Files/AFIS/AFIS.xbs"));
+
+		MockHttpServletRequest request = setRequest();
+		request.addHeader(HttpHeaders.RANGE, "bytes=5-");
+		request.addHeader(HttpHeaders.IF_RANGE, "\"093544245ba5b8739014ac4e5a273520\"");
+		assertThat(filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs").getBody()).isInstanceOf(FileSystemResource.class);
+
+		// Hat sich die Datei verändert, wird die komplette Datei geschickt.
+		request = setRequest();
+		request.addHeader(HttpHeaders.RANGE, "bytes=5-");
+		request.addHeader(HttpHeaders.IF_RANGE, "\"veraltet\"");
+		val response = filesController.getFile("Shared Data/Program Files/AFIS/AFIS.xbs");
+		assertThat(response.getBody()).isInstanceOf(InputStreamResource.class);
+		assertThat(response.getHeaders().getContentLength()).isEqualTo("<preferences></preferences>".length());
+		assertThat(body(response)).isEqualTo("<preferences></preferences>".getBytes(StandardCharsets.UTF_8));
+	}
+
+	// Hilfsmethoden
+	private MockHttpServletRequest setRequest() {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/files/read");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+		return request;
+	}
+
+	private byte[] body(ResponseEntity<Resource> response) throws IOException {
+		try (InputStream in = response.getBody().getInputStream()) {
+			return in.readAllBytes();
+		}
 	}
 
-	// Hilfsmethode
 	private File findFile(String file, File directory) {
 		File[] list = directory.listFiles();
 		File found = null;
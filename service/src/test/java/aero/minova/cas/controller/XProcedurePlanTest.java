@@ -0,0 +1,98 @@
+package aero.minova.cas.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import aero.minova.cas.api.domain.Column;
+import aero.minova.cas.api.domain.DataType;
+import aero.minova.cas.api.domain.Row;
+import aero.minova.cas.api.domain.SqlProcedureResult;
+import aero.minova.cas.api.domain.Table;
+import aero.minova.cas.api.domain.Value;
+import aero.minova.cas.api.domain.XSqlProcedureResult;
+import aero.minova.cas.api.domain.XTable;
+
+class XProcedurePlanTest {
+
+	@Test
+	void testMissingReferenceFailsOnCompile() {
+		XTable first = createXTable("first", new Value(1, null));
+		XTable second = createXTable("second", new Value("KeyLong", "unknown"));
+
+		Throwable exception = catchThrowable(() -> XProcedurePlan.compile(List.of(first, second), List.of()));
+		assertThat(exception).isInstanceOf(RuntimeException.class).hasMessage("Cannot find SqlProcedureResult with Id unknown");
+	}
+
+	@Test
+	void testForwardReferenceFailsOnCompile() {
+		XTable first = createXTable("first", new Value("KeyLong", "second"));
+		XTable second = createXTable("second", new Value(1, null));
+
+		Throwable exception = catchThrowable(() -> XProcedurePlan.compile(List.of(first, second), List.of()));
+		assertThat(exception).isInstanceOf(RuntimeException.class).hasMessage("Cannot find SqlProcedureResult with Id second");
+	}
+
+	@Test
+	void testFillInDependenciesWithPosition() {
+		XTable first = createXTable("first", new Value(1, null));
+		XTable second = createXTable("second", new Value("1-KeyLong", "first"));
+
+		XProcedurePlan plan = XProcedurePlan.compile(List.of(first, second), List.of());
+		assertThat(plan.getSteps()).hasSize(2);
+		assertThat(plan.getSteps().get(0).getReferences()).isEmpty();
+		assertThat(plan.getSteps().get(1).getReferences()).hasSize(1);
+
+		Table outputParameters = new Table();
+		outputParameters.setName("first");
+		outputParameters.addColumn(new Column("KeyText", DataType.STRING));
+		outputParameters.addColumn(new Column("KeyLong", DataType.INTEGER));
+		for (int i = 0; i < 2; i++) {
+			Row row = new Row();
+			row.addValue(new Value("Text" + i, null));
+			row.addValue(new Value(10 + i, null));
+			outputParameters.addRow(row);
+		}
+		SqlProcedureResult result = new SqlProcedureResult();
+		result.setOutputParameters(outputParameters);
+		plan.addResult(new XSqlProcedureResult("first", result));
+
+		Table filled = plan.fillInDependencies(plan.getSteps().get(1));
+		assertThat(filled.getRows().get(0).getValues().get(0).getIntegerValue()).isEqualTo(11);
+	}
+
+	@Test
+	void testMissingColumn() {
+		XTable first = createXTable("first", new Value(1, null));
+		XTable second = createXTable("second", new Value("Unknown", "first"));
+		XProcedurePlan plan = XProcedurePlan.compile(List.of(first, second), List.of());
+
+		Table outputParameters = new Table();
+		outputParameters.addColumn(new Column("KeyLong", DataType.INTEGER));
+		Row row = new Row();
+		row.addValue(new Value(1, null));
+		outputParameters.addRow(row);
+		SqlProcedureResult result = new SqlProcedureResult();
+		result.setOutputParameters(outputParameters);
+		plan.addResult(new XSqlProcedureResult("first", result));
+
+		Throwable exception = catchThrowable(() -> plan.fillInDependencies(plan.getSteps().get(1)));
+		assertThat(exception).isInstanceOf(RuntimeException.class).hasMessage("No reference value found for column Unknown in row 0 !");
+	}
+
+	private XTable createXTable(String id, Value value) {
+		Table table = new Table();
+		table.setName("xpTest");
+		table.addColumn(new Column("KeyLong", DataType.INTEGER));
+		Row row = new Row();
+		row.addValue(value);
+		table.addRow(row);
+		XTable xtable = new XTable();
+		xtable.setId(id);
+		xtable.setTable(table);
+		return xtable;
+	}
+}
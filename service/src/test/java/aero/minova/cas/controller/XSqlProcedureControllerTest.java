@@ -8,7 +8,9 @@ import java.lang.reflect.Type;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.TreeMap;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +23,7 @@ import aero.minova.cas.BaseTest;
 import aero.minova.cas.CoreApplicationSystemApplication;
 import aero.minova.cas.api.domain.Column;
 import aero.minova.cas.api.domain.DataType;
+import aero.minova.cas.api.domain.ProcedureException;
 import aero.minova.cas.api.domain.Row;
 import aero.minova.cas.api.domain.SqlProcedureResult;
 import aero.minova.cas.api.domain.Table;
@@ -178,4 +181,33 @@ class XSqlProcedureControllerTest extends BaseTest {
 		Value resval = testSubject.findValueInColumn(sqlRes, "TestText", 0).orElse(null);
 		assertThat(resval.getStringValue()).isEqualTo("Test");
 	}
+
+	@Test
+	void testResolvePrivilegesFromCache() {
+		Row privilegeRow = new Row();
+		privilegeRow.addValue(new Value("xpTest", null));
+		privilegeRow.addValue(new Value("admin", null));
+		privilegeRow.addValue(new Value(false, null));
+
+		Map<String, List<Row>> privileges = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		privileges.put("xpTest", List.of(privilegeRow));
+		privileges.put("xpOther", List.of());
+
+		// Bereits ermittelte Rechte werden für alle Aufrufe derselben Prozedur wiederverwendet, unabhängig von der Schreibweise.
+		Throwable noError = catchThrowable(() -> testSubject.resolvePrivileges(List.of(createXTable("a", "xpTest"), createXTable("b", "XPTEST")), privileges));
+		assertThat(noError).isNull();
+
+		Throwable missingPrivilege = catchThrowable(
+				() -> testSubject.resolvePrivileges(List.of(createXTable("a", "xpTest"), createXTable("b", "xpOther")), privileges));
+		assertThat(missingPrivilege).isInstanceOf(ProcedureException.class).hasMessage("msg.PrivilegeError %xpOther");
+	}
+
+	private XTable createXTable(String id, String procedureName) {
+		Table table = new Table();
+		table.setName(procedureName);
+		XTable xtable = new XTable();
+		xtable.setId(id);
+		xtable.setTable(table);
+		return xtable;
+	}
 }
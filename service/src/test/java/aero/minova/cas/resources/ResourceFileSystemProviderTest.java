@@ -0,0 +1,127 @@
+package aero.minova.cas.resources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ResourceFileSystemProviderTest {
+
+    private final ResourceFileSystemProvider provider = new ResourceFileSystemProvider(getClass().getClassLoader(), List.of(//
+            "/tables/", //
+            "/tables/b.table.xml", //
+            "/tables/sub/a.xml", //
+            "/tables/a.table.xml", //
+            "/forms/a.xml", //
+            "/forms/a.xml", //
+            "/application.properties"));
+
+    @Test
+    void testWalkKeepsOrderOfResourceList() {
+        assertThat(toStrings(provider.walk(path("tables")))).containsExactly("tables", "tables/b.table.xml", "tables/sub/a.xml", "tables/a.table.xml");
+        assertThat(toStrings(provider.walk(path("forms")))).containsExactly("forms/a.xml");
+        assertThat(provider.walk(path("form"))).isEmpty();
+    }
+
+    @Test
+    void testFindByFileName() {
+        assertThat(toStrings(provider.findByFileName(path("tables"), "a.table.xml", "a.xml"))).containsExactly("tables/sub/a.xml", "tables/a.table.xml");
+        assertThat(toStrings(provider.findByFileName(path("tables/sub"), "a.xml"))).containsExactly("tables/sub/a.xml");
+        assertThat(provider.findByFileName(path("tables"), "c.xml")).isEmpty();
+    }
+
+    @Test
+    void testDirectoryStreamListsDirectChildren() throws IOException {
+        final List<String> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = provider.newDirectoryStream(path("tables"), null)) {
+            stream.forEach(child -> children.add(child.toString()));
+        }
+        assertThat(children).containsExactly("tables/b.table.xml", "tables/sub", "tables/a.table.xml");
+
+        children.clear();
+        try (DirectoryStream<Path> stream = provider.newDirectoryStream(path(""), child -> !child.toString().equals("forms"))) {
+            stream.forEach(child -> children.add(child.toString()));
+        }
+        assertThat(children).containsExactly("tables", "application.properties");
+    }
+
+    @Test
+    void testAttributes() throws Exception {
+        final var attributes = Files.readAttributes(path("application.properties"), BasicFileAttributes.class);
+        assertThat(attributes.isRegularFile()).isTrue();
+        assertThat(attributes.size()).isEqualTo(Files.size(file("application.properties")));
+        assertThat(attributes.lastModifiedTime()).isEqualTo(Files.getLastModifiedTime(file("application.properties")));
+
+        assertThat(Files.isDirectory(path("tables"))).isTrue();
+        assertThat(Files.exists(path("missing.txt"))).isFalse();
+        assertThat(path("tables").getFileSystem()).isSameAs(provider.getFileSystem(null));
+    }
+
+    @Test
+    void testSmallResourcesAreCached() throws Exception {
+        final var content = Files.readAllBytes(file("application.properties"));
+        assertThat(Files.readAllBytes(path("application.properties"))).isEqualTo(content);
+        assertThat(provider.getCachedContentSize()).isEqualTo(content.length);
+        try (InputStream in = Files.newInputStream(path("application.properties"))) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+        assertThat(provider.getCachedContentSize()).isEqualTo(content.length);
+    }
+
+    @Test
+    void testLeastRecentlyUsedResourcesAreRemoved() throws Exception {
+        final var first = Files.size(file("application.properties"));
+        final var second = Files.size(file("logback-spring.xml"));
+        final var cachingProvider = new ResourceFileSystemProvider(getClass().getClassLoader(), List.of(), Long.MAX_VALUE, first + second - 1);
+
+        Files.readAllBytes(cachingProvider.getFileSystem(null).getPath("application.properties"));
+        Files.readAllBytes(cachingProvider.getFileSystem(null).getPath("logback-spring.xml"));
+        assertThat(cachingProvider.getCachedContentSize()).isEqualTo(second);
+    }
+
+    @Test
+    void testLargeResourcesAreStreamed() throws Exception {
+        final var streamingProvider = new ResourceFileSystemProvider(getClass().getClassLoader(), List.of(), 1, Long.MAX_VALUE);
+        final var resource = streamingProvider.getFileSystem(null).getPath("application.properties");
+        final var content = Files.readAllBytes(file("application.properties"));
+
+        assertThat(Files.readAllBytes(resource)).isEqualTo(content);
+        assertThat(streamingProvider.getCachedContentSize()).isZero();
+
+        try (SeekableByteChannel channel = Files.newByteChannel(resource)) {
+            assertThat(channel.size()).isEqualTo(content.length);
+            final var buffer = ByteBuffer.allocate(10);
+            channel.position(5).read(buffer);
+            assertThat(buffer.array()).isEqualTo(Arrays.copyOfRange(content, 5, 15));
+
+            buffer.clear();
+            channel.position(0).read(buffer);
+            assertThat(buffer.array()).isEqualTo(Arrays.copyOfRange(content, 0, 10));
+        }
+    }
+
+    private Path path(String path) {
+        return provider.getFileSystem(null).getPath(path);
+    }
+
+    private Path file(String resource) throws URISyntaxException {
+        return Paths.get(getClass().getClassLoader().getResource(resource).toURI());
+    }
+
+    private static List<String> toStrings(List<Path> paths) {
+        return paths.stream().map(Path::toString).toList();
+    }
+}
@@ -0,0 +1,144 @@
+package aero.minova.cas.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import aero.minova.cas.CustomLogger;
+
+class FatJarZipCacheTest {
+
+	private final Map<String, String> resources = Map.of(//
+			FatJarZipCache.DEPLOYED_RESOURCES, "/resources.txt\n", //
+			"/resources.txt", "/forms/\n/forms/a.xml\n/forms/b.xml\n/plugins/c.jar\n", //
+			"/forms/a.xml", "<form name=\"a\"/>", //
+			"/forms/b.xml", "<form name=\"b\"/>", //
+			"/plugins/c.jar", "jar");
+
+	private final AtomicInteger reads = new AtomicInteger();
+
+	private FatJarZipCache cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new FatJarZipCache() {
+			@Override
+			InputStream openResource(String resourcePath) throws IOException {
+				if (resourcePath.endsWith(".xml")) {
+					reads.incrementAndGet();
+				}
+				String content = resources.get(resourcePath);
+				if (content == null) {
+					throw new IOException("Resource " + resourcePath + " not found.");
+				}
+				return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+			}
+		};
+		cache.customLogger = Mockito.mock(CustomLogger.class);
+	}
+
+	@Test
+	void testZipIsCreatedOnce() throws Exception {
+		FatJarZipCache.Zip zip = cache.getZip("/forms");
+
+		assertEquals(List.of("forms/a.xml", "forms/b.xml"), readEntries(zip.getContent()));
+		MessageDigest md = MessageDigest.getInstance("MD5");
+		assertEquals(String.format("%032x", new BigInteger(1, md.digest(zip.getContent()))), zip.getMd5());
+		assertEquals(2, reads.get());
+
+		// Derselbe Ordner verwendet dasselbe Zip.
+		assertSame(zip, cache.getZip("/forms"));
+		assertSame(zip, cache.getZip("forms/"));
+		assertEquals(2, reads.get());
+	}
+
+	@Test
+	void testOnlyDirectoriesAreZipped() {
+		// Beliebige Anfänge von Pfaden, Dateien und der oberste Ordner erzeugen kein Zip.
+		assertThrows(NoSuchFileException.class, () -> cache.getZip("/for"));
+		assertThrows(NoSuchFileException.class, () -> cache.getZip("/forms/a.xml"));
+		assertThrows(NoSuchFileException.class, () -> cache.getZip("/"));
+		assertEquals(0, reads.get());
+	}
+
+	@Test
+	void testConcurrentRequestsCreateOneZip() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<FatJarZipCache.Zip>> zips = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				zips.add(executor.submit(() -> cache.getZip("/forms")));
+			}
+			FatJarZipCache.Zip first = zips.get(0).get(5, TimeUnit.SECONDS);
+			for (Future<FatJarZipCache.Zip> zip : zips) {
+				assertSame(first, zip.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(2, reads.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testZipIsDeterministic() throws Exception {
+		byte[] content = cache.getZip("/forms").getContent();
+		FatJarZipCache other = new FatJarZipCache() {
+			@Override
+			InputStream openResource(String resourcePath) {
+				return new ByteArrayInputStream(resources.get(resourcePath).getBytes(StandardCharsets.UTF_8));
+			}
+		};
+		other.customLogger = cache.customLogger;
+		assertArrayEquals(content, other.getZip("/forms").getContent());
+	}
+
+	@Test
+	void testManifestEntries() throws Exception {
+		List<FileManifest.Entry> entries = cache.getManifestEntries();
+
+		assertEquals(List.of("forms/a.xml", "forms/b.xml", "plugins/c.jar"), entries.stream().map(FileManifest.Entry::getPath).toList());
+		FileManifest.Entry entry = entries.get(0);
+		byte[] content = resources.get("/forms/a.xml").getBytes(StandardCharsets.UTF_8);
+		assertEquals(content.length, entry.getSize());
+		MessageDigest md = MessageDigest.getInstance("MD5");
+		assertEquals(String.format("%032x", new BigInteger(1, md.digest(content))), entry.getHash());
+
+		// Die Resourcen werden nur einmal gelesen.
+		assertSame(entries, cache.getManifestEntries());
+		assertEquals(2, reads.get());
+	}
+
+	private List<String> readEntries(byte[] zip) throws IOException {
+		List<String> entries = new ArrayList<>();
+		try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				entries.add(entry.getName());
+			}
+		}
+		return entries;
+	}
+}
@@ -3,11 +3,15 @@ package aero.minova.cas.service;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.List;
 
 import org.junit.Rule;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.rules.ExpectedException;
@@ -39,6 +43,12 @@ class FilesServiceTest extends BaseTest {
 	@Rule
 	public ExpectedException thrown = ExpectedException.none();
 
+	@BeforeEach
+	void clearMdiCache() {
+		// Die Tests verwenden unterschiedliche Daten für denselben User.
+		testSubject.invalidateMDI(new MdiChangedEvent());
+	}
+
 	@DisplayName("MDI Test mit Masken und Actions")
 	@WithMockUser(username = "user", roles = {})
 	@Test
@@ -228,4 +238,69 @@ class FilesServiceTest extends BaseTest {
 		Throwable exception = assertThrows(RuntimeException.class, () -> testSubject.readMDI());
 		assertThat(exception).hasMessage("No menu defined. Mdi cannot be build!");
 	}
+
+	@DisplayName("MDI wird pro SecurityTokens zwischengespeichert")
+	@WithMockUser(username = "user", roles = {})
+	@Test
+	void testMdiIsCachedPerSecurityTokens() throws Exception {
+		Table mockResult = new Table();
+		mockResult.addColumn(new Column("KeyText", DataType.STRING));
+		mockResult.addColumn(new Column("Icon", DataType.STRING));
+		mockResult.addColumn(new Column("Label", DataType.STRING));
+		mockResult.addColumn(new Column("Menu", DataType.STRING));
+		mockResult.addColumn(new Column("Position", DataType.DOUBLE));
+		mockResult.addColumn(new Column("SecurityToken", DataType.STRING));
+		mockResult.addColumn(new Column("MdiTypeKey", DataType.INTEGER));
+		mockResult.addRow(mdiRow(null, "Application", "@Application", null, 3));
+		mockResult.addRow(mdiRow("Tables", null, "@Tables", null, 2));
+		mockResult.addRow(mdiRow("Measurement", "Measurement", "@Measurement", "Tables", 1));
+		doReturn(mockResult).when(mockController).getIndexView(Mockito.any());
+		testSubject.setViewController(mockController);
+
+		SecurityService securityService = testSubject.securityUtils;
+		SecurityService securityMock = Mockito.mock(SecurityService.class);
+		try {
+			testSubject.securityUtils = securityMock;
+			doReturn(List.of(privilegeRow("admin"))).when(securityMock).getPrivilegePermissions("xtcasMdi");
+
+			FilesService.MdiContent mdi = testSubject.getMDI();
+			assertThat(testSubject.getMDI()).isSameAs(mdi);
+			verify(mockController, times(1)).getIndexView(Mockito.any());
+
+			// Andere SecurityTokens bekommen eine eigene MDI.
+			doReturn(List.of(privilegeRow("other"))).when(securityMock).getPrivilegePermissions("xtcasMdi");
+			assertThat(testSubject.getMDI()).isNotSameAs(mdi);
+			verify(mockController, times(2)).getIndexView(Mockito.any());
+
+			// Ändert sich xtcasMdi, wird die MDI neu erstellt. Bei gleichem Inhalt bleibt der ETag gleich.
+			doReturn(List.of(privilegeRow("admin"))).when(securityMock).getPrivilegePermissions("xtcasMdi");
+			testSubject.invalidateMDI(new MdiChangedEvent());
+			FilesService.MdiContent newMdi = testSubject.getMDI();
+			assertThat(newMdi).isNotSameAs(mdi);
+			assertThat(newMdi.getHash()).isEqualTo(mdi.getHash());
+			verify(mockController, times(3)).getIndexView(Mockito.any());
+		} finally {
+			testSubject.securityUtils = securityService;
+		}
+	}
+
+	private static Row mdiRow(String keyText, String icon, String label, String menu, int mdiTypeKey) {
+		Row row = new Row();
+		row.addValue(keyText == null ? null : new Value(keyText, null));
+		row.addValue(icon == null ? null : new Value(icon, null));
+		row.addValue(new Value(label, null));
+		row.addValue(menu == null ? null : new Value(menu, null));
+		row.addValue(null);
+		row.addValue(null);
+		row.addValue(new Value(mdiTypeKey, null));
+		return row;
+	}
+
+	private static Row privilegeRow(String securityToken) {
+		Row row = new Row();
+		row.addValue(new Value("xtcasMdi", null));
+		row.addValue(new Value(securityToken, null));
+		row.addValue(new Value(true, null));
+		return row;
+	}
 }
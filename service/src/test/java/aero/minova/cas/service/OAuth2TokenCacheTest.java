@@ -0,0 +1,141 @@
+package aero.minova.cas.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import aero.minova.cas.service.model.CASServices;
+
+class OAuth2TokenCacheTest {
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private CountDownLatch tokenServer = new CountDownLatch(0);
+
+	// Hierbei handelt es sich um Millisekunden
+	private long tokenLifetime = 3_600_000;
+
+	private OAuth2TokenCache cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new OAuth2TokenCache() {
+			@Override
+			OAuth2Token fetchToken(CASServices service) {
+				try {
+					tokenServer.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				int request = requests.incrementAndGet();
+				if (service.getTokenURL() == null) {
+					throw new IllegalArgumentException("QueueService was not able to read the access token from tokenurl null");
+				}
+				return new OAuth2Token("token-" + request, Instant.now().plusMillis(tokenLifetime));
+			}
+		};
+		cache.refreshAhead = 60;
+		cache.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		cache.shutdown();
+	}
+
+	@Test
+	void testTokenIsCachedAndEvicted() {
+		CASServices service = createService(1);
+
+		assertEquals("token-1", cache.getToken(service));
+		assertEquals("token-1", cache.getToken(service));
+		assertEquals(1, requests.get());
+
+		cache.evict(1);
+		assertEquals("token-2", cache.getToken(service));
+	}
+
+	@Test
+	void testConcurrentRequestsAreDeduplicated() throws Exception {
+		CASServices service = createService(1);
+		tokenServer = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> tokens = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				tokens.add(executor.submit(() -> cache.getToken(service)));
+			}
+			// Allen Threads Zeit geben, auf die laufende Anfrage zu warten.
+			Thread.sleep(200);
+			tokenServer.countDown();
+
+			for (Future<String> token : tokens) {
+				assertEquals("token-1", token.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(1, requests.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testFailedRequestIsNotCached() {
+		CASServices service = createService(2);
+		service.setTokenURL(null);
+
+		assertThrows(IllegalArgumentException.class, () -> cache.getToken(service));
+		assertThrows(IllegalArgumentException.class, () -> cache.getToken(service));
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	void testOnlyUsedTokensAreRefreshed() throws Exception {
+		// Der Token wird nach der Hälfte seiner Laufzeit erneuert, also nach 500 ms.
+		tokenLifetime = 1000;
+		CASServices service = createService(3);
+
+		assertEquals("token-1", cache.getToken(service));
+		assertEquals("token-1", cache.getToken(service));
+		for (int i = 0; i < 50 && requests.get() < 2; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(2, requests.get());
+
+		// Der erneuerte Token wird nicht mehr gelesen und deshalb nicht weiter erneuert.
+		Thread.sleep(1500);
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	void testUnusedTokenIsDropped() throws Exception {
+		tokenLifetime = 1000;
+		CASServices service = createService(4);
+
+		assertEquals("token-1", cache.getToken(service));
+		Thread.sleep(1500);
+		assertEquals(1, requests.get());
+		assertEquals("token-2", cache.getToken(service));
+	}
+
+	private CASServices createService(int keyLong) {
+		CASServices service = new CASServices();
+		service.setKeyLong(keyLong);
+		service.setKeyText("Service" + keyLong);
+		service.setTokenURL("http://localhost/token");
+		return service;
+	}
+}
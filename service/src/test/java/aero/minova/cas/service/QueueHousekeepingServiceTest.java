@@ -0,0 +1,128 @@
+package aero.minova.cas.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import aero.minova.cas.CoreApplicationSystemApplication;
+import aero.minova.cas.sql.SystemDatabase;
+
+@SpringBootTest(classes = CoreApplicationSystemApplication.class)
+@ActiveProfiles("test")
+class QueueHousekeepingServiceTest {
+
+	// Die Nachrichten gehören zu keinem registrierten Dienst, damit sich die KeyLongs der xtcasCASServices in anderen Tests nicht verschieben.
+	private static final int SERVICE_KEY = 999;
+
+	@Autowired
+	QueueHousekeepingService housekeepingService;
+
+	@Autowired
+	SystemDatabase systemDatabase;
+
+	private int chunkSize;
+
+	@BeforeEach
+	void setUp() throws SQLException {
+		chunkSize = housekeepingService.chunkSize;
+		housekeepingService.chunkSize = 2;
+		execute("set referential_integrity false");
+	}
+
+	@AfterEach
+	void tearDown() throws SQLException {
+		housekeepingService.chunkSize = chunkSize;
+		execute("delete from xtcasServiceMessage where CASServiceKey = " + SERVICE_KEY);
+		execute("set referential_integrity true");
+	}
+
+	@Test
+	void testCleanUpInChunks() throws SQLException {
+		final LocalDateTime now = LocalDateTime.now();
+		final LocalDateTime tooOld = now.minusDays(housekeepingService.allowedMessageAge + 1);
+		final int maxAttempts = housekeepingService.allowedNumberOfAttempts;
+
+		// Mehr zu alte Nachrichten, als in einen Durchgang passen. Eine davon war einer Instanz zugeteilt, die ausgefallen ist.
+		for (int i = 0; i < 4; i++) {
+			insertMessage("old", tooOld, 0, null, null);
+		}
+		insertMessage("old", tooOld, 0, "crashed-node", now.minusMinutes(1));
+
+		// Nachrichten, die zu oft versucht wurden.
+		for (int i = 0; i < 3; i++) {
+			insertMessage("attempts", now, maxAttempts, null, null);
+		}
+
+		// Eine Nachricht, die noch verschickt werden soll.
+		insertMessage("pending", now, maxAttempts - 1, null, null);
+
+		// Eine zugeteilte Nachricht bleibt unverändert, auch wenn sie zu alt ist und zu oft versucht wurde.
+		insertMessage("claimed", tooOld, maxAttempts, "other-node", now.plusHours(1));
+
+		housekeepingService.cleanUp();
+
+		assertEquals(0, count("old", null));
+		assertEquals(3, count("attempts", true));
+		assertEquals(1, count("pending", false));
+		assertEquals(1, count("claimed", false));
+	}
+
+	private void insertMessage(String topic, LocalDateTime creationDate, int attempts, String claimedBy, LocalDateTime claimedUntil) throws SQLException {
+		final Connection connection = systemDatabase.getConnection();
+		try (PreparedStatement preparedStatement = connection
+				.prepareStatement("insert into xtcasServiceMessage (CASServiceKey, Topic, Message, IsSent, NumberOfAttempts, MessageCreationDate, Failed, "
+						+ "ClaimedBy, ClaimedUntil, LastAction) values (?, ?, '{}', false, ?, ?, false, ?, ?, 1)")) {
+			preparedStatement.setInt(1, SERVICE_KEY);
+			preparedStatement.setString(2, topic);
+			preparedStatement.setInt(3, attempts);
+			preparedStatement.setTimestamp(4, Timestamp.valueOf(creationDate));
+			preparedStatement.setString(5, claimedBy);
+			preparedStatement.setTimestamp(6, claimedUntil == null ? null : Timestamp.valueOf(claimedUntil));
+			preparedStatement.executeUpdate();
+			connection.commit();
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+	}
+
+	/**
+	 * @return Die Anzahl der Nachrichten mit diesem Topic, bei failed nur die mit diesem Status.
+	 */
+	private int count(String topic, Boolean failed) throws SQLException {
+		final Connection connection = systemDatabase.getConnection();
+		try (PreparedStatement preparedStatement = connection.prepareStatement(
+				"select count(*) from xtcasServiceMessage where CASServiceKey = ? and Topic = ?" + (failed == null ? "" : " and Failed = " + failed))) {
+			preparedStatement.setInt(1, SERVICE_KEY);
+			preparedStatement.setString(2, topic);
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				resultSet.next();
+				return resultSet.getInt(1);
+			}
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+	}
+
+	private void execute(String sql) throws SQLException {
+		final Connection connection = systemDatabase.getConnection();
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+			connection.commit();
+		} finally {
+			systemDatabase.closeConnection(connection);
+		}
+	}
+}
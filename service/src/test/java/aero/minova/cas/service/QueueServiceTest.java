@@ -1,18 +1,46 @@
 package aero.minova.cas.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.client.RestTemplate;
 
 import aero.minova.cas.CoreApplicationSystemApplication;
 import aero.minova.cas.service.model.CASServices;
+import aero.minova.cas.service.model.ServiceMessage;
 import aero.minova.cas.service.repository.CASServicesRepository;
 import aero.minova.cas.service.repository.NewsfeedListenerRepository;
 import aero.minova.cas.service.repository.ProcedureNewsfeedRepository;
 import aero.minova.cas.service.repository.ServiceMessageReceiverLoginTypeRepository;
+import aero.minova.cas.service.repository.ServiceMessageRepository;
 import aero.minova.cas.servicenotifier.ServiceNotifierRegistrationAPI;
 
 @SpringBootTest(classes = CoreApplicationSystemApplication.class)
@@ -67,4 +95,185 @@ public class QueueServiceTest {
 		assertEquals("tFlightSchedule", procedureNewsfeedRepo.findByKeyLong(2).get().getTopic());
 	}
 
+	@Test
+	public void testRetryDelay() {
+		long retryDelay = queueService.retryDelay;
+		long maxRetryDelay = queueService.maxRetryDelay;
+		try {
+			queueService.retryDelay = 30;
+			queueService.maxRetryDelay = 3600;
+
+			assertEquals(Duration.ofSeconds(30), queueService.getRetryDelay(1));
+			assertEquals(Duration.ofSeconds(60), queueService.getRetryDelay(2));
+			assertEquals(Duration.ofSeconds(1920), queueService.getRetryDelay(7));
+			assertEquals(Duration.ofSeconds(3600), queueService.getRetryDelay(8));
+			assertEquals(Duration.ofSeconds(3600), queueService.getRetryDelay(100));
+		} finally {
+			queueService.retryDelay = retryDelay;
+			queueService.maxRetryDelay = maxRetryDelay;
+		}
+	}
+
+	@Test
+	public void testCreateBatch() {
+		long maxBatchBytes = queueService.maxBatchBytes;
+		try {
+			CASServices service = new CASServices();
+			LocalDateTime now = LocalDateTime.now();
+			List<ServiceMessage> lane = List.of( //
+					createMessage(service, 1, "tShipment", "{\"KeyLong\":1}"), //
+					createMessage(service, 2, "tShipment", "{\"KeyLong\":2}"), //
+					createMessage(service, 3, "tShipment", "{\"KeyLong\":3}"), //
+					createMessage(service, 4, "tFlightSchedule", "{\"KeyLong\":4}"));
+
+			// Ohne MaxBatchSize wird jede Nachricht einzeln verschickt.
+			assertEquals(1, queueService.createBatch(lane, 0, now).size());
+
+			service.setMaxBatchSize(2);
+			assertEquals(List.of(1, 2), queueService.createBatch(lane, 0, now).stream().map(ServiceMessage::getKeyLong).toList());
+
+			// Nachrichten mit einem anderen Topic werden nicht in denselben Batch übernommen.
+			service.setMaxBatchSize(10);
+			assertEquals(List.of(2, 3), queueService.createBatch(lane, 1, now).stream().map(ServiceMessage::getKeyLong).toList());
+
+			// Die erste Nachricht wird auch verschickt, wenn sie allein schon zu groß ist.
+			queueService.maxBatchBytes = 20;
+			assertEquals(List.of(1), queueService.createBatch(lane, 0, now).stream().map(ServiceMessage::getKeyLong).toList());
+		} finally {
+			queueService.maxBatchBytes = maxBatchBytes;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testOpenCircuitPostponesMessages() {
+		QueueService testSubject = spy(queueService);
+		testSubject.claimPageSize = 3;
+		testSubject.serviceMessageRepo = mock(ServiceMessageRepository.class);
+
+		CASServices service = new CASServices();
+		service.setKeyLong(4711);
+		service.setKeyText("UnavailableService");
+		ServiceCircuitBreaker circuitBreaker = testSubject.getCircuitBreaker(service);
+		for (int i = 0; i < testSubject.circuitFailureThreshold; i++) {
+			circuitBreaker.recordFailure(Instant.now());
+		}
+
+		// Es gibt mehr unversendete Nachrichten, als auf einmal zugeteilt werden.
+		List<ServiceMessage> claimedMessages = new ArrayList<>();
+		for (int i = 1; i <= testSubject.claimPageSize; i++) {
+			claimedMessages.add(createMessage(service, i, "tShipment", "{\"KeyLong\":" + i + "}"));
+		}
+		doReturn(testSubject.claimPageSize).when(testSubject).claimMessages();
+		doAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size()).when(testSubject).renewClaim(anyList(), any());
+		doNothing().when(testSubject).releaseClaim(anyList());
+		doAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size()).when(testSubject).saveAttempts(anyList());
+		when(testSubject.serviceMessageRepo.findAllByClaimedByAndIsSentFalseAndFailedFalseOrderByKeyLongAsc(any())).thenReturn(claimedMessages);
+
+		testSubject.sendClaimedMessages();
+
+		// Es wurde nichts verschickt, also wird dieselbe Seite nicht sofort wieder zugeteilt.
+		verify(testSubject, times(1)).claimMessages();
+		verify(testSubject.serviceMessageRepo, never()).deleteAllByIdInBatch(any());
+		ArgumentCaptor<List<ServiceMessage>> savedMessages = ArgumentCaptor.forClass(List.class);
+		verify(testSubject).saveAttempts(savedMessages.capture());
+		assertEquals(testSubject.claimPageSize, savedMessages.getValue().size());
+		LocalDateTime openUntil = LocalDateTime.ofInstant(circuitBreaker.getOpenUntil(), ZoneId.systemDefault());
+		for (ServiceMessage message : savedMessages.getValue()) {
+			assertEquals(openUntil, message.getNextAttemptDate());
+			assertEquals(0, message.getNumberOfAttempts());
+			assertNull(message.getClaimedBy());
+		}
+	}
+
+	@Test
+	public void testLostClaimIsNotSent() {
+		QueueService testSubject = spy(queueService);
+		testSubject.serviceMessageRepo = mock(ServiceMessageRepository.class);
+		testSubject.restTemplate = mock(RestTemplate.class);
+
+		CASServices service = new CASServices();
+		service.setKeyLong(4712);
+		service.setKeyText("SlowService");
+		service.setServiceUrl("http://localhost");
+		List<ServiceMessage> lane = List.of( //
+				createMessage(service, 1, "tShipment", "{\"KeyLong\":1}"), //
+				createMessage(service, 2, "tShipment", "{\"KeyLong\":2}"));
+
+		// Die Zuteilung ist abgelaufen und eine andere Instanz hat die Nachrichten übernommen.
+		doReturn(0).when(testSubject).renewClaim(anyList(), any());
+		doNothing().when(testSubject).releaseClaim(anyList());
+
+		assertEquals(0, testSubject.processLane(lane));
+		verifyNoInteractions(testSubject.restTemplate);
+		verify(testSubject, never()).saveAttempts(any());
+		// Freigegeben werden nur Nachrichten, die noch dieser Instanz zugeteilt sind.
+		verify(testSubject).releaseClaim(lane);
+	}
+
+	@Test
+	public void testClaimIsRenewedOnlyWhenHalfOfTheLeaseHasPassed() {
+		QueueService testSubject = spy(queueService);
+		testSubject.serviceMessageRepo = mock(ServiceMessageRepository.class);
+		testSubject.restTemplate = mock(RestTemplate.class);
+
+		CASServices service = new CASServices();
+		service.setKeyLong(4713);
+		service.setKeyText("FastService");
+		service.setServiceUrl("http://localhost");
+		List<ServiceMessage> lane = new ArrayList<>();
+		for (int i = 1; i <= 3; i++) {
+			ServiceMessage message = createMessage(service, i, "tShipment", "{\"KeyLong\":" + i + "}");
+			message.setClaimedBy(testSubject.nodeId);
+			message.setClaimedUntil(LocalDateTime.now().plusSeconds(testSubject.claimLease));
+			lane.add(message);
+		}
+		doNothing().when(testSubject).releaseClaim(anyList());
+
+		// Die Zuteilung ist noch frisch, deshalb wird sie für keine der Nachrichten verlängert.
+		assertEquals(3, testSubject.processLane(lane));
+		verify(testSubject, never()).renewClaim(anyList(), any());
+		verify(testSubject.serviceMessageRepo).deleteAllByIdInBatch(List.of(1, 2, 3));
+
+		// Ist mehr als die Hälfte abgelaufen, wird einmal für alle übrigen Nachrichten verlängert.
+		for (ServiceMessage message : lane) {
+			message.setClaimedUntil(LocalDateTime.now().plusSeconds(testSubject.claimLease / 2 - 1));
+		}
+		doAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size()).when(testSubject).renewClaim(anyList(), any());
+		assertEquals(3, testSubject.processLane(lane));
+		verify(testSubject, times(1)).renewClaim(eq(lane), any());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testSingleMessageOfBatchServiceIsSentAsArray() {
+		QueueService testSubject = spy(queueService);
+		testSubject.serviceMessageRepo = mock(ServiceMessageRepository.class);
+		testSubject.restTemplate = mock(RestTemplate.class);
+
+		CASServices service = new CASServices();
+		service.setKeyLong(4714);
+		service.setKeyText("BatchService");
+		service.setServiceUrl("http://localhost");
+		service.setMaxBatchSize(10);
+		ServiceMessage message = createMessage(service, 1, "tShipment", "{\"KeyLong\":1}");
+		message.setClaimedBy(testSubject.nodeId);
+		message.setClaimedUntil(LocalDateTime.now().plusSeconds(testSubject.claimLease));
+		doNothing().when(testSubject).releaseClaim(anyList());
+
+		assertEquals(1, testSubject.processLane(List.of(message)));
+		ArgumentCaptor<HttpEntity<?>> request = ArgumentCaptor.forClass(HttpEntity.class);
+		verify(testSubject.restTemplate).exchange(eq("http://localhost"), eq(HttpMethod.POST), request.capture(), eq(Void.class));
+		assertEquals("[{\"KeyLong\":1}]", request.getValue().getBody());
+		assertEquals(MediaType.APPLICATION_JSON, request.getValue().getHeaders().getContentType());
+	}
+
+	private ServiceMessage createMessage(CASServices service, int keyLong, String topic, String message) {
+		ServiceMessage serviceMessage = new ServiceMessage();
+		serviceMessage.setKeyLong(keyLong);
+		serviceMessage.setCasService(service);
+		serviceMessage.setTopic(topic);
+		serviceMessage.setMessage(message);
+		return serviceMessage;
+	}
 }
@@ -0,0 +1,66 @@
+package aero.minova.cas.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+class ServiceCircuitBreakerTest {
+
+	private final Instant start = Instant.parse("2025-01-01T00:00:00Z");
+
+	@Test
+	void testOpensAfterConsecutiveFailures() {
+		ServiceCircuitBreaker circuitBreaker = new ServiceCircuitBreaker(3, Duration.ofSeconds(60), Duration.ofSeconds(300));
+
+		assertFalse(circuitBreaker.recordFailure(start));
+		assertFalse(circuitBreaker.recordFailure(start));
+		// Ein erfolgreicher Versand setzt die Fehlversuche zurück.
+		circuitBreaker.recordSuccess();
+		assertFalse(circuitBreaker.recordFailure(start));
+		assertFalse(circuitBreaker.recordFailure(start));
+		assertTrue(circuitBreaker.tryAcquire(start));
+
+		assertTrue(circuitBreaker.recordFailure(start));
+		assertEquals(ServiceCircuitBreaker.State.OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquire(start.plusSeconds(59)));
+	}
+
+	@Test
+	void testHalfOpenProbe() {
+		ServiceCircuitBreaker circuitBreaker = new ServiceCircuitBreaker(1, Duration.ofSeconds(60), Duration.ofSeconds(300));
+		circuitBreaker.recordFailure(start);
+
+		// Nach der Wartezeit darf genau eine Probe verschickt werden.
+		assertTrue(circuitBreaker.tryAcquire(start.plusSeconds(60)));
+		assertEquals(ServiceCircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+		assertFalse(circuitBreaker.tryAcquire(start.plusSeconds(60)));
+
+		circuitBreaker.recordSuccess();
+		assertEquals(ServiceCircuitBreaker.State.CLOSED, circuitBreaker.getState());
+		assertTrue(circuitBreaker.tryAcquire(start.plusSeconds(60)));
+	}
+
+	@Test
+	void testCooldownDoublesUpToMaximum() {
+		ServiceCircuitBreaker circuitBreaker = new ServiceCircuitBreaker(1, Duration.ofSeconds(60), Duration.ofSeconds(200));
+		Instant now = start;
+
+		circuitBreaker.recordFailure(now);
+		assertEquals(now.plusSeconds(60), circuitBreaker.getOpenUntil());
+
+		now = now.plusSeconds(60);
+		assertTrue(circuitBreaker.tryAcquire(now));
+		assertTrue(circuitBreaker.recordFailure(now));
+		assertEquals(now.plusSeconds(120), circuitBreaker.getOpenUntil());
+
+		now = now.plusSeconds(120);
+		assertTrue(circuitBreaker.tryAcquire(now));
+		assertTrue(circuitBreaker.recordFailure(now));
+		assertEquals(now.plusSeconds(200), circuitBreaker.getOpenUntil());
+	}
+}
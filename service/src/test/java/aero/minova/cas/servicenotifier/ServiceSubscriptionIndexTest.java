@@ -0,0 +1,65 @@
+package aero.minova.cas.servicenotifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import aero.minova.cas.service.model.CASServices;
+import aero.minova.cas.service.model.NewsfeedListener;
+
+class ServiceSubscriptionIndexTest {
+
+	@Test
+	void testIndexIsLoadedOnceAndInvalidated() {
+		List<NewsfeedListener> listeners = new ArrayList<>();
+		listeners.add(createListener("ServiceA", "tShipment"));
+		listeners.add(createListener("ServiceB", "tShipment"));
+		listeners.add(createListener("ServiceA", "tFlightSchedule"));
+		AtomicInteger loads = new AtomicInteger();
+
+		ServiceSubscriptionIndex index = new ServiceSubscriptionIndex(() -> {
+			loads.incrementAndGet();
+			return new ArrayList<>(listeners);
+		}, Duration.ofHours(1));
+
+		assertThat(index.getServices("tShipment")).extracting(CASServices::getKeyText).containsExactly("ServiceA", "ServiceB");
+		assertThat(index.getServices("tFlightSchedule")).extracting(CASServices::getKeyText).containsExactly("ServiceA");
+		assertThat(index.getServices("tUnknown")).isEmpty();
+		assertThat(loads.get()).isEqualTo(1);
+
+		listeners.add(createListener("ServiceC", "tUnknown"));
+		// Ohne invalidate bleibt der alte Stand erhalten.
+		assertThat(index.getServices("tUnknown")).isEmpty();
+
+		index.invalidate();
+		assertThat(index.getServices("tUnknown")).extracting(CASServices::getKeyText).containsExactly("ServiceC");
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	@Test
+	void testIndexExpires() {
+		AtomicInteger loads = new AtomicInteger();
+		ServiceSubscriptionIndex index = new ServiceSubscriptionIndex(() -> {
+			loads.incrementAndGet();
+			return List.of(createListener("ServiceA", "tShipment"));
+		}, Duration.ZERO);
+
+		index.getServices("tShipment");
+		index.getServices("tShipment");
+		assertThat(loads.get()).isEqualTo(2);
+	}
+
+	private NewsfeedListener createListener(String serviceName, String topic) {
+		CASServices service = new CASServices();
+		service.setKeyText(serviceName);
+		NewsfeedListener listener = new NewsfeedListener();
+		listener.setCasService(service);
+		listener.setTopic(topic);
+		return listener;
+	}
+}